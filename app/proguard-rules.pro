@@ -12,10 +12,25 @@
 #   public *;
 #}
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Keep line numbers so crash reports from the field stay readable.
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# --- osmdroid ---
+# Ships no consumer rules. Tile sources, tile providers and overlays are partly created by class
+# name and restored from Parcelables, which full-mode R8 would otherwise strip or rename.
+-keep class org.osmdroid.** { *; }
+-keepclassmembers class org.osmdroid.** implements android.os.Parcelable {
+    public static final ** CREATOR;
+}
+-dontwarn org.osmdroid.**
+
+# --- osmbonuspack ---
+# Routing and KML/GeoJSON classes are serialised reflectively (Gson) and through Parcelables.
+-keep class org.osmdroid.bonuspack.** { *; }
+-keepattributes Signature, *Annotation*, EnclosingMethod, InnerClasses
+-dontwarn org.osmdroid.bonuspack.**
+-dontwarn com.google.gson.**
+-dontwarn okhttp3.**
+-dontwarn okio.**
+-dontwarn org.apache.commons.lang3.**
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.example.floodalert;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frame cost of the animated water in the Safety Tips flood view, from the window's frame metrics.
+ * Meant for a mid-range physical device; emulator timings say little.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FloodLevelViewFrameTest {
+
+    private static final long BUDGET_NANOS = 4_000_000;
+    private static final long SAMPLE_MS = 3000;
+
+    private ActivityScenario<SafetyTipsActivity> scenario;
+    private HandlerThread metricsThread;
+
+    @Before
+    public void setUp() {
+        scenario = ActivityScenario.launch(SafetyTipsActivity.class);
+        metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+    }
+
+    @After
+    public void tearDown() {
+        scenario.close();
+        metricsThread.quitSafely();
+    }
+
+    @Test
+    public void waveFramesStayWithinBudget() throws InterruptedException {
+        List<Long> frameNanos = Collections.synchronizedList(new ArrayList<>());
+        Window.OnFrameMetricsAvailableListener listener = (window, metrics, dropped) -> {
+            if (metrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 0) {
+                frameNanos.add(workDuration(metrics));
+            }
+        };
+        Handler metricsHandler = new Handler(metricsThread.getLooper());
+        scenario.onActivity(activity -> {
+            activity.getWindow().addOnFrameMetricsAvailableListener(listener, metricsHandler);
+            FloodLevelView view = activity.findViewById(R.id.flood_level_view);
+            view.setFloodLevel(2.5f);
+        });
+
+        Thread.sleep(SAMPLE_MS);
+        scenario.onActivity(activity -> activity.getWindow().removeOnFrameMetricsAvailableListener(listener));
+
+        List<Long> frames;
+        synchronized (frameNanos) {
+            frames = new ArrayList<>(frameNanos);
+        }
+        // The waves keep frames coming after the 1.5 s rise has finished.
+        assertTrue("Only " + frames.size() + " frames in " + SAMPLE_MS + " ms", frames.size() > SAMPLE_MS / 1000 * 30);
+        Collections.sort(frames);
+        long median = frames.get(frames.size() / 2);
+        assertTrue("Median frame took " + median / 1000 + " µs", median < BUDGET_NANOS);
+    }
+
+    @Test
+    public void wavesStopWithTheActivity() throws InterruptedException {
+        scenario.onActivity(activity -> {
+            FloodLevelView view = activity.findViewById(R.id.flood_level_view);
+            view.setFloodLevel(2.5f);
+        });
+        Thread.sleep(500); // Let the rise start, so there is water to animate
+        AtomicBoolean running = new AtomicBoolean();
+        scenario.onActivity(activity -> running.set(
+                ((FloodLevelView) activity.findViewById(R.id.flood_level_view)).isWaveAnimationRunning()));
+        assertTrue(running.get());
+
+        scenario.moveToState(Lifecycle.State.CREATED);
+        scenario.onActivity(activity -> running.set(
+                ((FloodLevelView) activity.findViewById(R.id.flood_level_view)).isWaveAnimationRunning()));
+        assertFalse(running.get());
+    }
+
+    /** Time the UI and render threads spent on the frame, leaving out waits for vsync and the GPU. */
+    private static long workDuration(FrameMetrics metrics) {
+        return metrics.getMetric(FrameMetrics.INPUT_HANDLING_DURATION)
+                + metrics.getMetric(FrameMetrics.ANIMATION_DURATION)
+                + metrics.getMetric(FrameMetrics.LAYOUT_MEASURE_DURATION)
+                + metrics.getMetric(FrameMetrics.DRAW_DURATION)
+                + metrics.getMetric(FrameMetrics.SYNC_DURATION)
+                + metrics.getMetric(FrameMetrics.COMMAND_ISSUE_DURATION);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * What "high water" means for one river cell, from its historical daily discharge.
+ *
+ * A fixed 30 m³/s is a trickle on a big river and a disaster on a stream, so the risk engine's
+ * discharge thresholds are taken from the cell's own record instead: the level it exceeds on one
+ * day in ten (P90) is where risk starts and where a rapid rise starts to count, and the level it
+ * exceeds on one day in a hundred (P99) is critical. Rain thresholds are not per-river and keep
+ * their defaults.
+ *
+ * Built from a stream of values with {@link Accumulator}, so the history never has to be held.
+ */
+final class DischargeClimatology {
+
+    /** Fewer days than this says too little about the river; the defaults are used instead. */
+    static final int MIN_SAMPLES = 365;
+    /** Below this even the wettest days are a dry bed, where percentiles would flag any flow. */
+    static final double MIN_CRITICAL_DISCHARGE = 1.0;
+
+    final double p90;
+    final double p99;
+    final int sampleCount;
+    final long computedAtMillis;
+
+    DischargeClimatology(double p90, double p99, int sampleCount, long computedAtMillis) {
+        this.p90 = p90;
+        this.p99 = p99;
+        this.sampleCount = sampleCount;
+        this.computedAtMillis = computedAtMillis;
+    }
+
+    /** Feeds daily values one at a time; missing (NaN) days are skipped. */
+    static final class Accumulator {
+        private final P2Quantile p90 = new P2Quantile(0.90);
+        private final P2Quantile p99 = new P2Quantile(0.99);
+
+        void add(double discharge) {
+            if (!Double.isNaN(discharge)) {
+                p90.add(discharge);
+                p99.add(discharge);
+            }
+        }
+
+        /**
+         * A record too short or too dry to be useful still yields a result, without thresholds,
+         * so the cell is not downloaded again before it expires.
+         */
+        @NonNull
+        DischargeClimatology build(long computedAtMillis) {
+            int count = p90.count();
+            double high = p99.value();
+            if (count < MIN_SAMPLES || !(high >= MIN_CRITICAL_DISCHARGE)) {
+                return new DischargeClimatology(Double.NaN, Double.NaN, count, computedAtMillis);
+            }
+            return new DischargeClimatology(p90.value(), high, count, computedAtMillis);
+        }
+    }
+
+    boolean hasThresholds() {
+        return !Double.isNaN(p99);
+    }
+
+    /**
+     * An engine with this river's discharge thresholds and the default rain thresholds, or
+     * {@link RiskEngine#DEFAULT} without them.
+     */
+    @NonNull
+    RiskEngine toRiskEngine() {
+        if (!hasThresholds()) {
+            return RiskEngine.DEFAULT;
+        }
+        RiskEngine.Thresholds thresholds = new RiskEngine.Thresholds();
+        thresholds.normalDischarge = p90;
+        thresholds.minimumDangerDischarge = p90;
+        // P² estimates of nearby quantiles can cross on a very flat record; keep a usable ramp.
+        thresholds.criticalDischarge = Math.max(p99, p90 * 1.5 + 0.1);
+        return new RiskEngine(thresholds);
+    }
+
+    @NonNull
+    String encode() {
+        return String.format(Locale.US, "%s,%s,%d,%d", p90, p99, sampleCount, computedAtMillis);
+    }
+
+    /** Null for anything {@link #encode} did not produce. */
+    @Nullable
+    static DischargeClimatology decode(@Nullable String stored) {
+        if (stored == null) {
+            return null;
+        }
+        String[] parts = stored.split(",");
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            return new DischargeClimatology(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                    Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
@@ -18,58 +19,41 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.CompletableFuture;
 
 public class EvacuationRouteActivity extends BaseActivity {
 
     // --- Constants ---
     private static final String TAG = "EvacuationRouteActivity";
-    private static final double MINIMUM_DANGER_LEVEL = 10.0; // in m³/s
-    private static final double DANGER_INCREASE_PERCENT = 1.5; // Represents a 50% increase
-    private static final String OPEN_METEO_FLOOD_API_URL = "https://api.open-meteo.com/v1/flood?latitude=%f&longitude=%f&daily=river_discharge&forecast_days=3";
 
     // --- Views ---
     private ProgressBar progressBar;
     private TextView textLoading;
+    private TextView textDataSource;
     private LinearLayout layoutSafe;
     private LinearLayout layoutDanger;
     private Button btnFindEvacuationRoute;
 
     // --- Location & Threading ---
     private ActivityResultLauncher<String> requestPermissionLauncher;
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationCallback locationCallback;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final Handler handler = new Handler(Looper.getMainLooper());
 
+    // --- Latest forecast (UI thread only) ---
+    private ForecastSeries riverSeries;
+    private ForecastSeries rainSeries;
+    private RiskEngine riskEngine = RiskEngine.DEFAULT;
+    private int fetchGeneration;
+    // Whether riverSeries / rainSeries were refreshed by the current check, not left from before.
+    private boolean riverRefreshed;
+    private boolean rainRefreshed;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         initViews();
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         setupLocationPermissionLauncher();
         checkRiskAtCurrentLocation();
 
@@ -79,6 +63,7 @@ public class EvacuationRouteActivity extends BaseActivity {
     private void initViews() {
         progressBar = findViewById(R.id.progressBar);
         textLoading = findViewById(R.id.textLoading);
+        textDataSource = findViewById(R.id.textDataSource);
         layoutSafe = findViewById(R.id.layoutSafe);
         layoutDanger = findViewById(R.id.layoutDanger);
         btnFindEvacuationRoute = findViewById(R.id.btnFindEvacuationRoute);
@@ -117,136 +102,159 @@ public class EvacuationRouteActivity extends BaseActivity {
     }
 
     private void fetchLocationAndCheckRisk() {
-        progressBar.setVisibility(View.VISIBLE);
-        textLoading.setVisibility(View.VISIBLE);
-        textLoading.setText("Getting location...");
-
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 10000)
-                .setWaitForAccurateLocation(true)
-                .setMinUpdateIntervalMillis(5000)
-                .setMaxUpdateDelayMillis(10000)
-                .build();
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-                fusedLocationClient.removeLocationUpdates(this);
-                Location lastLocation = locationResult.getLastLocation();
-                if (lastLocation != null) {
-                    textLoading.setText("Analyzing risk...");
-                    fetchFloodData(lastLocation.getLatitude(), lastLocation.getLongitude());
-                } else {
-                    Toast.makeText(EvacuationRouteActivity.this, "Could not get your location. Assuming safe.", Toast.LENGTH_LONG).show();
-                    showSafeLayout();
-                }
-            }
-        };
-
-        try {
-            fusedLocationClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
-        } catch (SecurityException e) {
-            Log.e(TAG, "Location permission not granted, cannot request updates.", e);
-            Toast.makeText(this, "Location permission not granted. Assuming safe.", Toast.LENGTH_LONG).show();
-            showSafeLayout();
+        // Opened from a warmed dashboard: show its verdict now and re-check quietly.
+        FloodPrewarmer.Snapshot warmed = FloodPrewarmer.getInstance(this).getSnapshot();
+        boolean showingWarmed = warmed != null && warmed.hasForecast();
+        if (showingWarmed) {
+            riverSeries = warmed.river;
+            rainSeries = warmed.rain;
+            riskEngine = warmed.engine;
+            showVerdict();
+        } else {
+            progressBar.setVisibility(View.VISIBLE);
+            textLoading.setVisibility(View.VISIBLE);
+            textLoading.setText("Getting location...");
         }
-    }
-
-    private void fetchFloodData(double lat, double lon) {
-        String urlString = String.format(java.util.Locale.US, OPEN_METEO_FLOOD_API_URL, lat, lon);
-
-        executor.execute(() -> {
-            String jsonResponse = null;
 
-            try {
-                URL url = new URL(urlString);
-                HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-                conn.setConnectTimeout(15000);
-                conn.setReadTimeout(15000);
-
-                int responseCode = conn.getResponseCode();
-
-                if (responseCode != HttpsURLConnection.HTTP_OK) {
-                    throw new IOException("HTTP error code: " + responseCode);
-                }
-
-                try (InputStream in = conn.getInputStream();
-                     BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
+        // A recent fix gives a verdict right away; a fix that lands somewhere else re-checks.
+        LocationProvider.getInstance(this)
+                .getLocation(this::onLocationRefined)
+                .whenComplete((location, error) -> {
+                    if (isDestroyed()) {
+                        return;
                     }
-                    jsonResponse = response.toString();
-                } finally {
-                    conn.disconnect();
-                }
-
-                final String finalResponse = jsonResponse;
-
-                // Post to UI thread for parsing and updating the view
-                handler.post(() -> {
-                    if (finalResponse != null && !finalResponse.isEmpty()) {
-                        parseFloodData(finalResponse);
-                    } else {
-                        Log.w(TAG, "API response was empty. Defaulting to safe.");
+                    if (error != null) {
+                        Log.e(TAG, "Could not get a location fix.", error);
+                        if (showingWarmed) {
+                            return; // Keep the warmed verdict rather than fall back to "safe".
+                        }
+                        Toast.makeText(this, "Could not get your location. Assuming safe.", Toast.LENGTH_LONG).show();
                         showSafeLayout();
+                        return;
                     }
+                    if (LocationProvider.isApproximate(location)) {
+                        Toast.makeText(this, "No current GPS fix; using your last known location.", Toast.LENGTH_LONG).show();
+                    }
+                    textLoading.setText("Analyzing risk...");
+                    fetchFloodData(location.getLatitude(), location.getLongitude());
                 });
-
-            } catch (IOException e) {
-                // Catches network/IO failures. We LOG the error but DO NOT show a toast.
-                Log.e(TAG, "Network Error fetching flood data. Falling back to Safe Layout.", e);
-                handler.post(() -> {
-                    showSafeLayout();
-                });
-            } catch (Exception e) {
-                // Catches ANY other unexpected exception. We LOG the error but DO NOT show a toast.
-                Log.e(TAG, "Unexpected Runtime Exception during flood data fetch. Falling back to Safe Layout.", e);
-                handler.post(() -> {
-                    showSafeLayout();
-                });
-            }
-        });
     }
 
-    private void parseFloodData(String jsonResponse) {
-        try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-
-            if (jsonObject.has("daily")) {
-                JSONObject dailyData = jsonObject.getJSONObject("daily");
-                if (dailyData.has("river_discharge")) {
-                    JSONArray dischargeArray = dailyData.getJSONArray("river_discharge");
+    /** A better fix can land seconds later, after the screen has gone; it is dropped then. */
+    private void onLocationRefined(Location location) {
+        if (isDestroyed()) {
+            return;
+        }
+        fetchFloodData(location.getLatitude(), location.getLongitude());
+    }
 
-                    boolean inDanger = isFloodRiskHigh(dischargeArray);
-                    updateUI(inDanger);
+    /**
+     * Fetches river discharge, rain and the river's thresholds together so the verdict matches the
+     * safety tips screen.
+     * A source that fails is left out; the check only fails when both do.
+     */
+    private void fetchFloodData(double lat, double lon) {
+        FloodForecastRepository repository = FloodForecastRepository.getInstance(this);
+        final int generation = ++fetchGeneration;
+        // What is on screen (a warmed or earlier verdict) stays until this check has a result.
+        riverRefreshed = false;
+        rainRefreshed = false;
+
+        CompletableFuture<ForecastSeries> river = repository
+                .getRiverDischarge(lat, lon, refreshed -> handler.post(() -> onRevalidated(generation, true, refreshed)))
+                .handle((series, error) -> orNullOnError("river discharge", series, error));
+        CompletableFuture<ForecastSeries> rain = repository
+                .getHourlyPrecipitation(lat, lon, refreshed -> handler.post(() -> onRevalidated(generation, false, refreshed)))
+                .handle((series, error) -> orNullOnError("precipitation", series, error));
+
+        // This river's own thresholds; usually cached, downloaded once for a new area.
+        repository.getRiskEngine(lat, lon).thenAccept(engine -> handler.post(() -> onRiskEngineLoaded(generation, engine)));
+
+        river.thenAcceptBoth(rain, (riverResult, rainResult) -> handler.post(() -> {
+            if (generation != fetchGeneration) {
+                return; // A newer check has started; this result is stale.
+            }
+            if (riverResult == null && rainResult == null && !riverRefreshed && !rainRefreshed) {
+                if (riverSeries != null || rainSeries != null) {
+                    // Keep the verdict already shown rather than fall back to "safe".
+                    textDataSource.setText("Could not refresh the forecast. Showing the earlier result.");
+                    textDataSource.setVisibility(View.VISIBLE);
                     return;
                 }
+                // The notice makes clear this is not a live result.
+                textDataSource.setText("Could not reach the forecast service and no saved forecast is available. This is not a live result.");
+                textDataSource.setVisibility(View.VISIBLE);
+                showSafeLayout();
+                return;
             }
+            // Keep a network refresh that already landed over the cached copy it replaced.
+            if (!riverRefreshed) {
+                riverSeries = riverResult;
+            }
+            if (!rainRefreshed) {
+                rainSeries = rainResult;
+            }
+            showVerdict();
+        }));
+    }
 
-            // Fallback for missing or unusable river data
-            Log.w(TAG, "JSON response did not contain expected flood data. Assuming safe.");
-            showSafeLayout();
-
-        } catch (JSONException e) {
-            // Catches internal parsing failures. We default to safe without a toast.
-            Log.e(TAG, "JSON Parsing Error. Assuming safe.", e);
-            showSafeLayout();
+    private static ForecastSeries orNullOnError(String source, ForecastSeries series, Throwable error) {
+        if (error != null) {
+            // Network/IO failures are LOGGED; the other source may still give a verdict.
+            Log.e(TAG, "Error fetching " + source + " and nothing cached.", error);
+            return null;
         }
+        return series;
     }
 
-    private boolean isFloodRiskHigh(@NonNull JSONArray dischargeArray) throws JSONException {
-        // Includes null checks to prevent crashes when accessing array elements
-        if (dischargeArray.length() >= 3 && !dischargeArray.isNull(0) && !dischargeArray.isNull(2)) {
-            double todayLevel = dischargeArray.getDouble(0);
-            double futureLevel = dischargeArray.getDouble(2);
+    /** A source first served from the offline cache has been refreshed from the network. */
+    private void onRevalidated(int generation, boolean isRiver, ForecastSeries series) {
+        if (generation != fetchGeneration) {
+            return;
+        }
+        if (isRiver) {
+            riverSeries = series;
+            riverRefreshed = true;
+        } else {
+            rainSeries = series;
+            rainRefreshed = true;
+        }
+        showVerdict();
+    }
 
-            return futureLevel > (todayLevel * DANGER_INCREASE_PERCENT) && futureLevel > MINIMUM_DANGER_LEVEL;
+    private void onRiskEngineLoaded(int generation, RiskEngine engine) {
+        if (generation != fetchGeneration) {
+            return;
+        }
+        riskEngine = engine;
+        if (riverSeries != null || rainSeries != null) {
+            showVerdict();
         }
-        return false;
     }
 
+    private void showVerdict() {
+        long oldestCachedAt = Long.MAX_VALUE;
+        for (ForecastSeries series : new ForecastSeries[]{riverSeries, rainSeries}) {
+            if (series != null && series.isFromCache()) {
+                oldestCachedAt = Math.min(oldestCachedAt, series.getFetchedAtMillis());
+            }
+        }
+        if (oldestCachedAt != Long.MAX_VALUE) {
+            textDataSource.setText("Showing saved forecast from " + DateUtils.getRelativeTimeSpanString(oldestCachedAt) + ". Updating when online.");
+            textDataSource.setVisibility(View.VISIBLE);
+        } else {
+            textDataSource.setVisibility(View.GONE);
+        }
+
+        RiskEngine.Assessment assessment = riskEngine.assess(riverSeries, rainSeries);
+        if (!assessment.hasData()) {
+            // Fallback for missing or unusable forecast data
+            Log.w(TAG, "Response did not contain expected flood data. Assuming safe.");
+            showSafeLayout();
+        } else {
+            updateUI(assessment.isHighRisk());
+        }
+    }
 
     private void updateUI(boolean inDanger) {
         progressBar.setVisibility(View.GONE);
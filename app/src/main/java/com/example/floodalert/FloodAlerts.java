@@ -0,0 +1,58 @@
+package com.example.floodalert;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Posts flood notifications on the shared "Flood alerts" channel, for the background monitor and
+ * the flood-zone geofences alike.
+ */
+final class FloodAlerts {
+
+    private static final String TAG = "FloodAlerts";
+    static final String CHANNEL_ID = "flood_alerts";
+
+    private FloodAlerts() {}
+
+    /** Shows (or replaces) notification {@code id}; tapping it opens {@code target}. */
+    static void post(@NonNull Context context, int id, @NonNull String title, @NonNull String text,
+                     @NonNull Class<?> target) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Notification permission not granted; \"" + title + "\" not shown.");
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Flood alerts", NotificationManager.IMPORTANCE_HIGH);
+            channel.setDescription("Alerts when flood risk changes at your location or watched places.");
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+
+        Intent intent = new Intent(context, target);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, id, intent, PendingIntent.FLAG_IMMUTABLE);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_baseline_flood_24)
+                .setContentTitle(title)
+                .setContentText(text)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(text))
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true);
+        NotificationManagerCompat.from(context).notify(id, builder.build());
+    }
+}
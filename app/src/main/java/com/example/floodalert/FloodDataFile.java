@@ -0,0 +1,679 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Flood zones and shelters in a compact binary file that is queried in place through a
+ * {@link MappedByteBuffer}.
+ *
+ * Opening a file reads only the header; zone lookups walk the stored grid and decode polygon
+ * vertices straight from the mapping, so the Java heap stays the same size whether the region has
+ * ten zones or a hundred thousand. Layout (big-endian, coordinates in degrees * 1e6):
+ *
+ * <pre>
+ * header            magic "FLZD", version, feed version, counts, grid geometry, section offsets
+ * int[cells + 1]    grid cell start offsets into the cell zone list
+ * int[]             cell zone list: zones whose bounding box touches each cell
+ * int[]             oversized zones, checked by every query instead of being gridded
+ * zone table        per zone: int minLat, minLon, maxLat, maxLon, coordinate offset, vertex count, id offset
+ * int[zoneCount]    zone indices sorted by id, for lookups by id
+ * coordinates       per zone: vertices as zigzag varint deltas from the previous vertex (the first from 0,0)
+ * int[shelters] x 2 shelter latitudes then longitudes, in implicit k-d tree order
+ * int[shelters]     shelter id offsets
+ * strings           ids as unsigned short length + UTF-8
+ * </pre>
+ *
+ * Files are immutable. A data sync writes a new one with {@link Builder} and swaps it in.
+ */
+final class FloodDataFile {
+
+    static final int MAGIC = 0x464C5A44; // "FLZD"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 96;
+    private static final int ZONE_ENTRY_BYTES = 28;
+    /** Zones spanning more grid cells than this are checked by every query instead. */
+    private static final int MAX_CELLS_PER_ZONE = 64;
+
+    private final ByteBuffer buffer;
+    private final long feedVersion;
+    private final int zoneCount;
+    private final int shelterCount;
+    private final double cellDegrees;
+    private final int gridSouth;
+    private final int gridWest;
+    private final int gridRows;
+    private final int gridCols;
+    private final int overflowCount;
+    private final double shelterLonScale;
+    private final int cellStartOffset;
+    private final int cellZonesOffset;
+    private final int overflowOffset;
+    private final int zoneTableOffset;
+    private final int idOrderOffset;
+    private final int coordOffset;
+    private final int shelterOffset;
+    private final int shelterIdOffset;
+    private final int stringOffset;
+
+    private FloodDataFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Not a flood data file");
+        }
+        feedVersion = buffer.getLong(8);
+        zoneCount = buffer.getInt(16);
+        shelterCount = buffer.getInt(20);
+        cellDegrees = buffer.getDouble(24);
+        gridSouth = buffer.getInt(32);
+        gridWest = buffer.getInt(36);
+        gridRows = buffer.getInt(40);
+        gridCols = buffer.getInt(44);
+        overflowCount = buffer.getInt(48);
+        shelterLonScale = buffer.getDouble(52);
+        cellStartOffset = buffer.getInt(60);
+        cellZonesOffset = buffer.getInt(64);
+        overflowOffset = buffer.getInt(68);
+        zoneTableOffset = buffer.getInt(72);
+        idOrderOffset = buffer.getInt(76);
+        coordOffset = buffer.getInt(80);
+        shelterOffset = buffer.getInt(84);
+        shelterIdOffset = buffer.getInt(88);
+        stringOffset = buffer.getInt(92);
+        if (zoneCount < 0 || shelterCount < 0 || gridRows < 0 || gridCols < 0 || !(cellDegrees > 0)
+                || stringOffset < shelterIdOffset || stringOffset > buffer.capacity()
+                || (long) gridRows * gridCols > Integer.MAX_VALUE / 4) {
+            throw new IOException("Corrupt flood data file");
+        }
+    }
+
+    /** Maps {@code file} read-only. The mapping stays valid after the file is replaced or deleted. */
+    @NonNull
+    static FloodDataFile open(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            try {
+                return new FloodDataFile(buffer);
+            } catch (IOException e) {
+                throw new IOException(e.getMessage() + ": " + file.getName());
+            }
+        }
+    }
+
+    long getFeedVersion() {
+        return feedVersion;
+    }
+
+    int getZoneCount() {
+        return zoneCount;
+    }
+
+    int getShelterCount() {
+        return shelterCount;
+    }
+
+    @NonNull
+    String getZoneId(int zone) {
+        return readString(buffer.getInt(zoneEntry(zone) + 24));
+    }
+
+    @NonNull
+    String getShelterId(int shelter) {
+        return readString(buffer.getInt(shelterIdOffset + 4 * shelter));
+    }
+
+    double getShelterLat(int shelter) {
+        return buffer.getInt(shelterOffset + 4 * shelter) / 1e6;
+    }
+
+    double getShelterLon(int shelter) {
+        return buffer.getInt(shelterOffset + 4 * (shelterCount + shelter)) / 1e6;
+    }
+
+    /** A k-d tree over the shelters that reads the mapping directly; indices match this file's. */
+    @NonNull
+    ShelterIndex shelterIndex() {
+        ByteBuffer shelters = slice(shelterOffset, 8 * shelterCount);
+        shelters.limit(4 * shelterCount);
+        ByteBuffer lats = shelters.slice();
+        shelters.limit(8 * shelterCount).position(4 * shelterCount);
+        ByteBuffer lons = shelters.slice();
+        return new ShelterIndex(lats.asIntBuffer(), lons.asIntBuffer(), shelterLonScale);
+    }
+
+    /** Index of the zone with {@code id}, or -1. */
+    int findZone(@NonNull String id) {
+        int lo = 0;
+        int hi = zoneCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int zone = buffer.getInt(idOrderOffset + 4 * mid);
+            int order = getZoneId(zone).compareTo(id);
+            if (order == 0) {
+                return zone;
+            } else if (order < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Decodes one zone into a {@link FloodZone}, for drawing. */
+    @NonNull
+    FloodZone decodeZone(int zone) {
+        int entry = zoneEntry(zone);
+        int count = buffer.getInt(entry + 20);
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        int pos = coordOffset + buffer.getInt(entry + 16);
+        int lat = 0;
+        int lon = 0;
+        for (int i = 0; i < count; i++) {
+            long next = readVarint(pos);
+            lat += (int) next;
+            next = readVarint((int) (next >>> 32));
+            lon += (int) next;
+            pos = (int) (next >>> 32);
+            lats[i] = lat / 1e6;
+            lons[i] = lon / 1e6;
+        }
+        return new FloodZone(getZoneId(zone), lats, lons);
+    }
+
+    /** Whether zone {@code zone} here and {@code otherZone} in {@code other} have the same geometry. */
+    boolean sameGeometry(int zone, @NonNull FloodDataFile other, int otherZone) {
+        int entry = zoneEntry(zone);
+        int otherEntry = other.zoneEntry(otherZone);
+        for (int i = 0; i < 24; i += 4) {
+            if (i != 16 && buffer.getInt(entry + i) != other.buffer.getInt(otherEntry + i)) {
+                return false;
+            }
+        }
+        int start = coordOffset + buffer.getInt(entry + 16);
+        int otherStart = other.coordOffset + other.buffer.getInt(otherEntry + 16);
+        int length = coordEnd(zone) - start;
+        if (other.coordEnd(otherZone) - otherStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(start + i) != other.buffer.get(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of a zone containing the point, or -1. Zones set in {@code skip} are
+     * ignored. Allocates nothing.
+     */
+    int zoneAt(double lat, double lon, @Nullable BitSet skip) {
+        int row = (int) Math.floor(lat / cellDegrees) - gridSouth;
+        int col = (int) Math.floor(lon / cellDegrees) - gridWest;
+        if (row >= 0 && row < gridRows && col >= 0 && col < gridCols) {
+            int cell = row * gridCols + col;
+            int end = buffer.getInt(cellStartOffset + 4 * (cell + 1));
+            for (int i = buffer.getInt(cellStartOffset + 4 * cell); i < end; i++) {
+                int zone = buffer.getInt(cellZonesOffset + 4 * i);
+                if ((skip == null || !skip.get(zone)) && contains(zone, lat, lon)) {
+                    return zone;
+                }
+            }
+        }
+        for (int i = 0; i < overflowCount; i++) {
+            int zone = buffer.getInt(overflowOffset + 4 * i);
+            if ((skip == null || !skip.get(zone)) && contains(zone, lat, lon)) {
+                return zone;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Passes every zone whose bounding box intersects the viewport to {@code out}, once each.
+     * A zone is reported only from the cell holding the south-west corner of its overlap with the
+     * viewport, so no per-query "seen" set is needed.
+     */
+    void query(double south, double west, double north, double east, @Nullable BitSet skip, @NonNull IntConsumer out) {
+        int firstRow = Math.max(0, (int) Math.floor(south / cellDegrees) - gridSouth);
+        int lastRow = Math.min(gridRows - 1, (int) Math.floor(north / cellDegrees) - gridSouth);
+        int firstCol = Math.max(0, (int) Math.floor(west / cellDegrees) - gridWest);
+        int lastCol = Math.min(gridCols - 1, (int) Math.floor(east / cellDegrees) - gridWest);
+        long cells = lastRow < firstRow || lastCol < firstCol ? 0 : (long) (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+
+        if (cells > zoneCount) {
+            for (int zone = 0; zone < zoneCount; zone++) {
+                if ((skip == null || !skip.get(zone)) && intersects(zone, south, west, north, east)) {
+                    out.accept(zone);
+                }
+            }
+            return;
+        }
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int cell = row * gridCols + col;
+                int end = buffer.getInt(cellStartOffset + 4 * (cell + 1));
+                for (int i = buffer.getInt(cellStartOffset + 4 * cell); i < end; i++) {
+                    int zone = buffer.getInt(cellZonesOffset + 4 * i);
+                    if ((skip != null && skip.get(zone)) || !intersects(zone, south, west, north, east)) {
+                        continue;
+                    }
+                    int entry = zoneEntry(zone);
+                    double overlapSouth = Math.max(south, buffer.getInt(entry) / 1e6);
+                    double overlapWest = Math.max(west, buffer.getInt(entry + 4) / 1e6);
+                    int ownerRow = Math.max(firstRow, (int) Math.floor(overlapSouth / cellDegrees) - gridSouth);
+                    int ownerCol = Math.max(firstCol, (int) Math.floor(overlapWest / cellDegrees) - gridWest);
+                    if (ownerRow == row && ownerCol == col) {
+                        out.accept(zone);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < overflowCount; i++) {
+            int zone = buffer.getInt(overflowOffset + 4 * i);
+            if ((skip == null || !skip.get(zone)) && intersects(zone, south, west, north, east)) {
+                out.accept(zone);
+            }
+        }
+    }
+
+    /** The larger side of the zone's bounding box, in degrees; read from the zone table alone. */
+    double zoneSpan(int zone) {
+        int entry = zoneEntry(zone);
+        return Math.max(buffer.getInt(entry + 8) - buffer.getInt(entry), buffer.getInt(entry + 12) - buffer.getInt(entry + 4)) / 1e6;
+    }
+
+    private boolean intersects(int zone, double south, double west, double north, double east) {
+        int entry = zoneEntry(zone);
+        return buffer.getInt(entry) / 1e6 <= north && buffer.getInt(entry + 8) / 1e6 >= south
+                && buffer.getInt(entry + 4) / 1e6 <= east && buffer.getInt(entry + 12) / 1e6 >= west;
+    }
+
+    /** Even-odd ray casting over vertices decoded on the fly; same rule as {@link FloodZone#contains}. */
+    private boolean contains(int zone, double lat, double lon) {
+        int entry = zoneEntry(zone);
+        if (lat < buffer.getInt(entry) / 1e6 || lon < buffer.getInt(entry + 4) / 1e6
+                || lat > buffer.getInt(entry + 8) / 1e6 || lon > buffer.getInt(entry + 12) / 1e6) {
+            return false;
+        }
+        int count = buffer.getInt(entry + 20);
+        int pos = coordOffset + buffer.getInt(entry + 16);
+        long next = readVarint(pos);
+        int latE6 = (int) next;
+        next = readVarint((int) (next >>> 32));
+        int lonE6 = (int) next;
+        pos = (int) (next >>> 32);
+        double firstLat = latE6 / 1e6;
+        double firstLon = lonE6 / 1e6;
+
+        double prevLat = firstLat;
+        double prevLon = firstLon;
+        boolean inside = false;
+        for (int i = 1; i <= count; i++) {
+            double vertexLat;
+            double vertexLon;
+            if (i < count) {
+                next = readVarint(pos);
+                latE6 += (int) next;
+                next = readVarint((int) (next >>> 32));
+                lonE6 += (int) next;
+                pos = (int) (next >>> 32);
+                vertexLat = latE6 / 1e6;
+                vertexLon = lonE6 / 1e6;
+            } else {
+                vertexLat = firstLat;
+                vertexLon = firstLon;
+            }
+            if ((vertexLat > lat) != (prevLat > lat)) {
+                double crossLon = vertexLon + (lat - vertexLat) / (prevLat - vertexLat) * (prevLon - vertexLon);
+                if (lon < crossLon) {
+                    inside = !inside;
+                }
+            }
+            prevLat = vertexLat;
+            prevLon = vertexLon;
+        }
+        return inside;
+    }
+
+    private int zoneEntry(int zone) {
+        return zoneTableOffset + ZONE_ENTRY_BYTES * zone;
+    }
+
+    private int coordEnd(int zone) {
+        return zone + 1 < zoneCount ? coordOffset + buffer.getInt(zoneEntry(zone + 1) + 16) : shelterOffset;
+    }
+
+    /** Reads a zigzag varint at {@code pos}: the value in the low 32 bits, the next position in the high 32. */
+    private long readVarint(int pos) {
+        int raw = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(pos++);
+            raw |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        int value = (raw >>> 1) ^ -(raw & 1);
+        return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private String readString(int offset) {
+        int pos = stringOffset + offset;
+        int length = buffer.getShort(pos) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        slice(pos + 2, length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** A view of {@code length} bytes at {@code offset}; the shared buffer's position is never moved. */
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        return view.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Collects zones and shelters and writes a new file. Zones taken from an existing file with
+     * {@link #copyZone} keep their encoded bytes, so applying a small delta to a large region never
+     * decodes the unchanged polygons.
+     */
+    static final class Builder {
+
+        private final long feedVersion;
+        private final List<String> zoneIds = new ArrayList<>();
+        private int[] zoneBoxes = new int[64];
+        private int[] zoneCoordStart = new int[16];
+        private int[] zoneVertexCount = new int[16];
+        private final ByteArrayOutputStream coordinates = new ByteArrayOutputStream();
+        private final List<String> shelterIds = new ArrayList<>();
+        private double[] shelterLats = new double[16];
+        private double[] shelterLons = new double[16];
+
+        Builder(long feedVersion) {
+            this.feedVersion = feedVersion;
+        }
+
+        int zoneCount() {
+            return zoneIds.size();
+        }
+
+        int shelterCount() {
+            return shelterIds.size();
+        }
+
+        void addZone(@NonNull FloodZone zone) {
+            int count = zone.getVertexCount();
+            int[] box = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            int start = coordinates.size();
+            int prevLat = 0;
+            int prevLon = 0;
+            for (int i = 0; i < count; i++) {
+                int lat = (int) Math.round(zone.getLat(i) * 1e6);
+                int lon = (int) Math.round(zone.getLon(i) * 1e6);
+                writeVarint(lat - prevLat);
+                writeVarint(lon - prevLon);
+                prevLat = lat;
+                prevLon = lon;
+                box[0] = Math.min(box[0], lat);
+                box[1] = Math.min(box[1], lon);
+                box[2] = Math.max(box[2], lat);
+                box[3] = Math.max(box[3], lon);
+            }
+            appendZone(zone.getId(), box, start, count);
+        }
+
+        void copyZone(@NonNull FloodDataFile source, int zone) {
+            int entry = source.zoneEntry(zone);
+            int[] box = new int[4];
+            for (int i = 0; i < 4; i++) {
+                box[i] = source.buffer.getInt(entry + 4 * i);
+            }
+            int from = source.coordOffset + source.buffer.getInt(entry + 16);
+            int to = source.coordEnd(zone);
+            int start = coordinates.size();
+            for (int i = from; i < to; i++) {
+                coordinates.write(source.buffer.get(i));
+            }
+            appendZone(source.getZoneId(zone), box, start, source.buffer.getInt(entry + 20));
+        }
+
+        void addShelter(@NonNull String id, double lat, double lon) {
+            int i = shelterIds.size();
+            if (i == shelterLats.length) {
+                shelterLats = Arrays.copyOf(shelterLats, i * 2);
+                shelterLons = Arrays.copyOf(shelterLons, i * 2);
+            }
+            // Rounded here so the tree is built on exactly the values that get stored.
+            shelterLats[i] = Math.round(lat * 1e6) / 1e6;
+            shelterLons[i] = Math.round(lon * 1e6) / 1e6;
+            shelterIds.add(id);
+        }
+
+        private void appendZone(String id, int[] box, int start, int vertexCount) {
+            int i = zoneIds.size();
+            if (i == zoneCoordStart.length) {
+                zoneCoordStart = Arrays.copyOf(zoneCoordStart, i * 2);
+                zoneVertexCount = Arrays.copyOf(zoneVertexCount, i * 2);
+                zoneBoxes = Arrays.copyOf(zoneBoxes, i * 8);
+            }
+            System.arraycopy(box, 0, zoneBoxes, 4 * i, 4);
+            zoneCoordStart[i] = start;
+            zoneVertexCount[i] = vertexCount;
+            zoneIds.add(id);
+        }
+
+        private void writeVarint(int value) {
+            int raw = (value << 1) ^ (value >> 31);
+            while ((raw & ~0x7F) != 0) {
+                coordinates.write((raw & 0x7F) | 0x80);
+                raw >>>= 7;
+            }
+            coordinates.write(raw);
+        }
+
+        void writeTo(@NonNull File file) throws IOException {
+            int zoneCount = zoneIds.size();
+
+            // Grid: start at the live index's cell size and coarsen until there are about as many
+            // cells as zones, so the table grows with the data rather than with the region's area.
+            int south = Integer.MAX_VALUE, west = Integer.MAX_VALUE;
+            int north = Integer.MIN_VALUE, east = Integer.MIN_VALUE;
+            for (int i = 0; i < zoneCount; i++) {
+                south = Math.min(south, zoneBoxes[4 * i]);
+                west = Math.min(west, zoneBoxes[4 * i + 1]);
+                north = Math.max(north, zoneBoxes[4 * i + 2]);
+                east = Math.max(east, zoneBoxes[4 * i + 3]);
+            }
+            double cellDegrees = FloodZoneIndex.DEFAULT_CELL_DEGREES;
+            int gridSouth = 0, gridWest = 0, rows = 0, cols = 0;
+            if (zoneCount > 0) {
+                while (true) {
+                    gridSouth = cell(south, cellDegrees);
+                    gridWest = cell(west, cellDegrees);
+                    rows = cell(north, cellDegrees) - gridSouth + 1;
+                    cols = cell(east, cellDegrees) - gridWest + 1;
+                    if ((long) rows * cols <= 2L * zoneCount + 16) {
+                        break;
+                    }
+                    cellDegrees *= 2;
+                }
+            }
+
+            int cellCount = rows * cols;
+            int[] cellStart = new int[cellCount + 1];
+            int[] overflow = new int[zoneCount];
+            int overflowCount = 0;
+            boolean[] oversized = new boolean[zoneCount];
+            for (int pass = 0; pass < 2; pass++) {
+                int[] fill = pass == 1 ? Arrays.copyOf(cellStart, cellCount) : null;
+                int[] cellZones = pass == 1 ? new int[cellStart[cellCount]] : null;
+                for (int i = 0; i < zoneCount; i++) {
+                    int firstRow = cell(zoneBoxes[4 * i], cellDegrees) - gridSouth;
+                    int firstCol = cell(zoneBoxes[4 * i + 1], cellDegrees) - gridWest;
+                    int lastRow = cell(zoneBoxes[4 * i + 2], cellDegrees) - gridSouth;
+                    int lastCol = cell(zoneBoxes[4 * i + 3], cellDegrees) - gridWest;
+                    if (pass == 0 && (long) (lastRow - firstRow + 1) * (lastCol - firstCol + 1) > MAX_CELLS_PER_ZONE) {
+                        oversized[i] = true;
+                        overflow[overflowCount++] = i;
+                    }
+                    if (oversized[i]) {
+                        continue;
+                    }
+                    for (int row = firstRow; row <= lastRow; row++) {
+                        for (int col = firstCol; col <= lastCol; col++) {
+                            int c = row * cols + col;
+                            if (pass == 0) {
+                                cellStart[c + 1]++;
+                            } else {
+                                cellZones[fill[c]++] = i;
+                            }
+                        }
+                    }
+                }
+                if (pass == 0) {
+                    for (int c = 0; c < cellCount; c++) {
+                        cellStart[c + 1] += cellStart[c];
+                    }
+                } else {
+                    write(file, cellDegrees, gridSouth, gridWest, rows, cols, cellStart, cellZones,
+                            Arrays.copyOf(overflow, overflowCount));
+                }
+            }
+        }
+
+        private void write(File file, double cellDegrees, int gridSouth, int gridWest, int rows, int cols,
+                           int[] cellStart, int[] cellZones, int[] overflow) throws IOException {
+            int zoneCount = zoneIds.size();
+            int shelterCount = shelterIds.size();
+
+            Integer[] byId = new Integer[zoneCount];
+            for (int i = 0; i < zoneCount; i++) {
+                byId[i] = i;
+            }
+            Arrays.sort(byId, (a, b) -> zoneIds.get(a).compareTo(zoneIds.get(b)));
+
+            ShelterIndex tree = new ShelterIndex(Arrays.copyOf(shelterLats, shelterCount),
+                    Arrays.copyOf(shelterLons, shelterCount));
+
+            ByteArrayOutputStream strings = new ByteArrayOutputStream();
+            DataOutputStream stringOut = new DataOutputStream(strings);
+            int[] zoneIdOffset = new int[zoneCount];
+            for (int i = 0; i < zoneCount; i++) {
+                zoneIdOffset[i] = strings.size();
+                writeString(stringOut, zoneIds.get(i));
+            }
+            int[] shelterIdOffset = new int[shelterCount];
+            for (int k = 0; k < shelterCount; k++) {
+                shelterIdOffset[k] = strings.size();
+                writeString(stringOut, shelterIds.get(tree.treeOrder(k)));
+            }
+
+            long cellStartOffset = HEADER_BYTES;
+            long cellZonesOffset = cellStartOffset + 4L * cellStart.length;
+            long overflowOffset = cellZonesOffset + 4L * cellZones.length;
+            long zoneTableOffset = overflowOffset + 4L * overflow.length;
+            long idOrderOffset = zoneTableOffset + (long) ZONE_ENTRY_BYTES * zoneCount;
+            long coordOffset = idOrderOffset + 4L * zoneCount;
+            long shelterOffset = coordOffset + coordinates.size();
+            long shelterIdOffsetStart = shelterOffset + 8L * shelterCount;
+            long stringOffset = shelterIdOffsetStart + 4L * shelterCount;
+            if (stringOffset + strings.size() > Integer.MAX_VALUE) {
+                throw new IOException("Flood data too large for one file");
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(feedVersion);
+                out.writeInt(zoneCount);
+                out.writeInt(shelterCount);
+                out.writeDouble(cellDegrees);
+                out.writeInt(gridSouth);
+                out.writeInt(gridWest);
+                out.writeInt(rows);
+                out.writeInt(cols);
+                out.writeInt(overflow.length);
+                out.writeDouble(tree.getLonScale());
+                out.writeInt((int) cellStartOffset);
+                out.writeInt((int) cellZonesOffset);
+                out.writeInt((int) overflowOffset);
+                out.writeInt((int) zoneTableOffset);
+                out.writeInt((int) idOrderOffset);
+                out.writeInt((int) coordOffset);
+                out.writeInt((int) shelterOffset);
+                out.writeInt((int) shelterIdOffsetStart);
+                out.writeInt((int) stringOffset);
+
+                writeInts(out, cellStart);
+                writeInts(out, cellZones);
+                writeInts(out, overflow);
+                for (int i = 0; i < zoneCount; i++) {
+                    writeInts(out, zoneBoxes, 4 * i, 4);
+                    out.writeInt(zoneCoordStart[i]);
+                    out.writeInt(zoneVertexCount[i]);
+                    out.writeInt(zoneIdOffset[i]);
+                }
+                for (Integer zone : byId) {
+                    out.writeInt(zone);
+                }
+                coordinates.writeTo(out);
+                for (int k = 0; k < shelterCount; k++) {
+                    out.writeInt((int) Math.round(shelterLats[tree.treeOrder(k)] * 1e6));
+                }
+                for (int k = 0; k < shelterCount; k++) {
+                    out.writeInt((int) Math.round(shelterLons[tree.treeOrder(k)] * 1e6));
+                }
+                writeInts(out, shelterIdOffset);
+                strings.writeTo(out);
+            }
+        }
+
+        private static int cell(int degreesE6, double cellDegrees) {
+            return (int) Math.floor(degreesE6 / 1e6 / cellDegrees);
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+            writeInts(out, values, 0, values.length);
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values, int from, int count) throws IOException {
+            for (int i = from; i < from + count; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("Id too long: " + value.substring(0, 32) + "...");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide copy of the flood zone and shelter feed, kept current with versioned deltas.
+ *
+ * The first sync downloads {@code snapshot.json}; after that only {@code deltas/{version}.json}
+ * files are fetched until the local version matches {@code version.json}. A full snapshot is taken
+ * again only when the server has dropped the deltas we would need. The merged state is stored as a
+ * {@link FloodDataFile}, which the live {@link FloodZoneIndex} and shelter index query through a
+ * memory mapping, so startup reads no GeoJSON and heap use does not grow with the region.
+ *
+ * A delta does not rewrite that file. Its zones are put into and removed from the live index as
+ * overlays on the file, and the delta document itself is kept in a journal next to the file, which
+ * is replayed on top of it at startup. Only once the journal holds more than
+ * {@link #MAX_OVERLAY_CHANGES} changes, or a delta touches shelters (whose k-d tree lives in the
+ * file), is everything compacted into a new file and the journal emptied. A new file is swapped in
+ * under the same index object; zones whose geometry did not change keep their identity, so the map
+ * only redraws what changed. Before anything has been synced, a small bundled seed is converted
+ * into the first file.
+ *
+ * The feed location comes from {@code BuildConfig.FLOOD_FEED_URL}; debug builds point at
+ * {@code http://10.0.2.2:8000/}, i.e. a static file server on the developer's machine serving the
+ * layout described in {@link FloodFeedParser}.
+ */
+public final class FloodDataSync {
+
+    private static final String TAG = "FloodDataSync";
+    private static final String STATE_DIR = "flood_feed";
+    private static final String STATE_FILE = "zones.flzd";
+    private static final String JOURNAL_DIR = "journal";
+    private static final String JOURNAL_SUFFIX = ".json";
+    /** Journaled changes (features upserted or deleted) beyond which the file is rewritten. */
+    private static final int MAX_OVERLAY_CHANGES = 256;
+    private static final String SEED_ASSET = "flood_feed_seed.geojson";
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    /** Stops a misbehaving server from keeping us in the delta loop forever. */
+    private static final int MAX_DELTAS_PER_SYNC = 500;
+
+    private static volatile FloodDataSync instance;
+
+    private final Context appContext;
+    private final File stateFile;
+    // Delta documents applied on top of stateFile, named after the version each one starts from.
+    private final File journalDir;
+    private final String feedUrl;
+    // All reads and writes of the state below happen on this thread.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final FloodZoneIndex zones = new FloodZoneIndex();
+    private FloodDataFile current;
+    // Features changed since current was written, by id; null for a delete.
+    private final Map<String, FloodFeedParser.Feature> overlay = new LinkedHashMap<>();
+    private boolean sheltersChanged;
+    private final CompletableFuture<Void> loaded;
+    private volatile ShelterIndex shelters = new ShelterIndex(new double[0], new double[0]);
+    private volatile long version;
+    private CompletableFuture<Boolean> inFlight;
+    /** When the last sync attempt ended, successful or not; 0 before the first one. */
+    private volatile long lastSyncElapsedMs;
+
+    private FloodDataSync(Context appContext) {
+        this.appContext = appContext;
+        stateFile = new File(new File(appContext.getFilesDir(), STATE_DIR), STATE_FILE);
+        journalDir = new File(stateFile.getParentFile(), JOURNAL_DIR);
+        feedUrl = BuildConfig.FLOOD_FEED_URL;
+        loaded = CompletableFuture.runAsync(this::loadLocal, executor);
+    }
+
+    @NonNull
+    public static FloodDataSync getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (FloodDataSync.class) {
+                if (instance == null) {
+                    instance = new FloodDataSync(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /** Live zone index. Its contents are swapped in place, so callers can keep the reference. */
+    @NonNull
+    public FloodZoneIndex getZones() {
+        return zones;
+    }
+
+    /** Current shelters. A new index is published whenever the shelter set changes. */
+    @NonNull
+    public ShelterIndex getShelters() {
+        return shelters;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Time since the last sync attempt ended, or {@code Long.MAX_VALUE} if none has yet. A sync
+     * still running does not count, so callers that skip a recent sync still join a running one.
+     */
+    public long millisSinceLastSync() {
+        long last = lastSyncElapsedMs;
+        return last == 0 ? Long.MAX_VALUE : SystemClock.elapsedRealtime() - last;
+    }
+
+    /** Completes once the locally stored (or bundled) data has been loaded. */
+    @NonNull
+    public CompletableFuture<Void> whenLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Brings the data up to the feed's latest version. Completes with whether anything changed,
+     * or exceptionally if the feed could not be reached. Concurrent calls share one sync.
+     */
+    @NonNull
+    public synchronized CompletableFuture<Boolean> sync() {
+        if (inFlight != null && !inFlight.isDone()) {
+            return inFlight;
+        }
+        if (feedUrl.isEmpty()) {
+            return loaded.thenApply(ignored -> false);
+        }
+        inFlight = loaded.thenApplyAsync(ignored -> {
+            try {
+                return syncNow();
+            } catch (IOException e) {
+                throw new RuntimeException("Flood feed sync failed", e);
+            } finally {
+                lastSyncElapsedMs = SystemClock.elapsedRealtime();
+            }
+        }, executor);
+        return inFlight;
+    }
+
+    private boolean syncNow() throws IOException {
+        FloodFeedParser.Manifest manifest;
+        try (InputStream in = open("version.json")) {
+            manifest = FloodFeedParser.parseManifest(in);
+        }
+        if (manifest.version == version) {
+            return false;
+        }
+
+        boolean needSnapshot = current == null || version == 0 || version < manifest.minDeltaFrom
+                || version > manifest.version;
+        int applied = 0;
+        try {
+            while (!needSnapshot && version < manifest.version && applied < MAX_DELTAS_PER_SYNC) {
+                File journaled = new File(journalDir, version + JOURNAL_SUFFIX);
+                File temp = new File(journalDir, version + JOURNAL_SUFFIX + ".tmp");
+                try {
+                    download("deltas/" + version + ".json", temp);
+                } catch (FileNotFoundException e) {
+                    Log.i(TAG, "Delta from version " + version + " is gone; taking a snapshot.");
+                    needSnapshot = true;
+                    break;
+                }
+                FloodFeedParser.Update delta;
+                try (InputStream in = new BufferedInputStream(new FileInputStream(temp))) {
+                    delta = FloodFeedParser.parseUpdate(in);
+                }
+                if (delta.version <= version) {
+                    //noinspection ResultOfMethodCallIgnored
+                    temp.delete();
+                    throw new IOException("Delta from " + version + " does not advance the version");
+                }
+                if (!temp.renameTo(journaled)) {
+                    throw new IOException("Could not journal delta " + journaled);
+                }
+                applyDelta(delta);
+                applied++;
+            }
+        } finally {
+            // Whatever was applied is journaled; fold it into a new file now if it has grown too big.
+            if (!needSnapshot && (sheltersChanged || overlay.size() > MAX_OVERLAY_CHANGES)) {
+                compact();
+            }
+        }
+
+        if (needSnapshot) {
+            FloodFeedParser.Update snapshot;
+            try (InputStream in = open("snapshot.json")) {
+                snapshot = FloodFeedParser.parseUpdate(in);
+            }
+            FloodDataFile.Builder builder = new FloodDataFile.Builder(snapshot.version);
+            for (FloodFeedParser.Feature feature : snapshot.upserts) {
+                add(builder, feature);
+            }
+            commit(builder);
+            Log.i(TAG, "Loaded flood feed snapshot version " + version);
+        } else {
+            Log.i(TAG, "Applied " + applied + " flood feed deltas, now at version " + version);
+        }
+        return true;
+    }
+
+    /**
+     * Applies one delta to the live index as put/remove overlays on the current file, without
+     * rewriting it. Shelter changes are only recorded; they need a new file for the shelter tree.
+     */
+    private void applyDelta(FloodFeedParser.Update delta) {
+        for (String id : delta.deletes) {
+            overlay.put(id, null);
+            if (!zones.remove(id)) {
+                sheltersChanged = true; // Not a zone, so most likely a shelter.
+            }
+        }
+        for (FloodFeedParser.Feature feature : delta.upserts) {
+            overlay.put(feature.id, feature);
+            if (feature.zone != null) {
+                zones.put(feature.zone);
+            } else {
+                sheltersChanged = true;
+            }
+        }
+        version = delta.version;
+    }
+
+    /** Writes the file plus every overlaid change into a new file and starts an empty journal. */
+    private void compact() throws IOException {
+        FloodDataFile.Builder builder = new FloodDataFile.Builder(version);
+        // Unchanged zones are copied as encoded bytes, never decoded.
+        for (int zone = 0; zone < current.getZoneCount(); zone++) {
+            if (!overlay.containsKey(current.getZoneId(zone))) {
+                builder.copyZone(current, zone);
+            }
+        }
+        for (int shelter = 0; shelter < current.getShelterCount(); shelter++) {
+            String id = current.getShelterId(shelter);
+            if (!overlay.containsKey(id)) {
+                builder.addShelter(id, current.getShelterLat(shelter), current.getShelterLon(shelter));
+            }
+        }
+        for (FloodFeedParser.Feature feature : overlay.values()) {
+            if (feature != null) {
+                add(builder, feature);
+            }
+        }
+        int changes = overlay.size();
+        commit(builder);
+        Log.i(TAG, "Compacted " + changes + " journaled flood feed changes into version " + version);
+    }
+
+    private static void add(FloodDataFile.Builder builder, FloodFeedParser.Feature feature) {
+        if (feature.zone != null) {
+            builder.addZone(feature.zone);
+        } else {
+            builder.addShelter(feature.id, feature.lat, feature.lon);
+        }
+    }
+
+    private void loadLocal() {
+        try {
+            if (!stateFile.isFile()) {
+                FloodFeedParser.Update seed;
+                try (InputStream in = appContext.getAssets().open(SEED_ASSET)) {
+                    seed = FloodFeedParser.parseUpdate(in);
+                }
+                FloodDataFile.Builder builder = new FloodDataFile.Builder(seed.version);
+                for (FloodFeedParser.Feature feature : seed.upserts) {
+                    add(builder, feature);
+                }
+                commit(builder);
+            } else {
+                publish(FloodDataFile.open(stateFile));
+                replayJournal();
+            }
+            Log.d(TAG, "Loaded " + current.getZoneCount() + " zones and " + current.getShelterCount()
+                    + " shelters at version " + version + " with " + overlay.size() + " journaled changes");
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not load stored flood data; starting empty.", e);
+        }
+    }
+
+    /**
+     * Re-applies the journaled deltas that follow on from the stored file. A journal that does not
+     * chain up is cut off there; the next sync fetches those deltas again.
+     */
+    private void replayJournal() throws IOException {
+        List<File> unused = new ArrayList<>();
+        File[] files = journalDir.listFiles();
+        if (files != null) {
+            Collections.addAll(unused, files);
+        }
+        try {
+            File next;
+            while ((next = new File(journalDir, version + JOURNAL_SUFFIX)).isFile()) {
+                unused.remove(next);
+                FloodFeedParser.Update delta;
+                try (InputStream in = new BufferedInputStream(new FileInputStream(next))) {
+                    delta = FloodFeedParser.parseUpdate(in);
+                }
+                if (delta.version <= version) {
+                    unused.add(next);
+                    break;
+                }
+                applyDelta(delta);
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Stopped replaying the flood feed journal at version " + version, e);
+        }
+        for (File file : unused) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        if (sheltersChanged || overlay.size() > MAX_OVERLAY_CHANGES) {
+            compact();
+        }
+    }
+
+    /** Writes the new file next to the old one, renames it into place and maps it. */
+    private void commit(FloodDataFile.Builder builder) throws IOException {
+        File directory = stateFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File temp = new File(directory, STATE_FILE + ".tmp");
+        try {
+            builder.writeTo(temp);
+            if (!temp.renameTo(stateFile)) {
+                throw new IOException("Could not replace " + stateFile);
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+        // Mappings of the previous file stay valid; queries in flight finish against it.
+        publish(FloodDataFile.open(stateFile));
+
+        // Everything journaled is in the new file now.
+        overlay.clear();
+        sheltersChanged = false;
+        File[] journaled = journalDir.listFiles();
+        if (journaled != null) {
+            for (File file : journaled) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private void publish(FloodDataFile file) {
+        current = file;
+        zones.setBase(file);
+        shelters = file.shelterIndex();
+        version = file.getFeedVersion();
+    }
+
+    /** Saves a feed document to {@code target}; a missing one surfaces as {@link FileNotFoundException}. */
+    private void download(String path, File target) throws IOException {
+        if (!journalDir.isDirectory() && !journalDir.mkdirs()) {
+            throw new IOException("Could not create " + journalDir);
+        }
+        try (InputStream in = open(path); OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /** Opens a feed document; a missing one surfaces as {@link FileNotFoundException}. */
+    private InputStream open(String path) throws IOException {
+        URLConnection connection = new URL(feedUrl + path).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            int code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                http.disconnect();
+                throw new FileNotFoundException(path);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                http.disconnect();
+                throw new IOException("HTTP error code: " + code + " for " + path);
+            }
+        }
+        return new BufferedInputStream(connection.getInputStream());
+    }
+}
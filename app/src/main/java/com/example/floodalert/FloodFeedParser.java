@@ -0,0 +1,248 @@
+package com.example.floodalert;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader for the flood data feed used by {@link FloodDataSync}.
+ *
+ * The feed is plain GeoJSON: a {@code Polygon} feature is a flood zone (outer ring only; holes are
+ * ignored) and a {@code Point} feature is a shelter. Feature ids come from the feature's
+ * {@code id} or, failing that, {@code properties.id}. Three documents are understood:
+ *
+ * <pre>
+ * version.json       {"version": N, "min_delta_from": K}
+ * snapshot.json      {"type": "FeatureCollection", "version": N, "features": [...]}
+ * deltas/{from}.json {"version": M, "upserts": [features], "deletes": ["id", ...]}
+ * </pre>
+ */
+final class FloodFeedParser {
+
+    private static final String TAG = "FloodFeedParser";
+    private static final int INITIAL_CAPACITY = 16;
+
+    private FloodFeedParser() {}
+
+    /** One feed feature: a zone when {@link #zone} is set, otherwise a shelter point. */
+    static final class Feature {
+        final String id;
+        @Nullable
+        final FloodZone zone;
+        final double lat;
+        final double lon;
+
+        Feature(String id, @Nullable FloodZone zone, double lat, double lon) {
+            this.id = id;
+            this.zone = zone;
+            this.lat = lat;
+            this.lon = lon;
+        }
+    }
+
+    /** Result of {@code version.json}. */
+    static final class Manifest {
+        final long version;
+        final long minDeltaFrom;
+
+        Manifest(long version, long minDeltaFrom) {
+            this.version = version;
+            this.minDeltaFrom = minDeltaFrom;
+        }
+    }
+
+    /** A snapshot or delta. For a snapshot {@link #deletes} is empty. */
+    static final class Update {
+        final long version;
+        final List<Feature> upserts;
+        final List<String> deletes;
+
+        Update(long version, List<Feature> upserts, List<String> deletes) {
+            this.version = version;
+            this.upserts = upserts;
+            this.deletes = deletes;
+        }
+    }
+
+    @NonNull
+    static Manifest parseManifest(@NonNull InputStream in) throws IOException {
+        long version = 0;
+        long minDeltaFrom = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("version".equals(name)) {
+                    version = reader.nextLong();
+                } else if ("min_delta_from".equals(name)) {
+                    minDeltaFrom = reader.nextLong();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return new Manifest(version, minDeltaFrom);
+    }
+
+    /** Parses either a snapshot ({@code features}) or a delta ({@code upserts}/{@code deletes}). */
+    @NonNull
+    static Update parseUpdate(@NonNull InputStream in) throws IOException {
+        long version = 0;
+        List<Feature> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("version".equals(name)) {
+                    version = reader.nextLong();
+                } else if ("features".equals(name) || "upserts".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Feature feature = readFeature(reader);
+                        if (feature != null) {
+                            upserts.add(feature);
+                        }
+                    }
+                    reader.endArray();
+                } else if ("deletes".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        deletes.add(reader.nextString());
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return new Update(version, upserts, deletes);
+    }
+
+    @Nullable
+    private static Feature readFeature(JsonReader reader) throws IOException {
+        String id = null;
+        String propertyId = null;
+        String geometryType = null;
+        double[][] ring = null;
+        double[] point = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("id".equals(name) && reader.peek() != JsonToken.NULL) {
+                id = reader.nextString();
+            } else if ("properties".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("id".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                        propertyId = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if ("geometry".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String geometryName = reader.nextName();
+                    if ("type".equals(geometryName)) {
+                        geometryType = reader.nextString();
+                    } else if ("coordinates".equals(geometryName)) {
+                        // Coordinates may come before "type", so read by shape.
+                        reader.beginArray();
+                        if (!reader.hasNext()) {
+                            // Empty geometry; the feature is skipped below.
+                        } else if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                            ring = readRing(reader);
+                            while (reader.hasNext()) {
+                                reader.skipValue(); // holes
+                            }
+                        } else {
+                            point = readPosition(reader);
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (id == null) {
+            id = propertyId;
+        }
+        if (id == null) {
+            Log.w(TAG, "Skipping feature without an id");
+            return null;
+        }
+        if ("Polygon".equals(geometryType) && ring != null) {
+            if (ring[0].length < 3) {
+                Log.w(TAG, "Skipping degenerate zone " + id);
+                return null;
+            }
+            return new Feature(id, new FloodZone(id, ring[0], ring[1]), 0, 0);
+        }
+        if ("Point".equals(geometryType) && point != null) {
+            return new Feature(id, null, point[1], point[0]);
+        }
+        Log.w(TAG, "Skipping feature " + id + " with unsupported geometry " + geometryType);
+        return null;
+    }
+
+    /** Reads one linear ring into {lats, lons}, dropping the repeated closing vertex. */
+    private static double[][] readRing(JsonReader reader) throws IOException {
+        double[] lats = new double[INITIAL_CAPACITY];
+        double[] lons = new double[INITIAL_CAPACITY];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginArray();
+            double lon = reader.nextDouble();
+            double lat = reader.nextDouble();
+            while (reader.hasNext()) {
+                reader.skipValue(); // altitude
+            }
+            reader.endArray();
+            if (count == lats.length) {
+                lats = Arrays.copyOf(lats, count * 2);
+                lons = Arrays.copyOf(lons, count * 2);
+            }
+            lats[count] = lat;
+            lons[count] = lon;
+            count++;
+        }
+        reader.endArray();
+        if (count > 1 && lats[0] == lats[count - 1] && lons[0] == lons[count - 1]) {
+            count--;
+        }
+        return new double[][]{Arrays.copyOf(lats, count), Arrays.copyOf(lons, count)};
+    }
+
+    /** Reads the rest of a position array that has already been opened: lon, lat[, alt]. */
+    private static double[] readPosition(JsonReader reader) throws IOException {
+        double lon = reader.nextDouble();
+        double lat = reader.nextDouble();
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        return new double[]{lon, lat};
+    }
+}
@@ -0,0 +1,551 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Process-wide source of Open-Meteo forecast data shared by every screen.
+ *
+ * Requests are keyed by the series kind and the geohash cell of the location, so two screens
+ * asking for the same cell at the same time share one HTTP call. Every download is written to a
+ * {@link ForecastDiskCache}; a cached entry younger than {@link #FRESH_TTL_MS} is served without
+ * touching the network, and an older one (up to {@link #MAX_STALE_AGE_MS}) is served immediately
+ * while a background refresh runs. This keeps the app answering when there is no signal.
+ * All network work runs on a small bounded pool instead of one executor per activity.
+ *
+ * Risk thresholds are per river: the first check in a cell downloads its discharge history once,
+ * reduces it to a {@link DischargeClimatology} while streaming, and keeps only the two
+ * percentiles. Later checks in the cell, and batch evaluation, are local arithmetic. History
+ * downloads are queued on their own thread, one at a time, so they never hold up forecasts.
+ */
+public final class FloodForecastRepository {
+
+    private static final String TAG = "FloodForecastRepo";
+
+    // API 1: River Flood Risk (GloFAS)
+    private static final String OPEN_METEO_FLOOD_API_URL = "https://api.open-meteo.com/v1/flood?latitude=%.3f&longitude=%.3f&daily=river_discharge&forecast_days=3";
+    // API 2: Pluvial Flood Risk (Heavy Rain)
+    private static final String OPEN_METEO_WEATHER_API_URL = "https://api.open-meteo.com/v1/forecast?latitude=%.3f&longitude=%.3f&daily=precipitation_sum&forecast_days=3&timezone=auto";
+
+    // Hourly form of API 2 for an explicit hour range (UTC), so a refresh asks only for what it lacks
+    private static final String OPEN_METEO_HOURLY_WEATHER_API_URL = "https://api.open-meteo.com/v1/forecast?latitude=%.3f&longitude=%.3f&hourly=precipitation&start_hour=%s&end_hour=%s";
+
+    // Batch form of API 1: comma-separated coordinate lists, answered with one object per coordinate
+    private static final String OPEN_METEO_FLOOD_BATCH_URL = "https://api.open-meteo.com/v1/flood?latitude=%s&longitude=%s&daily=river_discharge&forecast_days=3";
+    // History form of API 1: the cell's own record, read once to set its risk thresholds
+    private static final String OPEN_METEO_FLOOD_HISTORY_URL = "https://api.open-meteo.com/v1/flood?latitude=%.3f&longitude=%.3f&daily=river_discharge&start_date=%d-01-01&end_date=%d-12-31";
+    /** Keeps batch URLs well under common 8 KB request-line limits. */
+    private static final int MAX_LOCATIONS_PER_REQUEST = 100;
+
+    /** GloFAS publishes once a day, so an hour-old series is as good as a new one. */
+    private static final long FRESH_TTL_MS = 60 * 60 * 1000L;
+    /** Past the 3-day forecast horizon a cached series says nothing about today. */
+    private static final long MAX_STALE_AGE_MS = 3 * 24 * 60 * 60 * 1000L;
+    private static final long DISK_CACHE_BYTES = 256 * 1024L;
+    private static final String DISK_CACHE_DIR = "forecast_cache";
+    private static final int NETWORK_THREADS = 3;
+    /** Hours kept behind "now", so the risk engine can sum the last day's rain. */
+    private static final int HOURLY_PAST_HOURS = 24;
+    private static final int HOURLY_FORECAST_HOURS = 72;
+    /** Weather models rerun every few hours; stored forecast hours older than this may be revised. */
+    private static final long FORECAST_REVISION_MS = 3 * 60 * 60 * 1000L;
+    /** Years of history behind the thresholds; twenty gives P99 about seventy days above it. */
+    private static final int CLIMATOLOGY_YEARS = 20;
+    /** A river's record barely moves in a year; refresh it after that. */
+    private static final long CLIMATOLOGY_TTL_MS = 365 * 24 * 60 * 60 * 1000L;
+    /** After a failed history download, wait this long before asking again for the same cell. */
+    private static final long CLIMATOLOGY_RETRY_MS = 60 * 60 * 1000L;
+    /** Geohash cells about 5 km across, matching the GloFAS grid the history comes from. */
+    private static final int CLIMATOLOGY_PRECISION = 5;
+    private static final String CLIMATOLOGY_PREFS = "discharge_climatology";
+    /** New cells whose history one batch evaluation may start downloading; the rest wait a run. */
+    private static final int MAX_HISTORY_FETCHES_PER_RUN = 2;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private static volatile FloodForecastRepository instance;
+
+    private final ExecutorService networkExecutor;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    // History downloads are large; queued one at a time so they never crowd out forecast requests.
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor(new NetworkThreadFactory());
+    private final ForecastDiskCache diskCache;
+    private final ConcurrentHashMap<String, CompletableFuture<ForecastSeries>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ForecastSeries> recent = new ConcurrentHashMap<>();
+    // Hourly series per kind and cell; each is only touched by the one request in flight for its key
+    private final ConcurrentHashMap<String, HourlyRing> hourlyRings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> hourlyRevisedAt = new ConcurrentHashMap<>();
+    private final SharedPreferences climatologyPrefs;
+    private final ConcurrentHashMap<String, RiskEngine> engines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<RiskEngine>> climatologyInFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> climatologyFailedAt = new ConcurrentHashMap<>();
+
+    private FloodForecastRepository(Context appContext) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(NETWORK_THREADS, NETWORK_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NetworkThreadFactory());
+        pool.allowCoreThreadTimeOut(true);
+        networkExecutor = pool;
+        diskCache = new ForecastDiskCache(new File(appContext.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_BYTES);
+        climatologyPrefs = appContext.getSharedPreferences(CLIMATOLOGY_PREFS, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    public static FloodForecastRepository getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (FloodForecastRepository.class) {
+                if (instance == null) {
+                    instance = new FloodForecastRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Daily GloFAS river discharge (m³/s) for the cell containing the given location.
+     *
+     * @param onRevalidated called on a background thread with fresh data when the returned
+     *                      series was served stale from disk; may be null.
+     */
+    @NonNull
+    public CompletableFuture<ForecastSeries> getRiverDischarge(double lat, double lon, @Nullable Consumer<ForecastSeries> onRevalidated) {
+        return load(ForecastSeries.Kind.RIVER_DISCHARGE, lat, lon, onRevalidated);
+    }
+
+    /**
+     * Daily precipitation sum (mm) for the cell containing the given location.
+     *
+     * @param onRevalidated see {@link #getRiverDischarge(double, double, Consumer)}.
+     */
+    @NonNull
+    public CompletableFuture<ForecastSeries> getPrecipitation(double lat, double lon, @Nullable Consumer<ForecastSeries> onRevalidated) {
+        return load(ForecastSeries.Kind.PRECIPITATION, lat, lon, onRevalidated);
+    }
+
+    /**
+     * Hourly precipitation (mm per hour) for the cell containing the given location: the last
+     * {@value #HOURLY_PAST_HOURS} hours and the next {@value #HOURLY_FORECAST_HOURS}. Refreshes
+     * download only the hours that are missing or may have been revised.
+     *
+     * @param onRevalidated see {@link #getRiverDischarge(double, double, Consumer)}.
+     */
+    @NonNull
+    public CompletableFuture<ForecastSeries> getHourlyPrecipitation(double lat, double lon, @Nullable Consumer<ForecastSeries> onRevalidated) {
+        return load(ForecastSeries.Kind.HOURLY_PRECIPITATION, lat, lon, onRevalidated);
+    }
+
+    /**
+     * Scores every place against its river discharge forecast and returns them most urgent first.
+     *
+     * Places are grouped by geohash cell, cells with a fresh cached series are answered locally,
+     * and the rest are fetched with one multi-coordinate request per {@link #MAX_LOCATIONS_PER_REQUEST}
+     * cells. If a batch fails, cells fall back to a stale cached series when one exists; places
+     * with no data at all are returned last with {@link PlaceRisk#hasData()} false.
+     */
+    @NonNull
+    public CompletableFuture<List<PlaceRisk>> evaluatePlaces(@NonNull List<WatchedPlace> places) {
+        ForecastSeries.Kind kind = ForecastSeries.Kind.RIVER_DISCHARGE;
+        CompletableFuture<List<PlaceRisk>> result = new CompletableFuture<>();
+
+        diskExecutor.execute(() -> {
+            Map<String, ForecastSeries> byCell = new ConcurrentHashMap<>();
+            Map<String, ForecastSeries> staleByCell = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            long now = System.currentTimeMillis();
+
+            for (WatchedPlace place : places) {
+                String cell = GeoHash.encode(place.getLatitude(), place.getLongitude(), GeoHash.FORECAST_PRECISION);
+                if (byCell.containsKey(cell) || staleByCell.containsKey(cell) || missing.contains(cell)) {
+                    continue;
+                }
+                String key = kind + ":" + cell;
+                ForecastSeries cached = recent.get(key);
+                if (cached == null) {
+                    cached = diskCache.read(kind, cell);
+                }
+                long age = cached != null ? now - cached.getFetchedAtMillis() : Long.MAX_VALUE;
+                if (age < FRESH_TTL_MS) {
+                    byCell.put(cell, cached);
+                    continue;
+                }
+                if (age < MAX_STALE_AGE_MS) {
+                    staleByCell.put(cell, cached.withSource(ForecastSeries.Source.STALE_CACHE));
+                }
+                missing.add(cell);
+            }
+
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int start = 0; start < missing.size(); start += MAX_LOCATIONS_PER_REQUEST) {
+                List<String> chunk = new ArrayList<>(missing.subList(start, Math.min(missing.size(), start + MAX_LOCATIONS_PER_REQUEST)));
+                batches.add(CompletableFuture.runAsync(() -> fetchBatch(kind, chunk, byCell), networkExecutor));
+            }
+
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+                for (Map.Entry<String, ForecastSeries> stale : staleByCell.entrySet()) {
+                    if (!byCell.containsKey(stale.getKey())) {
+                        byCell.put(stale.getKey(), stale.getValue());
+                    }
+                }
+                result.complete(rankPlaces(places, byCell));
+            });
+        });
+        return result;
+    }
+
+    private void fetchBatch(ForecastSeries.Kind kind, List<String> cells, Map<String, ForecastSeries> byCell) {
+        StringBuilder lats = new StringBuilder();
+        StringBuilder lons = new StringBuilder();
+        for (String cell : cells) {
+            double[] center = GeoHash.decodeCenter(cell);
+            if (lats.length() > 0) {
+                lats.append(',');
+                lons.append(',');
+            }
+            lats.append(String.format(Locale.US, "%.3f", center[0]));
+            lons.append(String.format(Locale.US, "%.3f", center[1]));
+        }
+        String urlString = String.format(Locale.US, OPEN_METEO_FLOOD_BATCH_URL, lats, lons);
+
+        try {
+            List<ForecastSeries> seriesList = fetchAll(kind, urlString);
+            int count = Math.min(seriesList.size(), cells.size());
+            for (int i = 0; i < count; i++) {
+                String cell = cells.get(i);
+                ForecastSeries series = seriesList.get(i);
+                byCell.put(cell, series);
+                recent.put(kind + ":" + cell, series);
+                diskExecutor.execute(() -> diskCache.write(cell, series));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Batch request for " + cells.size() + " cells failed.", e);
+        }
+    }
+
+    private List<PlaceRisk> rankPlaces(List<WatchedPlace> places, Map<String, ForecastSeries> byCell) {
+        List<PlaceRisk> ranked = new ArrayList<>(places.size());
+        RiskEngine.Assessment scratch = new RiskEngine.Assessment();
+        int[] historyFetches = new int[1];
+        for (WatchedPlace place : places) {
+            String cell = GeoHash.encode(place.getLatitude(), place.getLongitude(), GeoHash.FORECAST_PRECISION);
+            ForecastSeries series = byCell.get(cell);
+            if (series == null || series.isEmpty()) {
+                ranked.add(new PlaceRisk(place, series, false, -1.0, 0.0));
+            } else {
+                RiskEngine engine = knownRiskEngine(place.getLatitude(), place.getLongitude(), historyFetches);
+                double score = engine.score(series, null, scratch);
+                ranked.add(new PlaceRisk(place, series, scratch.isHighRisk(), score, engine.dangerRatio(series)));
+            }
+        }
+        Collections.sort(ranked, (a, b) -> {
+            if (a.isHighRisk() != b.isHighRisk()) {
+                return a.isHighRisk() ? -1 : 1;
+            }
+            return Double.compare(b.getScore(), a.getScore());
+        });
+        return ranked;
+    }
+
+    /**
+     * The risk engine for the cell containing the given location, with thresholds from the
+     * river's own history. The history is downloaded the first time a cell is checked (and once
+     * a year after); until then, or if it cannot be had, this completes with
+     * {@link RiskEngine#DEFAULT}. Never completes exceptionally.
+     */
+    @NonNull
+    public CompletableFuture<RiskEngine> getRiskEngine(double lat, double lon) {
+        String cell = GeoHash.encode(lat, lon, CLIMATOLOGY_PRECISION);
+        RiskEngine known = engines.get(cell);
+        if (known != null) {
+            return CompletableFuture.completedFuture(known);
+        }
+        CompletableFuture<RiskEngine> result = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            DischargeClimatology stored = DischargeClimatology.decode(climatologyPrefs.getString(cell, null));
+            if (stored != null) {
+                RiskEngine engine = stored.toRiskEngine();
+                engines.put(cell, engine);
+                result.complete(engine);
+                if (System.currentTimeMillis() - stored.computedAtMillis > CLIMATOLOGY_TTL_MS) {
+                    fetchClimatology(cell);
+                }
+                return;
+            }
+            fetchClimatology(cell).thenAccept(result::complete);
+        });
+        return result;
+    }
+
+    /**
+     * The engine already known for a location, without waiting: per-river thresholds when the
+     * cell's history has been loaded, else {@link RiskEngine#DEFAULT} while it is fetched for next
+     * time. For batch evaluation, which should not hold up on history downloads. At most
+     * {@link #MAX_HISTORY_FETCHES_PER_RUN} downloads are started per run, counted in
+     * {@code fetchesStarted}; other new cells are left for later runs.
+     */
+    @NonNull
+    private RiskEngine knownRiskEngine(double lat, double lon, int[] fetchesStarted) {
+        String cell = GeoHash.encode(lat, lon, CLIMATOLOGY_PRECISION);
+        RiskEngine known = engines.get(cell);
+        if (known != null) {
+            return known;
+        }
+        DischargeClimatology stored = DischargeClimatology.decode(climatologyPrefs.getString(cell, null));
+        if (stored != null) {
+            RiskEngine engine = stored.toRiskEngine();
+            engines.put(cell, engine);
+            return engine;
+        }
+        if (fetchesStarted[0] < MAX_HISTORY_FETCHES_PER_RUN && !climatologyInFlight.containsKey(cell)) {
+            fetchesStarted[0]++;
+            fetchClimatology(cell);
+        }
+        return RiskEngine.DEFAULT;
+    }
+
+    /** Downloads and reduces a cell's history; completes with DEFAULT on any failure. */
+    private CompletableFuture<RiskEngine> fetchClimatology(String cell) {
+        Long failedAt = climatologyFailedAt.get(cell);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < CLIMATOLOGY_RETRY_MS) {
+            return CompletableFuture.completedFuture(RiskEngine.DEFAULT);
+        }
+        CompletableFuture<RiskEngine> created = new CompletableFuture<>();
+        CompletableFuture<RiskEngine> existing = climatologyInFlight.putIfAbsent(cell, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        double[] center = GeoHash.decodeCenter(cell);
+        int lastYear = Calendar.getInstance().get(Calendar.YEAR) - 1;
+        String urlString = String.format(Locale.US, OPEN_METEO_FLOOD_HISTORY_URL,
+                center[0], center[1], lastYear - CLIMATOLOGY_YEARS + 1, lastYear);
+
+        historyExecutor.execute(() -> {
+            RiskEngine engine = RiskEngine.DEFAULT;
+            try {
+                DischargeClimatology.Accumulator accumulator = new DischargeClimatology.Accumulator();
+                HttpsURLConnection conn = open(urlString);
+                try (InputStream in = conn.getInputStream()) {
+                    OpenMeteoParser.streamDailyValues(in, ForecastSeries.Kind.RIVER_DISCHARGE, accumulator::add);
+                } finally {
+                    conn.disconnect();
+                }
+                DischargeClimatology climatology = accumulator.build(System.currentTimeMillis());
+                climatologyPrefs.edit().putString(cell, climatology.encode()).apply();
+                engine = climatology.toRiskEngine();
+                engines.put(cell, engine);
+                Log.d(TAG, "Thresholds for " + cell + ": P90 " + climatology.p90 + ", P99 " + climatology.p99
+                        + " m³/s from " + climatology.sampleCount + " days");
+            } catch (Exception e) {
+                Log.w(TAG, "Could not load discharge history for " + cell + "; using default thresholds.", e);
+                climatologyFailedAt.put(cell, System.currentTimeMillis());
+            } finally {
+                climatologyInFlight.remove(cell, created);
+                created.complete(engine);
+            }
+        });
+        return created;
+    }
+
+    private CompletableFuture<ForecastSeries> load(ForecastSeries.Kind kind, double lat, double lon, @Nullable Consumer<ForecastSeries> onRevalidated) {
+        String cell = GeoHash.encode(lat, lon, GeoHash.FORECAST_PRECISION);
+        String key = kind + ":" + cell;
+
+        ForecastSeries remembered = recent.get(key);
+        if (remembered != null && System.currentTimeMillis() - remembered.getFetchedAtMillis() < FRESH_TTL_MS) {
+            return CompletableFuture.completedFuture(remembered);
+        }
+
+        CompletableFuture<ForecastSeries> result = new CompletableFuture<>();
+        diskExecutor.execute(() -> {
+            ForecastSeries cached = diskCache.read(kind, cell);
+            long age = cached != null ? System.currentTimeMillis() - cached.getFetchedAtMillis() : Long.MAX_VALUE;
+
+            if (age < FRESH_TTL_MS) {
+                recent.put(key, cached);
+                result.complete(cached);
+                return;
+            }
+
+            if (age < MAX_STALE_AGE_MS) {
+                // Stale-while-revalidate: answer from disk now, refresh in the background.
+                result.complete(cached.withSource(ForecastSeries.Source.STALE_CACHE));
+                fetchFromNetwork(kind, cell, key).thenAccept(fresh -> {
+                    if (onRevalidated != null) {
+                        onRevalidated.accept(fresh);
+                    }
+                });
+                return;
+            }
+
+            fetchFromNetwork(kind, cell, key).whenComplete((fresh, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(fresh);
+                }
+            });
+        });
+        return result;
+    }
+
+    private CompletableFuture<ForecastSeries> fetchFromNetwork(ForecastSeries.Kind kind, String cell, String key) {
+        CompletableFuture<ForecastSeries> created = new CompletableFuture<>();
+        CompletableFuture<ForecastSeries> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            // Another screen already asked for this cell; share its request.
+            return existing;
+        }
+
+        double[] center = GeoHash.decodeCenter(cell);
+        String urlTemplate = kind == ForecastSeries.Kind.RIVER_DISCHARGE ? OPEN_METEO_FLOOD_API_URL : OPEN_METEO_WEATHER_API_URL;
+        String urlString = String.format(Locale.US, urlTemplate, center[0], center[1]);
+
+        networkExecutor.execute(() -> {
+            try {
+                ForecastSeries series = kind.isHourly() ? fetchHourly(kind, cell, key, center) : fetch(kind, urlString);
+                recent.put(key, series);
+                diskExecutor.execute(() -> diskCache.write(cell, series));
+                created.complete(series);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to load " + kind + " for cell " + cell, e);
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Merges new hours into the cell's {@link HourlyRing} rather than downloading the whole range.
+     * Hours before the current one are settled and never requested again. Stored forecast hours
+     * are requested again only once a newer model run may have changed them; until then only the
+     * hours past the last stored one are, usually one or two. Runs on the network thread that
+     * holds the in-flight slot for {@code key}.
+     */
+    private ForecastSeries fetchHourly(ForecastSeries.Kind kind, String cell, String key, double[] center) throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        HourlyRing ring = hourlyRings.get(key);
+        if (ring == null) {
+            ring = new HourlyRing(HOURLY_PAST_HOURS + HOURLY_FORECAST_HOURS);
+            ForecastSeries stored = diskCache.read(kind, cell);
+            if (stored != null) {
+                ring.putAll(stored);
+                hourlyRevisedAt.put(key, stored.getFetchedAtMillis());
+            }
+            hourlyRings.put(key, ring);
+        }
+
+        long currentHour = HourlyRing.floorHour(nowMillis / 1000);
+        ring.dropBefore(currentHour - HOURLY_PAST_HOURS * HourlyRing.HOUR_SECONDS);
+        long endHour = currentHour + (HOURLY_FORECAST_HOURS - 1) * HourlyRing.HOUR_SECONDS;
+        Long revisedAt = hourlyRevisedAt.get(key);
+        boolean revise = ring.isEmpty() || ring.lastHour() < currentHour
+                || revisedAt == null || nowMillis - revisedAt >= FORECAST_REVISION_MS;
+        long startHour;
+        if (ring.isEmpty()) {
+            startHour = currentHour - HOURLY_PAST_HOURS * HourlyRing.HOUR_SECONDS;
+        } else if (revise) {
+            startHour = currentHour;
+        } else {
+            startHour = ring.lastHour() + HourlyRing.HOUR_SECONDS;
+        }
+
+        if (startHour <= endHour) {
+            String urlString = String.format(Locale.US, OPEN_METEO_HOURLY_WEATHER_API_URL,
+                    center[0], center[1], isoHour(startHour), isoHour(endHour));
+            ForecastSeries fresh = fetch(kind, urlString);
+            ring.putAll(fresh);
+            if (revise) {
+                hourlyRevisedAt.put(key, nowMillis);
+            }
+            Log.d(TAG, "Merged " + fresh.size() + " hours of " + kind + " for " + cell
+                    + (revise ? " (revised)" : ""));
+        }
+        return ring.toSeries(kind, nowMillis);
+    }
+
+    /** Open-Meteo's {@code start_hour}/{@code end_hour} form, in UTC. */
+    private static String isoHour(long epochSeconds) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(epochSeconds * 1000));
+    }
+
+    private ForecastSeries fetch(ForecastSeries.Kind kind, String urlString) throws IOException {
+        HttpsURLConnection conn = open(urlString);
+        // Parse straight off the socket on this background thread; no String body is built.
+        try (InputStream in = conn.getInputStream()) {
+            return OpenMeteoParser.parseSeries(in, kind, System.currentTimeMillis());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private List<ForecastSeries> fetchAll(ForecastSeries.Kind kind, String urlString) throws IOException {
+        HttpsURLConnection conn = open(urlString);
+        try (InputStream in = conn.getInputStream()) {
+            return OpenMeteoParser.parseDailyBatch(in, kind, System.currentTimeMillis());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /** Opens a GET connection and fails fast on anything but HTTP 200. */
+    private static HttpsURLConnection open(String urlString) throws IOException {
+        URL url = new URL(urlString);
+        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+
+        int responseCode = conn.getResponseCode();
+        if (responseCode != HttpsURLConnection.HTTP_OK) {
+            conn.disconnect();
+            throw new IOException("HTTP error code: " + responseCode);
+        }
+        return conn;
+    }
+
+    private static final class NetworkThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "forecast-net-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.floodalert;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.util.Log;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.LocationResult;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Receives the transitions of the fences set up by {@link FloodZoneGeofences} and the location
+ * updates it takes while the user is near a zone, and posts the "entered a flood zone" alert.
+ *
+ * Which zone circles the user is inside, and which zone was last alerted, are kept in shared
+ * preferences because each broadcast may arrive in a fresh process.
+ */
+public class FloodGeofenceReceiver extends BroadcastReceiver {
+
+    static final String ACTION_GEOFENCE = "com.example.floodalert.action.FLOOD_GEOFENCE";
+    static final String ACTION_NEAR_ZONE_LOCATION = "com.example.floodalert.action.NEAR_ZONE_LOCATION";
+
+    private static final String TAG = "FloodGeofenceReceiver";
+    private static final int NOTIFICATION_ID = 1002;
+    private static final String PREFS_NAME = "flood_geofences";
+    private static final String KEY_INSIDE_FENCES = "inside_fences";
+    private static final String KEY_ALERTED_ZONE = "alerted_zone";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Context appContext = context.getApplicationContext();
+        if (ACTION_NEAR_ZONE_LOCATION.equals(intent.getAction())) {
+            LocationResult result = LocationResult.extractResult(intent);
+            Location location = result != null ? result.getLastLocation() : null;
+            if (location != null) {
+                checkLocation(appContext, location);
+            }
+        } else if (ACTION_GEOFENCE.equals(intent.getAction())) {
+            onGeofenceEvent(appContext, GeofencingEvent.fromIntent(intent));
+        }
+    }
+
+    private void onGeofenceEvent(Context context, GeofencingEvent event) {
+        if (event == null) {
+            return;
+        }
+        if (event.hasError()) {
+            Log.w(TAG, "Geofence error: " + GeofenceStatusCodes.getStatusCodeString(event.getErrorCode()));
+            return;
+        }
+        Location location = event.getTriggeringLocation();
+        int transition = event.getGeofenceTransition();
+
+        SharedPreferences prefs = prefs(context);
+        Set<String> inside = new HashSet<>(prefs.getStringSet(KEY_INSIDE_FENCES, new HashSet<>()));
+        boolean rotate = false;
+        for (Geofence fence : event.getTriggeringGeofences()) {
+            String id = fence.getRequestId();
+            if (FloodZoneGeofences.ROTATION_FENCE_ID.equals(id)) {
+                rotate = true;
+            } else if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
+                inside.add(id);
+            } else if (transition == Geofence.GEOFENCE_TRANSITION_EXIT) {
+                inside.remove(id);
+            }
+        }
+        SharedPreferences.Editor editor = prefs.edit().putStringSet(KEY_INSIDE_FENCES, inside);
+        if (inside.isEmpty() && transition == Geofence.GEOFENCE_TRANSITION_EXIT) {
+            // Out of every circle, so out of every zone: re-arm the alert before the near-zone
+            // updates that would otherwise have noticed stop, in case none landed outside the polygon.
+            editor.remove(KEY_ALERTED_ZONE);
+        }
+        editor.apply();
+
+        if (inside.isEmpty()) {
+            FloodZoneGeofences.stopNearZoneUpdates(context);
+        } else if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
+            FloodZoneGeofences.startNearZoneUpdates(context);
+        }
+        if (rotate) {
+            // Fences left behind are dropped; the circles we are still in are re-entered at once.
+            prefs.edit().remove(KEY_INSIDE_FENCES).apply();
+            FloodZoneGeofences.refresh(context, location);
+        }
+        if (location != null && transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
+            checkLocation(context, location);
+        }
+    }
+
+    /** Alerts once per zone entered; leaving every zone (or every zone circle) re-arms the alert. */
+    private void checkLocation(Context context, Location location) {
+        PendingResult pending = goAsync();
+        FloodDataSync data = FloodDataSync.getInstance(context);
+        data.whenLoaded().whenComplete((ignored, error) -> {
+            try {
+                FloodZone zone = data.getZones().zoneAt(location.getLatitude(), location.getLongitude());
+                SharedPreferences prefs = prefs(context);
+                String alerted = prefs.getString(KEY_ALERTED_ZONE, null);
+                if (zone == null) {
+                    if (alerted != null) {
+                        prefs.edit().remove(KEY_ALERTED_ZONE).apply();
+                    }
+                } else if (!zone.getId().equals(alerted)) {
+                    prefs.edit().putString(KEY_ALERTED_ZONE, zone.getId()).apply();
+                    FloodAlerts.post(context, NOTIFICATION_ID, "You have entered a flood zone",
+                            "Your location is inside a reported flood zone. Open the map for the nearest safe route.",
+                            MapRoutesActivity.class);
+                }
+            } finally {
+                pending.finish();
+            }
+        });
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
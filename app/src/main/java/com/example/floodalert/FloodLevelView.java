@@ -1,28 +1,116 @@
 package com.example.floodalert;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.animation.DecelerateInterpolator;
+import android.view.animation.LinearInterpolator;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+/**
+ * Water rising past a person and a car, with a scrubbable forecast timeline above it.
+ *
+ * Everything that does not move (ground, figure, car, scale, timeline bars) is drawn once into a
+ * bitmap when the size or the forecast changes. An animation frame only blits that bitmap and
+ * draws the water, the timeline cursor and the level text, which is composed into a reused char
+ * buffer; nothing is allocated per frame. A single {@link ValueAnimator} is reused for both level
+ * changes and timeline playback.
+ *
+ * The water's surface is three sine waves summed at fixed columns. Each column's phase along
+ * every wave is worked out once per size, the sines come from a lookup table, and the surface is
+ * traced into one reused {@link Path}. The waves are driven by {@link Choreographer} frames that
+ * only run while there is water and the view is on screen: hiding the view, scrolling it away or
+ * stopping the activity (which hides its window) stops them.
+ *
+ * Dragging across the timeline strip scrubs the water to that hour; letting go returns to now.
+ * Tapping elsewhere plays the forecast through.
+ */
 public class FloodLevelView extends View {
 
-    private Paint groundPaint, stickFigurePaint, carPaint, waterPaint, textPaint, scalePaint;
+    private Paint groundPaint, stickFigurePaint, carPaint, waterPaint, textPaint, scalePaint, timelinePaint, cursorPaint, staticPaint;
     private float waterLevelFeet = 0f; // The current water level to draw
-    private ValueAnimator animator;
 
     // Constants for drawing
     private static final float MAX_DISPLAY_FEET = 5f;
+    private static final int TIMELINE_HOURS = 72;
+    private static final long LEVEL_ANIMATION_MS = 1500;
+    private static final long PLAYBACK_MS = 4000;
+
+    // --- Static layer, rebuilt on size or forecast changes ---
+    private Bitmap staticLayer;
+    private boolean staticLayerDirty = true;
+
+    // --- Forecast timeline: feet at each hour from the hour setForecast was called in ---
+    private final float[] timelineFeet = new float[TIMELINE_HOURS];
+    private int timelineHours = 0;
+    private int cursorHour = -1; // -1 when showing "now"
+    private boolean scrubbing;
+
+    // --- The one animator, either easing the level or playing back the timeline ---
+    private final ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+    private final DecelerateInterpolator levelInterpolator = new DecelerateInterpolator();
+    private final LinearInterpolator playbackInterpolator = new LinearInterpolator();
+    private boolean playingTimeline;
+    private float animateFrom, animateTo;
+    private float currentLevelFeet; // The verdict for now, which scrubbing returns to
+
+    // --- Level text, composed without allocating ---
+    private static final char[] NOW_PREFIX = "Current Risk: ".toCharArray();
+    private static final char[] AHEAD_PREFIX = "In ".toCharArray();
+    private static final char[] AHEAD_SUFFIX = " h: ".toCharArray();
+    private static final char[] FEET_SUFFIX = " ft".toCharArray();
+    private final char[] levelText = new char[32];
+
+    // --- Wave surface: per-column phases precomputed on size, heights updated in place ---
+    private static final int WAVE_COLUMNS = 64;
+    private static final int SINE_TABLE_SIZE = 1024; // A power of two, so phases wrap with a mask
+    private static final float[] SINE_TABLE = new float[SINE_TABLE_SIZE];
+    // Per wave: wavelength as a fraction of the width, cycles per second and crest height in px.
+    private static final float[] WAVE_LENGTHS = {0.9f, 0.37f, 0.16f};
+    private static final float[] WAVE_SPEEDS = {0.21f, -0.34f, 0.55f};
+    private static final float[] WAVE_HEIGHTS = {9f, 5f, 2f};
+    private static final int WAVES = WAVE_LENGTHS.length;
+    private static final float WAVE_TOTAL_HEIGHT = 16f; // Sum of the crest heights
+
+    static {
+        for (int i = 0; i < SINE_TABLE_SIZE; i++) {
+            SINE_TABLE[i] = (float) Math.sin(2 * Math.PI * i / SINE_TABLE_SIZE);
+        }
+    }
+
+    private final float[] columnX = new float[WAVE_COLUMNS + 1];
+    private final float[] columnPhase = new float[WAVES * (WAVE_COLUMNS + 1)]; // In table steps
+    private final float[] surfaceY = new float[WAVE_COLUMNS + 1];
+    private final float[] wavePhase = new float[WAVES]; // In table steps, advanced each frame
+    private final Path waterPath = new Path();
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final Choreographer.FrameCallback waveFrame = this::onWaveFrame;
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = this::updateWaveAnimation;
+    private final Rect visibleRect = new Rect();
+    private boolean visibleToUser;
+    private boolean wavesRunning;
+    private long lastWaveFrameNanos;
 
     public FloodLevelView(Context context, @Nullable AttributeSet attrs) {
         super(context, attrs);
         initPaints();
+        initAnimator();
+        setClickable(true);
     }
 
     private void initPaints() {
@@ -53,6 +141,121 @@ public class FloodLevelView extends View {
         scalePaint.setColor(Color.parseColor("#7D8590"));
         scalePaint.setTextSize(24f);
         scalePaint.setTextAlign(Paint.Align.LEFT);
+
+        timelinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        timelinePaint.setColor(Color.parseColor("#388BFD"));
+        timelinePaint.setStyle(Paint.Style.FILL);
+
+        cursorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        cursorPaint.setColor(Color.parseColor("#E6EDF3"));
+        cursorPaint.setStrokeWidth(3f);
+
+        staticPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    }
+
+    private void initAnimator() {
+        // getAnimatedFraction() is a primitive float; getAnimatedValue() would box one per frame.
+        animator.addUpdateListener(animation -> {
+            float fraction = animation.getAnimatedFraction();
+            if (playingTimeline) {
+                int hour = Math.min(timelineHours - 1, (int) (fraction * timelineHours));
+                cursorHour = hour;
+                waterLevelFeet = timelineFeet[hour];
+            } else {
+                waterLevelFeet = animateFrom + (animateTo - animateFrom) * fraction;
+            }
+            updateWaveAnimation();
+            invalidate(); // Redraw the view on each animation frame
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+            private boolean cancelled;
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                cancelled = false;
+            }
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+                cancelled = true;
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                if (playingTimeline && !cancelled) {
+                    // Played through the forecast; settle back on now.
+                    animateLevel(currentLevelFeet);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        staticLayerDirty = true;
+        for (int i = 0; i <= WAVE_COLUMNS; i++) {
+            float x = (float) w * i / WAVE_COLUMNS;
+            columnX[i] = x;
+            for (int wave = 0; wave < WAVES; wave++) {
+                columnPhase[wave * (WAVE_COLUMNS + 1) + i] = x / (w * WAVE_LENGTHS[wave]) * SINE_TABLE_SIZE;
+            }
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(scrollListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        animator.cancel();
+        getViewTreeObserver().removeOnScrollChangedListener(scrollListener);
+        visibleToUser = false;
+        updateWaveAnimation();
+        super.onDetachedFromWindow();
+    }
+
+    /** Covers this view, its ancestors and the window, which is hidden when the activity stops. */
+    @Override
+    public void onVisibilityAggregated(boolean isVisible) {
+        super.onVisibilityAggregated(isVisible);
+        visibleToUser = isVisible;
+        updateWaveAnimation();
+    }
+
+    /** Starts or stops the wave frames to match whether anyone could see them. */
+    private void updateWaveAnimation() {
+        boolean run = visibleToUser && waterLevelFeet > 0 && getGlobalVisibleRect(visibleRect);
+        if (run && !wavesRunning) {
+            wavesRunning = true;
+            lastWaveFrameNanos = 0;
+            choreographer.postFrameCallback(waveFrame);
+        } else if (!run && wavesRunning) {
+            wavesRunning = false;
+            choreographer.removeFrameCallback(waveFrame);
+        }
+    }
+
+    private void onWaveFrame(long frameTimeNanos) {
+        if (lastWaveFrameNanos != 0) {
+            float seconds = (frameTimeNanos - lastWaveFrameNanos) / 1e9f;
+            for (int wave = 0; wave < WAVES; wave++) {
+                wavePhase[wave] = (wavePhase[wave] + WAVE_SPEEDS[wave] * seconds * SINE_TABLE_SIZE) % SINE_TABLE_SIZE;
+            }
+        }
+        lastWaveFrameNanos = frameTimeNanos;
+        invalidate();
+        // Checked every frame, so scrolling off screen stops the waves; the scroll listener restarts them.
+        wavesRunning = false;
+        updateWaveAnimation();
+    }
+
+    /** Whether wave frames are being scheduled; for tests. */
+    boolean isWaveAnimationRunning() {
+        return wavesRunning;
     }
 
     @Override
@@ -61,6 +264,46 @@ public class FloodLevelView extends View {
 
         int width = getWidth();
         int height = getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (staticLayerDirty) {
+            rebuildStaticLayer(width, height);
+        }
+        canvas.drawBitmap(staticLayer, 0, 0, staticPaint);
+
+        // --- Draw Water Level ---
+        float groundHeight = height * 0.9f;
+        float effectiveGroundHeight = groundHeight * 0.8f;
+        float waterHeightPx = (waterLevelFeet / MAX_DISPLAY_FEET) * effectiveGroundHeight;
+        if (waterHeightPx > 0) {
+            traceWater(width, groundHeight, waterHeightPx);
+            canvas.drawPath(waterPath, waterPaint);
+        }
+
+        // --- Draw Timeline Cursor ---
+        if (cursorHour >= 0 && timelineHours > 0) {
+            float barWidth = (float) width / TIMELINE_HOURS;
+            float x = (cursorHour + 0.5f) * barWidth;
+            canvas.drawLine(x, height * 0.19f, x, height * 0.31f, cursorPaint);
+        }
+
+        // --- Draw Text Display ---
+        int length = composeLevelText();
+        canvas.drawText(levelText, 0, length, width / 2f, height * 0.15f, textPaint);
+    }
+
+    /** Draws everything that stays put between frames. */
+    private void rebuildStaticLayer(int width, int height) {
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+            if (staticLayer != null) {
+                staticLayer.recycle();
+            }
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        } else {
+            staticLayer.eraseColor(Color.TRANSPARENT);
+        }
+        Canvas canvas = new Canvas(staticLayer);
 
         // --- Draw Ground ---
         float groundHeight = height * 0.9f;
@@ -82,14 +325,8 @@ public class FloodLevelView extends View {
         canvas.drawCircle(width * 0.58f, groundHeight, 15, stickFigurePaint);
         canvas.drawCircle(width * 0.77f, groundHeight, 15, stickFigurePaint);
 
-        // --- Draw Water Level ---
-        float effectiveGroundHeight = groundHeight * 0.8f;
-        float waterHeightPx = (waterLevelFeet / MAX_DISPLAY_FEET) * effectiveGroundHeight;
-        if (waterHeightPx > 0) {
-            canvas.drawRect(0, groundHeight - waterHeightPx, width, groundHeight, waterPaint);
-        }
-
         // --- Draw Scale ---
+        float effectiveGroundHeight = groundHeight * 0.8f;
         float scaleX = width * 0.9f;
         for (int i = 1; i <= 4; i++) {
             float lineY = groundHeight - (i / MAX_DISPLAY_FEET) * effectiveGroundHeight;
@@ -97,9 +334,74 @@ public class FloodLevelView extends View {
             canvas.drawText(i + " ft", scaleX + 30, lineY + 8, scalePaint);
         }
 
-        // --- Draw Text Display ---
-        String waterLevelText = String.format("Current Risk: %.1f ft", waterLevelFeet);
-        canvas.drawText(waterLevelText, width / 2f, height * 0.15f, textPaint);
+        // --- Draw Forecast Timeline ---
+        if (timelineHours > 0) {
+            float top = height * 0.2f;
+            float bottom = height * 0.3f;
+            float barWidth = (float) width / TIMELINE_HOURS;
+            for (int hour = 0; hour < timelineHours; hour++) {
+                float barTop = bottom - timelineFeet[hour] / MAX_DISPLAY_FEET * (bottom - top);
+                canvas.drawRect(hour * barWidth, barTop, (hour + 1) * barWidth - 1, bottom, timelinePaint);
+            }
+            canvas.drawLine(0, bottom, timelineHours * barWidth, bottom, scalePaint);
+            canvas.drawText("Next " + timelineHours + " h, drag to scrub", 10, bottom + 28, scalePaint);
+        }
+        staticLayerDirty = false;
+    }
+
+    /**
+     * Updates the surface heights in place and traces the water body into {@link #waterPath}.
+     * Shallow water gets proportionally lower waves, so troughs never dip below the ground.
+     */
+    private void traceWater(int width, float groundHeight, float depth) {
+        float level = groundHeight - depth;
+        float scale = Math.min(1f, depth / WAVE_TOTAL_HEIGHT);
+        for (int i = 0; i <= WAVE_COLUMNS; i++) {
+            float y = level;
+            for (int wave = 0; wave < WAVES; wave++) {
+                int index = (int) (columnPhase[wave * (WAVE_COLUMNS + 1) + i] + wavePhase[wave]) & (SINE_TABLE_SIZE - 1);
+                y += WAVE_HEIGHTS[wave] * scale * SINE_TABLE[index];
+            }
+            surfaceY[i] = y;
+        }
+
+        waterPath.rewind();
+        waterPath.moveTo(0, groundHeight);
+        for (int i = 0; i <= WAVE_COLUMNS; i++) {
+            waterPath.lineTo(columnX[i], surfaceY[i]);
+        }
+        waterPath.lineTo(width, groundHeight);
+        waterPath.close();
+    }
+
+    /** Writes "Current Risk: 2.3 ft" or "In 18 h: 2.3 ft" into {@link #levelText}. */
+    private int composeLevelText() {
+        int pos = 0;
+        if (cursorHour >= 0) {
+            pos = append(AHEAD_PREFIX, pos);
+            pos = appendInt(cursorHour, pos);
+            pos = append(AHEAD_SUFFIX, pos);
+        } else {
+            pos = append(NOW_PREFIX, pos);
+        }
+        int tenths = Math.round(Math.max(0f, waterLevelFeet) * 10);
+        pos = appendInt(tenths / 10, pos);
+        levelText[pos++] = '.';
+        levelText[pos++] = (char) ('0' + tenths % 10);
+        return append(FEET_SUFFIX, pos);
+    }
+
+    private int append(char[] chars, int pos) {
+        System.arraycopy(chars, 0, levelText, pos, chars.length);
+        return pos + chars.length;
+    }
+
+    private int appendInt(int value, int pos) {
+        if (value >= 10) {
+            pos = appendInt(value / 10, pos);
+        }
+        levelText[pos] = (char) ('0' + value % 10);
+        return pos + 1;
     }
 
     /**
@@ -107,20 +409,106 @@ public class FloodLevelView extends View {
      * @param newLevelInFeet The new flood level to display.
      */
     public void setFloodLevel(float newLevelInFeet) {
-        if (animator != null) {
-            animator.cancel();
+        // Ensure the new level is within the display bounds (0 to 5 feet)
+        currentLevelFeet = Math.max(0f, Math.min(newLevelInFeet, MAX_DISPLAY_FEET));
+        cursorHour = -1;
+        animateLevel(currentLevelFeet);
+    }
+
+    /**
+     * Shows the water level the forecast implies for each of the next {@value #TIMELINE_HOURS}
+     * hours, from the current hour. Null series are left out; with neither the strip is hidden.
+     */
+    public void setForecast(@Nullable ForecastSeries discharge, @Nullable ForecastSeries precipitation, @NonNull RiskEngine engine) {
+        if (discharge == null && precipitation == null) {
+            timelineHours = 0;
+        } else {
+            long currentHour = HourlyRing.floorHour(System.currentTimeMillis() / 1000);
+            engine.timeline(discharge, precipitation, currentHour, HourlyRing.HOUR_SECONDS, TIMELINE_HOURS, timelineFeet);
+            for (int hour = 0; hour < TIMELINE_HOURS; hour++) {
+                timelineFeet[hour] *= MAX_DISPLAY_FEET;
+            }
+            timelineHours = TIMELINE_HOURS;
         }
+        if (cursorHour >= timelineHours) {
+            cursorHour = -1;
+        }
+        staticLayerDirty = true;
+        invalidate();
+    }
 
-        // Ensure the new level is within the display bounds (0 to 5 feet)
-        float clampedLevel = Math.max(0f, Math.min(newLevelInFeet, MAX_DISPLAY_FEET));
+    /** Plays the water level through the forecast hours, then eases back to now. */
+    public void playTimeline() {
+        if (timelineHours == 0) {
+            return;
+        }
+        animator.cancel();
+        playingTimeline = true;
+        animator.setDuration(PLAYBACK_MS);
+        animator.setInterpolator(playbackInterpolator);
+        animator.start();
+    }
 
-        animator = ValueAnimator.ofFloat(this.waterLevelFeet, clampedLevel);
-        animator.setDuration(1500); // 1.5 seconds animation
-        animator.setInterpolator(new DecelerateInterpolator());
-        animator.addUpdateListener(animation -> {
-            this.waterLevelFeet = (float) animation.getAnimatedValue();
-            invalidate(); // Redraw the view on each animation frame
-        });
+    private void animateLevel(float target) {
+        animator.cancel();
+        playingTimeline = false;
+        cursorHour = -1;
+        animateFrom = waterLevelFeet;
+        animateTo = target;
+        animator.setDuration(LEVEL_ANIMATION_MS); // 1.5 seconds animation
+        animator.setInterpolator(levelInterpolator);
         animator.start();
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (timelineHours == 0) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // Scrub on or near the strip; elsewhere a tap plays the timeline.
+                if (event.getY() > getHeight() * 0.4f) {
+                    scrubbing = false;
+                    return super.onTouchEvent(event);
+                }
+                scrubbing = true;
+                getParent().requestDisallowInterceptTouchEvent(true);
+                animator.cancel();
+                scrubTo(event.getX());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (!scrubbing) {
+                    return super.onTouchEvent(event);
+                }
+                scrubTo(event.getX());
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (!scrubbing) {
+                    return super.onTouchEvent(event);
+                }
+                scrubbing = false;
+                animateLevel(currentLevelFeet);
+                return true;
+            default:
+                return scrubbing || super.onTouchEvent(event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        playTimeline();
+        return true;
+    }
+
+    private void scrubTo(float x) {
+        float barWidth = (float) getWidth() / TIMELINE_HOURS;
+        int hour = (int) (x / barWidth);
+        cursorHour = Math.max(0, Math.min(timelineHours - 1, hour));
+        waterLevelFeet = timelineFeet[cursorHour];
+        updateWaveAnimation();
+        invalidate();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.floodalert;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules background flood monitoring as a self-rescheduling chain of one-off WorkManager jobs.
+ *
+ * A periodic request would poll at a fixed rate; instead each {@link FloodMonitorWorker} run picks
+ * the delay before the next one from how close the watched rivers are to danger, so a quiet day
+ * costs four checks and a rising river is checked every half hour. WorkManager defers the jobs
+ * through Doze and only runs them with a network connection.
+ */
+public final class FloodMonitor {
+
+    static final String UNIQUE_WORK_NAME = "flood_monitor";
+
+    static final long DELAY_DANGER_MINUTES = 30;
+    static final long DELAY_RISING_MINUTES = 60;
+    static final long DELAY_ELEVATED_MINUTES = 3 * 60;
+    static final long DELAY_QUIET_MINUTES = 6 * 60;
+
+    private FloodMonitor() {}
+
+    /** Starts monitoring if it is not already scheduled. Safe to call on every app start. */
+    public static void start(@NonNull Context context) {
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.KEEP,
+                buildRequest(0, false));
+    }
+
+    /**
+     * Queues the next check behind the running one. APPEND_OR_REPLACE lets the worker schedule its
+     * successor without cancelling itself.
+     */
+    static void scheduleNext(@NonNull Context context, long delayMinutes) {
+        boolean urgent = delayMinutes <= DELAY_RISING_MINUTES;
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE,
+                buildRequest(delayMinutes, urgent));
+    }
+
+    /**
+     * Picks the delay before the next check from how close any watched river is to danger, by the
+     * same per-river thresholds the verdict used.
+     */
+    static long nextDelayMinutes(@NonNull List<PlaceRisk> risks) {
+        double closest = 0.0;
+        for (PlaceRisk risk : risks) {
+            if (risk.isHighRisk()) {
+                return DELAY_DANGER_MINUTES;
+            }
+            if (risk.hasData()) {
+                closest = Math.max(closest, risk.getDangerRatio());
+            }
+        }
+        if (closest >= 0.8) {
+            return DELAY_RISING_MINUTES;
+        }
+        if (closest >= 0.5) {
+            return DELAY_ELEVATED_MINUTES;
+        }
+        return DELAY_QUIET_MINUTES;
+    }
+
+    private static OneTimeWorkRequest buildRequest(long delayMinutes, boolean urgent) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                // Skip checks on a low battery unless a river is already close to danger.
+                .setRequiresBatteryNotLow(!urgent)
+                .build();
+        return new OneTimeWorkRequest.Builder(FloodMonitorWorker.class)
+                .setInitialDelay(delayMinutes, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.floodalert;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One background flood check: evaluates the device's last known location plus every watched place
+ * in a single batch, posts a notification only when the set of places at risk changes, records
+ * how much work it did, and schedules the next check via {@link FloodMonitor}.
+ */
+public class FloodMonitorWorker extends Worker {
+
+    private static final String TAG = "FloodMonitorWorker";
+    private static final int NOTIFICATION_ID = 1001;
+    private static final String PREFS_NAME = "flood_monitor";
+    private static final String KEY_LAST_VERDICT = "last_verdict";
+    private static final String KEY_STATS_DAY = "stats_day";
+    private static final String KEY_STATS_RUNS = "stats_runs";
+    private static final String KEY_STATS_ACTIVE_MS = "stats_active_ms";
+    private static final String CURRENT_LOCATION_NAME = "Your location";
+    private static final long EVALUATION_TIMEOUT_SECONDS = 60;
+    private static final long LOCATION_TIMEOUT_SECONDS = 5;
+    private static final long SYNC_TIMEOUT_SECONDS = 30;
+
+    public FloodMonitorWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        long startedAt = SystemClock.elapsedRealtime();
+        long nextDelay = FloodMonitor.DELAY_ELEVATED_MINUTES;
+
+        try {
+            List<WatchedPlace> places = new ArrayList<>(new WatchedPlacesStore(getApplicationContext()).getAll());
+            Location here = lastKnownLocation();
+            refreshZoneFences(here);
+            if (here != null) {
+                places.add(0, new WatchedPlace(CURRENT_LOCATION_NAME, here.getLatitude(), here.getLongitude()));
+            }
+
+            if (places.isEmpty()) {
+                Log.i(TAG, "Nothing to monitor yet.");
+                nextDelay = FloodMonitor.DELAY_QUIET_MINUTES;
+            } else {
+                List<PlaceRisk> risks = FloodForecastRepository.getInstance(getApplicationContext())
+                        .evaluatePlaces(places)
+                        .get(EVALUATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                notifyIfVerdictChanged(risks);
+                nextDelay = FloodMonitor.nextDelayMinutes(risks);
+            }
+        } catch (Exception e) {
+            // Never let one failed check break the chain; try again at the default cadence.
+            Log.e(TAG, "Background flood check failed.", e);
+        } finally {
+            recordRun(SystemClock.elapsedRealtime() - startedAt);
+            FloodMonitor.scheduleNext(getApplicationContext(), nextDelay);
+        }
+        Log.d(TAG, "Next flood check in " + nextDelay + " min.");
+        return Result.success();
+    }
+
+    private Location lastKnownLocation() {
+        Context context = getApplicationContext();
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return null;
+        }
+        try {
+            // The cached fix is free; we never power up GPS from the background.
+            return Tasks.await(LocationServices.getFusedLocationProviderClient(context).getLastLocation(),
+                    LOCATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, "No last known location available.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the flood zone geofences current: pulls feed updates, then re-registers the nearest
+     * zones. This also restores the fences after a reboot or an app update, which clear them.
+     */
+    private void refreshZoneFences(Location here) {
+        Context context = getApplicationContext();
+        if (!FloodZoneGeofences.hasPermission(context)) {
+            return;
+        }
+        try {
+            FloodDataSync.getInstance(context).sync().get(SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, "Flood data sync failed; fencing stored zones.", e);
+        }
+        FloodZoneGeofences.refresh(context, here);
+    }
+
+    private void notifyIfVerdictChanged(List<PlaceRisk> risks) {
+        TreeSet<String> atRisk = new TreeSet<>();
+        for (PlaceRisk risk : risks) {
+            if (risk.isHighRisk()) {
+                atRisk.add(risk.getPlace().getName());
+            }
+        }
+        String verdict = TextUtils.join("\n", atRisk);
+
+        SharedPreferences prefs = prefs();
+        String previous = prefs.getString(KEY_LAST_VERDICT, "");
+        if (verdict.equals(previous)) {
+            return;
+        }
+        prefs.edit().putString(KEY_LAST_VERDICT, verdict).apply();
+
+        if (atRisk.isEmpty()) {
+            postNotification("Flood risk has eased", "No watched location currently shows a rising flood risk.");
+        } else {
+            postNotification("Rising flood risk", "Flood risk is rising at: " + TextUtils.join(", ", atRisk));
+        }
+    }
+
+    private void postNotification(String title, String text) {
+        FloodAlerts.post(getApplicationContext(), NOTIFICATION_ID, title, text, FloodDashboardActivity.class);
+    }
+
+    /**
+     * Keeps a per-day count of runs and the time spent awake doing them. Logged once per day so
+     * the battery cost of the monitor can be checked against dumpsys batterystats.
+     */
+    private void recordRun(long activeMillis) {
+        SharedPreferences prefs = prefs();
+        long today = System.currentTimeMillis() / DateUtils.DAY_IN_MILLIS;
+        long statsDay = prefs.getLong(KEY_STATS_DAY, today);
+        int runs = prefs.getInt(KEY_STATS_RUNS, 0);
+        long totalActive = prefs.getLong(KEY_STATS_ACTIVE_MS, 0);
+
+        if (statsDay != today) {
+            Log.i(TAG, "Flood monitor daily cost: " + runs + " runs, " + totalActive + " ms awake.");
+            runs = 0;
+            totalActive = 0;
+        }
+        prefs.edit()
+                .putLong(KEY_STATS_DAY, today)
+                .putInt(KEY_STATS_RUNS, runs + 1)
+                .putLong(KEY_STATS_ACTIVE_MS, totalActive + activeMillis)
+                .apply();
+    }
+
+    private SharedPreferences prefs() {
+        return getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
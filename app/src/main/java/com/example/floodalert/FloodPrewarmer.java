@@ -0,0 +1,152 @@
+package com.example.floodalert;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Gets the flood picture for where the user is ready before they ask for it, so the flood screens
+ * open on a verdict instead of a spinner.
+ *
+ * The dashboard calls {@link #prewarm} once its first frame is up. A location fix and the locally
+ * stored zones and shelters load in parallel; as soon as the fix is in, the river forecast, hourly
+ * rain and the river's thresholds are requested together. All of it goes through the same shared
+ * caches the screens use, so a screen opened halfway joins the requests already in flight. The
+ * outcome is kept as a {@link Snapshot} that screens can render from synchronously.
+ *
+ * Main thread only; futures complete on the main thread.
+ */
+public final class FloodPrewarmer {
+
+    private static final String TAG = "FloodPrewarmer";
+
+    /** A snapshot older than this is not shown; screens start from scratch instead. */
+    static final long MAX_SNAPSHOT_AGE_MS = 15 * 60 * 1000;
+
+    private static volatile FloodPrewarmer instance;
+
+    private final Context appContext;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Snapshot snapshot;
+    private CompletableFuture<Snapshot> inFlight;
+
+    /** What was known about the user's location when the prewarm finished. */
+    public static final class Snapshot {
+        @NonNull final Location location;
+        @Nullable final ForecastSeries river;
+        @Nullable final ForecastSeries rain;
+        @NonNull final RiskEngine engine;
+        final boolean inFloodZone;
+        /** Straight-line distance to the nearest shelter, or NaN without shelter data. */
+        final float nearestShelterMeters;
+        final long takenAtElapsedMs;
+
+        Snapshot(@NonNull Location location, @Nullable ForecastSeries river, @Nullable ForecastSeries rain,
+                 @NonNull RiskEngine engine, boolean inFloodZone, float nearestShelterMeters) {
+            this.location = location;
+            this.river = river;
+            this.rain = rain;
+            this.engine = engine;
+            this.inFloodZone = inFloodZone;
+            this.nearestShelterMeters = nearestShelterMeters;
+            takenAtElapsedMs = SystemClock.elapsedRealtime();
+        }
+
+        boolean hasForecast() {
+            return river != null || rain != null;
+        }
+    }
+
+    private FloodPrewarmer(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    @NonNull
+    public static FloodPrewarmer getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (FloodPrewarmer.class) {
+                if (instance == null) {
+                    instance = new FloodPrewarmer(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Warms the caches for the current location. Completes with the new snapshot, or null without
+     * location permission or a fix; never exceptionally. Calls while one is running share it.
+     */
+    @NonNull
+    public CompletableFuture<Snapshot> prewarm() {
+        if (inFlight != null) {
+            return inFlight;
+        }
+        if (ContextCompat.checkSelfPermission(appContext, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            // The screens ask for the permission themselves when opened.
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Snapshot> result = new CompletableFuture<>();
+        inFlight = result;
+        FloodDataSync dataSync = FloodDataSync.getInstance(appContext);
+        CompletableFuture<Void> places = dataSync.whenLoaded().handle((ignored, error) -> null);
+
+        LocationProvider.getInstance(appContext).getLocation(null)
+                .thenCompose(location -> {
+                    FloodForecastRepository repository = FloodForecastRepository.getInstance(appContext);
+                    double lat = location.getLatitude();
+                    double lon = location.getLongitude();
+                    CompletableFuture<ForecastSeries> river = repository.getRiverDischarge(lat, lon, null)
+                            .handle((series, error) -> series);
+                    CompletableFuture<ForecastSeries> rain = repository.getHourlyPrecipitation(lat, lon, null)
+                            .handle((series, error) -> series);
+                    CompletableFuture<RiskEngine> engine = repository.getRiskEngine(lat, lon);
+                    return CompletableFuture.allOf(river, rain, engine, places).thenApply(ignored -> new Snapshot(
+                            location, river.join(), rain.join(), engine.join(),
+                            dataSync.getZones().isInZone(lat, lon),
+                            nearestShelterMeters(dataSync.getShelters(), location)));
+                })
+                .whenComplete((warmed, error) -> handler.post(() -> {
+                    if (error != null) {
+                        Log.w(TAG, "Could not prewarm the flood picture.", error);
+                    } else {
+                        snapshot = warmed;
+                    }
+                    inFlight = null;
+                    result.complete(warmed);
+                }));
+        return result;
+    }
+
+    /** The latest snapshot if it is recent enough to show as-is, else null. */
+    @Nullable
+    public Snapshot getSnapshot() {
+        if (snapshot == null || SystemClock.elapsedRealtime() - snapshot.takenAtElapsedMs > MAX_SNAPSHOT_AGE_MS) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private static float nearestShelterMeters(ShelterIndex shelters, Location location) {
+        int[] nearest = shelters.nearest(location.getLatitude(), location.getLongitude(), 1, null);
+        if (nearest.length == 0) {
+            return Float.NaN;
+        }
+        float[] distance = new float[1];
+        Location.distanceBetween(location.getLatitude(), location.getLongitude(),
+                shelters.getLat(nearest[0]), shelters.getLon(nearest[0]), distance);
+        return distance[0];
+    }
+}
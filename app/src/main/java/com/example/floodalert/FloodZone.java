@@ -0,0 +1,103 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A flood extent as a simple polygon (one outer ring, implicitly closed) with its bounding box.
+ *
+ * Plain Java with primitive coordinate arrays so thousands of zones stay cheap to hold and the
+ * class can be unit-tested on the JVM.
+ */
+public final class FloodZone {
+
+    private final String id;
+    private final double[] lats;
+    private final double[] lons;
+    private final double minLat, minLon, maxLat, maxLon;
+
+    public FloodZone(@NonNull String id, @NonNull double[] lats, @NonNull double[] lons) {
+        if (lats.length != lons.length || lats.length < 3) {
+            throw new IllegalArgumentException("A flood zone needs at least 3 vertices with matching lat/lon arrays");
+        }
+        this.id = id;
+        this.lats = lats;
+        this.lons = lons;
+
+        double south = Double.MAX_VALUE, west = Double.MAX_VALUE;
+        double north = -Double.MAX_VALUE, east = -Double.MAX_VALUE;
+        for (int i = 0; i < lats.length; i++) {
+            south = Math.min(south, lats[i]);
+            north = Math.max(north, lats[i]);
+            west = Math.min(west, lons[i]);
+            east = Math.max(east, lons[i]);
+        }
+        minLat = south;
+        minLon = west;
+        maxLat = north;
+        maxLon = east;
+    }
+
+    /** Builds a rectangular zone, in the same north/east/south/west order as osmdroid's BoundingBox. */
+    @NonNull
+    public static FloodZone fromBounds(@NonNull String id, double north, double east, double south, double west) {
+        return new FloodZone(id,
+                new double[]{north, north, south, south},
+                new double[]{west, east, east, west});
+    }
+
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    public int getVertexCount() {
+        return lats.length;
+    }
+
+    public double getLat(int index) {
+        return lats[index];
+    }
+
+    public double getLon(int index) {
+        return lons[index];
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public boolean intersectsBox(double south, double west, double north, double east) {
+        return minLat <= north && maxLat >= south && minLon <= east && maxLon >= west;
+    }
+
+    /** Even-odd ray casting, after a cheap bounding box rejection. */
+    public boolean contains(double lat, double lon) {
+        if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) {
+            return false;
+        }
+        boolean inside = false;
+        int count = lats.length;
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            double latI = lats[i], latJ = lats[j];
+            if ((latI > lat) != (latJ > lat)) {
+                double crossLon = lons[i] + (lat - latI) / (latJ - latI) * (lons[j] - lons[i]);
+                if (lon < crossLon) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.floodalert;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Alerts the user on entering a flood zone without keeping GPS on.
+ *
+ * Play services geofencing does the watching in its low-power location pipeline, but allows only
+ * 100 fences per app. So only the {@link #MAX_ZONE_FENCES} zones nearest the user are registered,
+ * each as the circle around its bounding box, plus one "rotation" fence centred on the user. When
+ * the user leaves the rotation fence the set is rebuilt around the new position. Its radius is half
+ * the distance to the nearest zone that did not make the cut, so no unregistered zone can be
+ * reached before the set is rotated.
+ *
+ * A circle is larger than the polygon it covers. While the user is inside any zone circle,
+ * {@link FloodGeofenceReceiver} takes balanced-power location updates once a minute and checks
+ * the real polygons; the updates stop on leaving the last circle.
+ *
+ * Needs fine location and, from Android 10, background location permission; without them
+ * {@link #refresh} does nothing.
+ */
+public final class FloodZoneGeofences {
+
+    private static final String TAG = "FloodZoneGeofences";
+
+    /** Leaves room under the platform's limit of 100 for the rotation fence. */
+    static final int MAX_ZONE_FENCES = 90;
+    static final String ROTATION_FENCE_ID = "rotation";
+    /** Zones farther than this are never registered; the rotation fence rebuilds well before. */
+    static final double SEARCH_RADIUS_METERS = 20_000;
+    static final double MIN_ROTATION_RADIUS_METERS = 500;
+    /** Play services does not detect transitions reliably on smaller circles. */
+    static final float MIN_FENCE_RADIUS_METERS = 100;
+    private static final int RESPONSIVENESS_MS = 60_000;
+    static final long NEAR_ZONE_INTERVAL_MS = 60_000;
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON_AT_EQUATOR = 111_320.0;
+
+    private FloodZoneGeofences() {}
+
+    /** The zones to fence around a point, and how far the user may move before rebuilding. */
+    static final class Plan {
+        final List<FloodZone> zones;
+        final float[] centerLat;
+        final float[] centerLon;
+        final float[] radius;
+        final double rotationRadius;
+
+        Plan(List<FloodZone> zones, float[] centerLat, float[] centerLon, float[] radius, double rotationRadius) {
+            this.zones = zones;
+            this.centerLat = centerLat;
+            this.centerLon = centerLon;
+            this.radius = radius;
+            this.rotationRadius = rotationRadius;
+        }
+    }
+
+    public static boolean hasPermission(@NonNull Context context) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Re-registers the fences around {@code here}, or around the last known location when null.
+     * Cheap; call it whenever the zones change or the app learns a new position.
+     */
+    @SuppressLint("MissingPermission") // Checked by hasPermission.
+    public static void refresh(@NonNull Context context, @Nullable Location here) {
+        Context appContext = context.getApplicationContext();
+        if (!hasPermission(appContext)) {
+            return;
+        }
+        if (here != null) {
+            refreshAround(appContext, here.getLatitude(), here.getLongitude());
+            return;
+        }
+        LocationServices.getFusedLocationProviderClient(appContext).getLastLocation()
+                .addOnSuccessListener(last -> {
+                    if (last != null) {
+                        refreshAround(appContext, last.getLatitude(), last.getLongitude());
+                    }
+                });
+    }
+
+    @SuppressLint("MissingPermission")
+    private static void refreshAround(Context appContext, double lat, double lon) {
+        FloodDataSync data = FloodDataSync.getInstance(appContext);
+        data.whenLoaded().thenRun(() -> {
+            Plan plan = plan(data.getZones(), lat, lon, MAX_ZONE_FENCES);
+            List<Geofence> fences = new ArrayList<>(plan.zones.size() + 1);
+            for (int i = 0; i < plan.zones.size(); i++) {
+                fences.add(new Geofence.Builder()
+                        .setRequestId(plan.zones.get(i).getId())
+                        .setCircularRegion(plan.centerLat[i], plan.centerLon[i], plan.radius[i])
+                        .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                        .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
+                        .setNotificationResponsiveness(RESPONSIVENESS_MS)
+                        .build());
+            }
+            fences.add(new Geofence.Builder()
+                    .setRequestId(ROTATION_FENCE_ID)
+                    .setCircularRegion(lat, lon, (float) plan.rotationRadius)
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .setNotificationResponsiveness(RESPONSIVENESS_MS)
+                    .build());
+            GeofencingRequest request = new GeofencingRequest.Builder()
+                    // Someone already standing in a zone is told once; see FloodGeofenceReceiver.
+                    .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+                    .addGeofences(fences)
+                    .build();
+
+            GeofencingClient client = LocationServices.getGeofencingClient(appContext);
+            PendingIntent intent = fenceIntent(appContext);
+            client.removeGeofences(intent).addOnCompleteListener(removed -> {
+                try {
+                    client.addGeofences(request, intent)
+                            .addOnSuccessListener(ignored -> Log.d(TAG, "Registered " + plan.zones.size()
+                                    + " zone fences, rotating after " + Math.round(plan.rotationRadius) + " m"))
+                            .addOnFailureListener(e -> Log.w(TAG, "Could not register flood zone fences", e));
+                } catch (SecurityException e) {
+                    Log.w(TAG, "Location permission revoked; flood zone fences not registered", e);
+                }
+            });
+        });
+    }
+
+    /**
+     * Picks up to {@code max} zones by distance from the point to the edge of their fence circle,
+     * and the rotation radius that keeps every other zone out of reach.
+     */
+    @NonNull
+    static Plan plan(@NonNull FloodZoneIndex index, double lat, double lon, int max) {
+        double lonScale = METERS_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(lat));
+        double latSpan = SEARCH_RADIUS_METERS / METERS_PER_DEGREE_LAT;
+        double lonSpan = SEARCH_RADIUS_METERS / Math.max(lonScale, 1.0);
+        List<FloodZone> nearby = new ArrayList<>();
+        index.query(lat - latSpan, lon - lonSpan, lat + latSpan, lon + lonSpan, nearby);
+
+        int count = nearby.size();
+        float[] centerLat = new float[count];
+        float[] centerLon = new float[count];
+        float[] radius = new float[count];
+        double[] edgeDistance = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            FloodZone zone = nearby.get(i);
+            double cLat = (zone.getMinLat() + zone.getMaxLat()) / 2;
+            double cLon = (zone.getMinLon() + zone.getMaxLon()) / 2;
+            double halfHeight = (zone.getMaxLat() - zone.getMinLat()) / 2 * METERS_PER_DEGREE_LAT;
+            double halfWidth = (zone.getMaxLon() - zone.getMinLon()) / 2 * lonScale;
+            centerLat[i] = (float) cLat;
+            centerLon[i] = (float) cLon;
+            radius[i] = (float) Math.max(MIN_FENCE_RADIUS_METERS, Math.hypot(halfHeight, halfWidth));
+            double toCenter = Math.hypot((cLat - lat) * METERS_PER_DEGREE_LAT, (cLon - lon) * lonScale);
+            edgeDistance[i] = Math.max(0, toCenter - radius[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(edgeDistance[a], edgeDistance[b]));
+
+        int kept = Math.min(max, count);
+        List<FloodZone> zones = new ArrayList<>(kept);
+        float[] keptLat = new float[kept];
+        float[] keptLon = new float[kept];
+        float[] keptRadius = new float[kept];
+        for (int k = 0; k < kept; k++) {
+            int i = order[k];
+            zones.add(nearby.get(i));
+            keptLat[k] = centerLat[i];
+            keptLon[k] = centerLon[i];
+            keptRadius[k] = radius[i];
+        }
+        // The nearest zone left out, or the edge of the search area if nothing was left out.
+        double firstMissing = kept < count ? edgeDistance[order[kept]] : SEARCH_RADIUS_METERS;
+        double rotationRadius = Math.max(MIN_ROTATION_RADIUS_METERS, firstMissing / 2);
+        return new Plan(Collections.unmodifiableList(zones), keptLat, keptLon, keptRadius, rotationRadius);
+    }
+
+    static PendingIntent fenceIntent(@NonNull Context context) {
+        Intent intent = new Intent(context, FloodGeofenceReceiver.class)
+                .setAction(FloodGeofenceReceiver.ACTION_GEOFENCE);
+        // Mutable: play services adds the triggering fences to the intent.
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | mutableFlag());
+    }
+
+    static PendingIntent nearZoneIntent(@NonNull Context context) {
+        Intent intent = new Intent(context, FloodGeofenceReceiver.class)
+                .setAction(FloodGeofenceReceiver.ACTION_NEAR_ZONE_LOCATION);
+        return PendingIntent.getBroadcast(context, 1, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | mutableFlag());
+    }
+
+    /** Balanced-power updates while near a zone; never high accuracy. */
+    @SuppressLint("MissingPermission")
+    static void startNearZoneUpdates(@NonNull Context context) {
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, NEAR_ZONE_INTERVAL_MS)
+                .setMinUpdateIntervalMillis(NEAR_ZONE_INTERVAL_MS / 2)
+                .build();
+        try {
+            LocationServices.getFusedLocationProviderClient(context)
+                    .requestLocationUpdates(request, nearZoneIntent(context));
+        } catch (SecurityException e) {
+            Log.w(TAG, "Location permission revoked; not tracking near flood zone", e);
+        }
+    }
+
+    static void stopNearZoneUpdates(@NonNull Context context) {
+        LocationServices.getFusedLocationProviderClient(context).removeLocationUpdates(nearZoneIntent(context));
+    }
+
+    private static int mutableFlag() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0;
+    }
+}
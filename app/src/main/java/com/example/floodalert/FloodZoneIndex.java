@@ -0,0 +1,328 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform-grid spatial index over {@link FloodZone} polygons.
+ *
+ * Each zone is registered in every grid cell its bounding box touches, so a point query only
+ * tests the handful of polygons in one cell. Zones whose box would span more than
+ * {@link #MAX_CELLS_PER_ZONE} cells (district-wide extents) go in a short overflow list that every
+ * query checks instead. Zones can be added and removed one at a time, which lets a data sync
+ * update the index without rebuilding it. All methods are synchronized; queries are short.
+ *
+ * The index can also sit on top of a memory-mapped {@link FloodDataFile}. Point queries then run
+ * against the file without creating zone objects; zones are decoded only when {@link #get},
+ * {@link #zoneAt} or {@link #query} hand them out, and are kept so the same zone is returned as the
+ * same object, until {@link #retainDecoded} lets them go. Zones added or removed afterwards shadow
+ * the file's copy by id.
+ */
+public final class FloodZoneIndex {
+
+    /** About 1.1 km of latitude, on the order of a typical urban flood extent. */
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+    private static final int MAX_CELLS_PER_ZONE = 1024;
+
+    private final double cellDegrees;
+    private final HashMap<Long, IntBucket> cells = new HashMap<>();
+    private final IntBucket oversized = new IntBucket();
+    private final HashMap<String, Integer> slotById = new HashMap<>();
+    private final ArrayList<FloodZone> slots = new ArrayList<>();
+    private final IntBucket freeSlots = new IntBucket();
+    private int[] seenStamp = new int[16];
+    private int queryStamp;
+    @Nullable
+    private FloodDataFile base;
+    // Base zones replaced or removed by put/remove.
+    private final BitSet shadowed = new BitSet();
+    private final HashMap<Integer, FloodZone> decoded = new HashMap<>();
+
+    public FloodZoneIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public FloodZoneIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    public synchronized int size() {
+        int baseSize = base != null ? base.getZoneCount() - shadowed.cardinality() : 0;
+        return slotById.size() + baseSize;
+    }
+
+    /**
+     * Replaces the whole contents with the zones in {@code file}. Zones that were already handed
+     * out and have the same geometry in the new file stay the same objects, so a caller diffing by
+     * identity (the map overlay) only rebuilds what actually changed.
+     */
+    synchronized void setBase(@Nullable FloodDataFile file) {
+        Map<Integer, FloodZone> kept = new HashMap<>();
+        if (base != null && file != null) {
+            for (Map.Entry<Integer, FloodZone> entry : decoded.entrySet()) {
+                int zone = file.findZone(entry.getValue().getId());
+                if (zone >= 0 && file.sameGeometry(zone, base, entry.getKey())) {
+                    kept.put(zone, entry.getValue());
+                }
+            }
+        }
+        clear();
+        base = file;
+        decoded.putAll(kept);
+    }
+
+    /** Adds a zone, replacing any zone with the same id. */
+    public synchronized void put(@NonNull FloodZone zone) {
+        remove(zone.getId());
+
+        int slot;
+        if (freeSlots.size > 0) {
+            slot = freeSlots.items[--freeSlots.size];
+            slots.set(slot, zone);
+        } else {
+            slot = slots.size();
+            slots.add(zone);
+            if (slot >= seenStamp.length) {
+                seenStamp = Arrays.copyOf(seenStamp, seenStamp.length * 2);
+            }
+        }
+        slotById.put(zone.getId(), slot);
+
+        if (cellSpan(zone) > MAX_CELLS_PER_ZONE) {
+            oversized.add(slot);
+            return;
+        }
+        for (int latCell = cell(zone.getMinLat()); latCell <= cell(zone.getMaxLat()); latCell++) {
+            for (int lonCell = cell(zone.getMinLon()); lonCell <= cell(zone.getMaxLon()); lonCell++) {
+                long key = key(latCell, lonCell);
+                IntBucket bucket = cells.get(key);
+                if (bucket == null) {
+                    bucket = new IntBucket();
+                    cells.put(key, bucket);
+                }
+                bucket.add(slot);
+            }
+        }
+    }
+
+    /** Removes the zone with the given id. Returns false if it was not indexed. */
+    public synchronized boolean remove(@NonNull String id) {
+        if (base != null) {
+            int zone = base.findZone(id);
+            if (zone >= 0 && !shadowed.get(zone)) {
+                shadowed.set(zone);
+                decoded.remove(zone);
+                return true;
+            }
+        }
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        FloodZone zone = slots.get(slot);
+        slots.set(slot, null);
+        freeSlots.add(slot);
+
+        if (!oversized.remove(slot)) {
+            for (int latCell = cell(zone.getMinLat()); latCell <= cell(zone.getMaxLat()); latCell++) {
+                for (int lonCell = cell(zone.getMinLon()); lonCell <= cell(zone.getMaxLon()); lonCell++) {
+                    long key = key(latCell, lonCell);
+                    IntBucket bucket = cells.get(key);
+                    if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        cells.clear();
+        oversized.size = 0;
+        slotById.clear();
+        slots.clear();
+        freeSlots.size = 0;
+        base = null;
+        shadowed.clear();
+        decoded.clear();
+    }
+
+    @Nullable
+    public synchronized FloodZone get(@NonNull String id) {
+        Integer slot = slotById.get(id);
+        if (slot != null) {
+            return slots.get(slot);
+        }
+        int zone = base != null ? base.findZone(id) : -1;
+        return zone >= 0 && !shadowed.get(zone) ? baseZone(zone) : null;
+    }
+
+    /** Returns a zone containing the point, or null when the point is outside every zone. */
+    @Nullable
+    public synchronized FloodZone zoneAt(double lat, double lon) {
+        FloodZone zone = memoryZoneAt(lat, lon);
+        if (zone == null && base != null) {
+            int index = base.zoneAt(lat, lon, shadowed);
+            zone = index >= 0 ? baseZone(index) : null;
+        }
+        return zone;
+    }
+
+    /** Like {@code zoneAt(lat, lon) != null}, but never decodes a zone from the base file. */
+    public synchronized boolean isInZone(double lat, double lon) {
+        return memoryZoneAt(lat, lon) != null || (base != null && base.zoneAt(lat, lon, shadowed) >= 0);
+    }
+
+    private FloodZone baseZone(int index) {
+        FloodZone zone = decoded.get(index);
+        if (zone == null) {
+            zone = base.decodeZone(index);
+            decoded.put(index, zone);
+        }
+        return zone;
+    }
+
+    private FloodZone memoryZoneAt(double lat, double lon) {
+        IntBucket bucket = cells.get(key(cell(lat), cell(lon)));
+        if (bucket != null) {
+            for (int i = 0; i < bucket.size; i++) {
+                FloodZone zone = slots.get(bucket.items[i]);
+                if (zone.contains(lat, lon)) {
+                    return zone;
+                }
+            }
+        }
+        for (int i = 0; i < oversized.size; i++) {
+            FloodZone zone = slots.get(oversized.items[i]);
+            if (zone.contains(lat, lon)) {
+                return zone;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the zones decoded from the base file except those in {@code keep}, so a caller that
+     * only holds on to a few of them (the map, around its viewport) bounds what the index keeps.
+     * A zone let go here is decoded into a new object when next asked for.
+     */
+    public synchronized void retainDecoded(@NonNull Collection<FloodZone> keep) {
+        IdentityHashMap<FloodZone, Boolean> kept = new IdentityHashMap<>();
+        for (FloodZone zone : keep) {
+            kept.put(zone, Boolean.TRUE);
+        }
+        decoded.values().removeIf(zone -> !kept.containsKey(zone));
+    }
+
+    /**
+     * Appends every zone whose bounding box intersects the given viewport to {@code out}, once each.
+     * Falls back to a bounding-box scan when the viewport covers more cells than there are zones.
+     */
+    public void query(double south, double west, double north, double east, @NonNull List<FloodZone> out) {
+        query(south, west, north, east, 0, out);
+    }
+
+    /**
+     * Like {@link #query(double, double, double, double, List)}, but leaves out zones whose bounding
+     * box is smaller than {@code minSpanDegrees} on both sides. Base zones are skipped before they
+     * are decoded, so a zoomed-out map does not decode the dots it would not draw anyway.
+     */
+    public synchronized void query(double south, double west, double north, double east, double minSpanDegrees,
+                                   @NonNull List<FloodZone> out) {
+        if (base != null) {
+            base.query(south, west, north, east, shadowed, zone -> {
+                if (base.zoneSpan(zone) >= minSpanDegrees) {
+                    out.add(baseZone(zone));
+                }
+            });
+        }
+        long latCells = (long) cell(north) - cell(south) + 1;
+        long lonCells = (long) cell(east) - cell(west) + 1;
+
+        if (latCells * lonCells > slots.size()) {
+            for (FloodZone zone : slots) {
+                if (zone != null && zone.intersectsBox(south, west, north, east) && span(zone) >= minSpanDegrees) {
+                    out.add(zone);
+                }
+            }
+            return;
+        }
+
+        int stamp = ++queryStamp;
+        for (int latCell = cell(south); latCell <= cell(north); latCell++) {
+            for (int lonCell = cell(west); lonCell <= cell(east); lonCell++) {
+                IntBucket bucket = cells.get(key(latCell, lonCell));
+                if (bucket == null) {
+                    continue;
+                }
+                for (int i = 0; i < bucket.size; i++) {
+                    int slot = bucket.items[i];
+                    if (seenStamp[slot] != stamp) {
+                        seenStamp[slot] = stamp;
+                        FloodZone zone = slots.get(slot);
+                        if (zone.intersectsBox(south, west, north, east) && span(zone) >= minSpanDegrees) {
+                            out.add(zone);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < oversized.size; i++) {
+            FloodZone zone = slots.get(oversized.items[i]);
+            if (zone.intersectsBox(south, west, north, east) && span(zone) >= minSpanDegrees) {
+                out.add(zone);
+            }
+        }
+    }
+
+    private static double span(FloodZone zone) {
+        return Math.max(zone.getMaxLat() - zone.getMinLat(), zone.getMaxLon() - zone.getMinLon());
+    }
+
+    private long cellSpan(FloodZone zone) {
+        long latCells = (long) cell(zone.getMaxLat()) - cell(zone.getMinLat()) + 1;
+        long lonCells = (long) cell(zone.getMaxLon()) - cell(zone.getMinLon()) + 1;
+        return latCells * lonCells;
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    /** Growable int array; avoids boxing slot ids in the buckets. */
+    private static final class IntBucket {
+        int[] items = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        boolean remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    items[i] = items[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
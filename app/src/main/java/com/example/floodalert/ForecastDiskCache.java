@@ -0,0 +1,140 @@
+package com.example.floodalert;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Small on-disk store for {@link ForecastSeries}, one binary file per series kind and geohash cell.
+ *
+ * Files are written to a temp file and renamed so a crash never leaves a half-written entry.
+ * Reads bump the file's modification time, and {@link #trim()} deletes the least recently used
+ * files once the directory grows past its byte budget. Methods are synchronized because batch
+ * evaluation reads entries from network threads as well as the repository's disk thread.
+ */
+final class ForecastDiskCache {
+
+    private static final String TAG = "ForecastDiskCache";
+    private static final int MAGIC = 0x464C4443; // "FLDC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".series";
+
+    private final File directory;
+    private final long maxBytes;
+
+    ForecastDiskCache(@NonNull File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    @Nullable
+    synchronized ForecastSeries read(@NonNull ForecastSeries.Kind kind, @NonNull String cell) {
+        File file = fileFor(kind, cell);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+            long fetchedAt = in.readLong();
+            int count = in.readInt();
+            long[] times = new long[count];
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                times[i] = in.readLong();
+            }
+            for (int i = 0; i < count; i++) {
+                values[i] = in.readDouble();
+            }
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            return new ForecastSeries(kind, times, values, fetchedAt, ForecastSeries.Source.CACHE);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable cache entry " + file.getName(), e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    synchronized void write(@NonNull String cell, @NonNull ForecastSeries series) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create cache directory " + directory);
+            return;
+        }
+
+        File target = fileFor(series.getKind(), cell);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(series.getFetchedAtMillis());
+            int count = series.size();
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(series.timeAt(i));
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(series.valueAt(i));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write cache entry " + target.getName(), e);
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+
+        if (!temp.renameTo(target)) {
+            Log.w(TAG, "Failed to commit cache entry " + target.getName());
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+        trim();
+    }
+
+    /** Deletes least recently used entries until the cache fits in its byte budget. */
+    synchronized void trim() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private File fileFor(ForecastSeries.Kind kind, String cell) {
+        return new File(directory, kind.name().toLowerCase(Locale.US) + "_" + cell + SUFFIX);
+    }
+}
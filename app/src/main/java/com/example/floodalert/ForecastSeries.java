@@ -0,0 +1,115 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A typed Open-Meteo series: daily river discharge, daily precipitation sums, or hourly
+ * precipitation.
+ *
+ * Times are epoch seconds, values are in the unit of the series (m³/s, or mm per step).
+ * Missing values reported as {@code null} by the API are stored as {@link Double#NaN}.
+ */
+public final class ForecastSeries {
+
+    public enum Kind {
+        RIVER_DISCHARGE,
+        PRECIPITATION,
+        HOURLY_PRECIPITATION;
+
+        public boolean isHourly() {
+            return this == HOURLY_PRECIPITATION;
+        }
+    }
+
+    /** Where the series came from, so the UI can say when it is not showing live data. */
+    public enum Source {
+        NETWORK,
+        CACHE,
+        STALE_CACHE
+    }
+
+    private final Kind kind;
+    private final long[] times;
+    private final double[] values;
+    private final long fetchedAtMillis;
+    private final Source source;
+
+    public ForecastSeries(@NonNull Kind kind, @NonNull long[] times, @NonNull double[] values, long fetchedAtMillis) {
+        this(kind, times, values, fetchedAtMillis, Source.NETWORK);
+    }
+
+    public ForecastSeries(@NonNull Kind kind, @NonNull long[] times, @NonNull double[] values, long fetchedAtMillis, @NonNull Source source) {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("times and values must have the same length");
+        }
+        this.kind = kind;
+        this.times = times;
+        this.values = values;
+        this.fetchedAtMillis = fetchedAtMillis;
+        this.source = source;
+    }
+
+    /** Returns a view of the same data tagged with a different source. The arrays are shared. */
+    @NonNull
+    public ForecastSeries withSource(@NonNull Source newSource) {
+        return newSource == source ? this : new ForecastSeries(kind, times, values, fetchedAtMillis, newSource);
+    }
+
+    @NonNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public long timeAt(int index) {
+        return times[index];
+    }
+
+    public double valueAt(int index) {
+        return values[index];
+    }
+
+    public boolean hasValueAt(int index) {
+        return index >= 0 && index < values.length && !Double.isNaN(values[index]);
+    }
+
+    /** The backing arrays, for allocation-free scoring. Not copied; must not be modified. */
+    long[] times() {
+        return times;
+    }
+
+    double[] values() {
+        return values;
+    }
+
+    public long getFetchedAtMillis() {
+        return fetchedAtMillis;
+    }
+
+    @NonNull
+    public Source getSource() {
+        return source;
+    }
+
+    public boolean isFromCache() {
+        return source != Source.NETWORK;
+    }
+
+    /** Largest non-missing value, or 0 when the series has no usable values. */
+    public double max() {
+        double max = 0.0;
+        for (double value : values) {
+            if (value > max) {
+                max = value;
+            }
+        }
+        return max;
+    }
+}
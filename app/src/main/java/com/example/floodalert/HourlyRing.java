@@ -0,0 +1,109 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A fixed window of hourly values in one primitive array, oldest first.
+ *
+ * Times are implicit (the first hour plus the slot's offset), so a series costs 8 bytes an hour
+ * and no boxing. Writing an hour past the end advances the window, dropping the oldest hours;
+ * gaps are filled with {@link Double#NaN}. Hours that fall before the window are ignored.
+ * Not thread-safe; the repository only touches a ring from the one request in flight for its cell.
+ */
+final class HourlyRing {
+
+    static final long HOUR_SECONDS = 3600;
+
+    private final double[] values;
+    private int head;
+    private int count;
+    private long firstHour;
+
+    HourlyRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        values = new double[capacity];
+    }
+
+    int size() {
+        return count;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Start of the newest stored hour, in epoch seconds. Only valid when not empty. */
+    long lastHour() {
+        return firstHour + (count - 1) * HOUR_SECONDS;
+    }
+
+    /** Writes the value for the hour containing {@code epochSeconds}. */
+    void put(long epochSeconds, double value) {
+        long hour = floorHour(epochSeconds);
+        if (count == 0 || hour >= firstHour + (count + values.length) * HOUR_SECONDS) {
+            // Empty, or so far ahead that nothing stored would survive: start over at this hour.
+            head = 0;
+            count = 1;
+            firstHour = hour;
+            values[0] = value;
+            return;
+        }
+        if (hour < firstHour) {
+            return;
+        }
+        int offset = (int) ((hour - firstHour) / HOUR_SECONDS);
+        while (offset >= count) {
+            if (count == values.length) {
+                head = (head + 1) % values.length;
+                firstHour += HOUR_SECONDS;
+                count--;
+                offset--;
+            }
+            values[(head + count) % values.length] = Double.NaN;
+            count++;
+        }
+        values[(head + offset) % values.length] = value;
+    }
+
+    /** Merges every timed value of {@code series}; later calls overwrite earlier ones hour by hour. */
+    void putAll(@NonNull ForecastSeries series) {
+        for (int i = 0; i < series.size(); i++) {
+            long time = series.timeAt(i);
+            if (time != 0L) {
+                put(time, series.valueAt(i));
+            }
+        }
+    }
+
+    /** Forgets every hour that ends at or before {@code epochSeconds}'s hour begins. */
+    void dropBefore(long epochSeconds) {
+        long hour = floorHour(epochSeconds);
+        while (count > 0 && firstHour < hour) {
+            head = (head + 1) % values.length;
+            firstHour += HOUR_SECONDS;
+            count--;
+        }
+    }
+
+    /** Copies the window out as a series with explicit times. */
+    @NonNull
+    ForecastSeries toSeries(@NonNull ForecastSeries.Kind kind, long fetchedAtMillis) {
+        long[] times = new long[count];
+        double[] copy = new double[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = firstHour + i * HOUR_SECONDS;
+            copy[i] = values[(head + i) % values.length];
+        }
+        return new ForecastSeries(kind, times, copy, fetchedAtMillis);
+    }
+
+    static long floorHour(long epochSeconds) {
+        return Math.floorDiv(epochSeconds, HOUR_SECONDS) * HOUR_SECONDS;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.floodalert;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * One place for every screen to ask "where is the user right now".
+ *
+ * A fix from the last couple of minutes (ours, or the fused provider's cached one) is returned at
+ * once, so a verdict can be shown without waiting for GPS. In parallel a single
+ * {@code getCurrentLocation} request, bounded by {@link #FRESH_FIX_TIMEOUT_MS}, is made; screens
+ * asking while it is running share it. If the fresh fix lands noticeably away from the one
+ * returned first, it is passed to the caller's {@code onRefined} callback. If no fresh fix comes
+ * (indoors, underground), an older or less accurate cached fix is returned rather than nothing;
+ * {@link #isApproximate} tells callers when that happened.
+ *
+ * Callers must hold a location permission. Futures and callbacks complete on the main thread.
+ */
+public final class LocationProvider {
+
+    private static final String TAG = "LocationProvider";
+
+    /** A fix this old is still good enough for a first verdict. */
+    static final long MAX_CACHED_AGE_MS = 2 * 60 * 1000;
+    private static final float MAX_CACHED_ACCURACY_METERS = 200f;
+    static final long FRESH_FIX_TIMEOUT_MS = 8000;
+    /** Refinements closer than this to the first fix would not change any verdict. */
+    private static final float REFINE_MIN_DISTANCE_METERS = 50f;
+
+    private static volatile LocationProvider instance;
+
+    private final FusedLocationProviderClient client;
+    // Main thread only.
+    private Location lastFix;
+    private CompletableFuture<Location> freshFix;
+
+    private LocationProvider(Context appContext) {
+        client = LocationServices.getFusedLocationProviderClient(appContext);
+    }
+
+    @NonNull
+    public static LocationProvider getInstance(@NonNull Context context) {
+        if (instance == null) {
+            synchronized (LocationProvider.class) {
+                if (instance == null) {
+                    instance = new LocationProvider(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Completes with the best fix available soonest: a recent cached one, or else a fresh one, or
+     * else any cached one however old. Fails with a {@link TimeoutException} if there is no fix at
+     * all, or a {@link SecurityException} without location permission. Must be called on the main
+     * thread.
+     *
+     * @param onRefined receives a fresh fix that replaces a cached answer, if it moved meaningfully
+     */
+    @NonNull
+    public CompletableFuture<Location> getLocation(@Nullable Consumer<Location> onRefined) {
+        CompletableFuture<Location> result = new CompletableFuture<>();
+        // The newest fix too old or coarse for a first verdict; the answer if no fresh fix comes.
+        Location[] fallback = {lastFix};
+        if (isRecent(lastFix)) {
+            result.complete(lastFix);
+        } else {
+            try {
+                client.getLastLocation().addOnCompleteListener(task -> {
+                    Location cached = task.isSuccessful() ? task.getResult() : null;
+                    if (result.isDone() || cached == null) {
+                        return;
+                    }
+                    if (isRecent(cached)) {
+                        remember(cached);
+                        result.complete(cached);
+                    } else if (fallback[0] == null
+                            || cached.getElapsedRealtimeNanos() > fallback[0].getElapsedRealtimeNanos()) {
+                        fallback[0] = cached;
+                    }
+                });
+            } catch (SecurityException e) {
+                result.completeExceptionally(e);
+                return result;
+            }
+        }
+
+        requestFreshFix().whenComplete((fresh, error) -> {
+            if (!result.isDone()) {
+                if (error != null && fallback[0] != null && !(error instanceof SecurityException)) {
+                    Log.i(TAG, "No fresh fix; using an older one.", error);
+                    result.complete(fallback[0]);
+                } else if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(fresh);
+                }
+                return;
+            }
+            Location first = result.getNow(null);
+            if (fresh != null && onRefined != null && first != fresh
+                    && fresh.distanceTo(first) >= REFINE_MIN_DISTANCE_METERS) {
+                onRefined.accept(fresh);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Whether {@code location} is too old or too coarse to be trusted as where the user is now,
+     * i.e. {@link #getLocation} fell back to it for want of anything better.
+     */
+    public static boolean isApproximate(@NonNull Location location) {
+        return !isRecent(location);
+    }
+
+    /** The most recent fix seen by any screen, or null. May be old. */
+    @Nullable
+    public Location getLastFix() {
+        return lastFix;
+    }
+
+    @SuppressLint("MissingPermission") // Checked by callers; a SecurityException fails the future.
+    private CompletableFuture<Location> requestFreshFix() {
+        if (freshFix != null && !freshFix.isDone()) {
+            return freshFix;
+        }
+        CompletableFuture<Location> future = new CompletableFuture<>();
+        freshFix = future;
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setDurationMillis(FRESH_FIX_TIMEOUT_MS)
+                .setMaxUpdateAgeMillis(0)
+                .build();
+        CancellationTokenSource cancellation = new CancellationTokenSource();
+        try {
+            client.getCurrentLocation(request, cancellation.getToken()).addOnCompleteListener(task -> {
+                Location location = task.isSuccessful() ? task.getResult() : null;
+                if (location != null) {
+                    remember(location);
+                    future.complete(location);
+                } else if (task.getException() != null) {
+                    Log.w(TAG, "Current location request failed", task.getException());
+                    future.completeExceptionally(task.getException());
+                } else {
+                    future.completeExceptionally(new TimeoutException(
+                            "No location fix within " + FRESH_FIX_TIMEOUT_MS + " ms"));
+                }
+            });
+        } catch (SecurityException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void remember(Location location) {
+        if (lastFix == null || location.getElapsedRealtimeNanos() >= lastFix.getElapsedRealtimeNanos()) {
+            lastFix = location;
+        }
+    }
+
+    private static boolean isRecent(@Nullable Location location) {
+        if (location == null) {
+            return false;
+        }
+        long ageMs = (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1_000_000;
+        return ageMs <= MAX_CACHED_AGE_MS
+                && (!location.hasAccuracy() || location.getAccuracy() <= MAX_CACHED_ACCURACY_METERS);
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import org.osmdroid.bonuspack.clustering.RadiusMarkerClusterer;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.events.MapListener;
+import org.osmdroid.events.ScrollEvent;
+import org.osmdroid.events.ZoomEvent;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+import org.osmdroid.views.MapView;
+import org.osmdroid.views.overlay.FolderOverlay;
+import org.osmdroid.views.overlay.Marker;
+import org.osmdroid.views.overlay.Polygon;
+import org.osmdroid.views.overlay.Polyline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns every overlay on the flood map and keeps them as long-lived objects.
+ *
+ * The map used to be cleared and rebuilt on each safety check, allocating markers, reloading
+ * drawables and re-creating the route line. Here each layer is created once: the user marker is
+ * moved and re-iconed, the route line gets new points, and flood-zone polygons are only added or
+ * removed when the zones around the viewport change. Shelters are clustered at low zoom.
+ *
+ * Only zones within {@link #VIEWPORT_MARGIN} viewports of the visible area, and at least a couple of
+ * pixels across, get a polygon; the rest are never decoded from the memory-mapped store, and
+ * polygons that drift out of that area are dropped again, so the map's heap use follows the
+ * viewport rather than the region. Of those, only the ones actually on screen are enabled
+ * (osmdroid skips disabled overlays in draw); the margin lets a short pan show zones that are
+ * already prepared. Zone outlines are simplified with {@link PolygonSimplifier} once per zoom level
+ * on a background thread when a zone gets its polygon, so dense traced outlines are drawn with
+ * only the vertices that are visible at the current zoom.
+ */
+final class MapOverlayManager implements MapListener {
+
+    private static final int ZONE_FILL = Color.argb(70, 218, 54, 51);
+    private static final int ZONE_OUTLINE = Color.argb(200, 218, 54, 51);
+    private static final int ROUTE_COLOR = Color.parseColor("#388BFD");
+    private static final int CLUSTER_COLOR = Color.parseColor("#2EA043");
+    private static final int CLUSTER_ICON_PX = 64;
+    /** Above this zoom every shelter is drawn on its own. */
+    private static final int MAX_CLUSTERING_ZOOM = 15;
+    /** Zone outlines are simplified per integer zoom in this range; full detail from the top. */
+    private static final int MIN_DETAIL_ZOOM = 8;
+    private static final int MAX_DETAIL_ZOOM = 18;
+    private static final double SIMPLIFY_PIXELS = 1.0;
+    private static final double MIN_VISIBLE_PIXELS = 2.0;
+    /** Zones are prepared this many viewport widths and heights beyond each edge of the screen. */
+    private static final double VIEWPORT_MARGIN = 0.5;
+
+    /** One drawn zone: the polygon overlay plus its outline simplified for each zoom level. */
+    private static final class ZoneEntry {
+        final FloodZone zone;
+        final Polygon polygon;
+        @Nullable
+        List<GeoPoint>[] levels; // set on the main thread once the background pass finishes
+        int appliedZoom = -1;
+
+        ZoneEntry(FloodZone zone, Polygon polygon) {
+            this.zone = zone;
+            this.polygon = polygon;
+        }
+    }
+
+    private final MapView map;
+    private final Drawable safeIcon;
+    private final Drawable dangerIcon;
+    private final Drawable shelterIcon;
+
+    private final FolderOverlay zoneLayer = new FolderOverlay();
+    private final Map<String, ZoneEntry> zoneEntries = new HashMap<>();
+    private final List<ZoneEntry> enabledZones = new ArrayList<>();
+    private final ExecutorService geometryExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<FloodZone> nearbyScratch = new ArrayList<>();
+    private final HashSet<String> nearbyIds = new HashSet<>();
+    private final List<FloodZone> keptScratch = new ArrayList<>();
+    private final Polyline routeLine;
+    private final RadiusMarkerClusterer shelterLayer;
+    private final Marker destinationMarker;
+    private final Marker userMarker;
+
+    @Nullable
+    private FloodZoneIndex floodZones;
+
+    MapOverlayManager(@NonNull Context context, @NonNull MapView map) {
+        this.map = map;
+        safeIcon = ContextCompat.getDrawable(context, R.drawable.ic_baseline_check_circle_24);
+        dangerIcon = ContextCompat.getDrawable(context, R.drawable.ic_baseline_warning_24);
+        shelterIcon = ContextCompat.getDrawable(context, R.drawable.ic_baseline_house_siding_24);
+
+        routeLine = new Polyline(map);
+        routeLine.getOutlinePaint().setColor(ROUTE_COLOR);
+        routeLine.getOutlinePaint().setStrokeWidth(12);
+        routeLine.setEnabled(false);
+
+        shelterLayer = new RadiusMarkerClusterer(context);
+        shelterLayer.setIcon(clusterIcon());
+        shelterLayer.setMaxClusteringZoomLevel(MAX_CLUSTERING_ZOOM);
+
+        destinationMarker = new Marker(map);
+        destinationMarker.setTitle("Nearest Safe Zone");
+        destinationMarker.setIcon(safeIcon);
+        destinationMarker.setEnabled(false);
+
+        userMarker = new Marker(map);
+        userMarker.setEnabled(false);
+
+        // Drawn bottom to top.
+        map.getOverlays().add(zoneLayer);
+        map.getOverlays().add(routeLine);
+        map.getOverlays().add(shelterLayer);
+        map.getOverlays().add(destinationMarker);
+        map.getOverlays().add(userMarker);
+        map.addMapListener(this);
+        map.addOnFirstLayoutListener((view, left, top, right, bottom) -> cullZones());
+    }
+
+    /** Replaces the shelter markers. Called when the shelter set itself changes. */
+    void setShelters(@NonNull ShelterIndex shelters) {
+        shelterLayer.getItems().clear();
+        for (int i = 0; i < shelters.size(); i++) {
+            Marker marker = new Marker(map);
+            marker.setPosition(new GeoPoint(shelters.getLat(i), shelters.getLon(i)));
+            marker.setTitle("Shelter");
+            marker.setIcon(shelterIcon);
+            shelterLayer.add(marker);
+        }
+        shelterLayer.invalidate();
+        map.invalidate();
+    }
+
+    /**
+     * Brings the zone polygons in line with {@code zones} around the viewport. Polygons for zones
+     * that are still the same object are kept; only added, replaced and removed zones touch the
+     * overlay.
+     */
+    void syncFloodZones(@NonNull FloodZoneIndex zones) {
+        floodZones = zones;
+        cullZones();
+        map.invalidate();
+    }
+
+    /** Stops background work; call from the activity's onDestroy. */
+    void release() {
+        map.removeMapListener(this);
+        mainHandler.removeCallbacksAndMessages(null);
+        geometryExecutor.shutdownNow();
+    }
+
+    void showUserSafe(@NonNull GeoPoint location) {
+        clearRoute();
+        showUser(location, safeIcon, "You are here", "Location appears safe.");
+    }
+
+    void showUserInDanger(@NonNull GeoPoint location) {
+        showUser(location, dangerIcon, "Your Location (Danger Zone)", null);
+    }
+
+    void showRoute(@NonNull Road road) {
+        routeLine.setPoints(road.mRouteHigh);
+        routeLine.setEnabled(true);
+        destinationMarker.setPosition(road.mRouteHigh.get(road.mRouteHigh.size() - 1));
+        destinationMarker.setEnabled(true);
+        map.invalidate();
+    }
+
+    void clearRoute() {
+        if (routeLine.isEnabled() || destinationMarker.isEnabled()) {
+            routeLine.setEnabled(false);
+            destinationMarker.setEnabled(false);
+            map.invalidate();
+        }
+    }
+
+    private void showUser(GeoPoint location, Drawable icon, String title, @Nullable String description) {
+        userMarker.setPosition(location);
+        if (userMarker.getIcon() != icon) {
+            userMarker.setIcon(icon);
+        }
+        userMarker.setTitle(title);
+        userMarker.setSubDescription(description);
+        userMarker.setEnabled(true);
+        map.invalidate();
+    }
+
+    @Override
+    public boolean onScroll(ScrollEvent event) {
+        cullZones();
+        return false;
+    }
+
+    @Override
+    public boolean onZoom(ZoomEvent event) {
+        cullZones();
+        return false;
+    }
+
+    /**
+     * Gives every zone near the viewport that is big enough to see a polygon, drops the polygons
+     * of zones that are no longer near it, and enables only the ones on screen with the outline
+     * simplified for the current zoom.
+     */
+    private void cullZones() {
+        if (floodZones == null) {
+            return;
+        }
+        for (int i = 0; i < enabledZones.size(); i++) {
+            enabledZones.get(i).polygon.setEnabled(false);
+        }
+        enabledZones.clear();
+
+        double zoom = map.getZoomLevelDouble();
+        int detailZoom = Math.max(MIN_DETAIL_ZOOM, Math.min(MAX_DETAIL_ZOOM, (int) Math.round(zoom)));
+        double degreesPerPixel = 360.0 / 256.0 / Math.pow(2, zoom);
+        BoundingBox box = map.getBoundingBox();
+        double south = box.getLatSouth();
+        double west = box.getLonWest();
+        double north = box.getLatNorth();
+        double east = box.getLonEast();
+        double latMargin = (north - south) * VIEWPORT_MARGIN;
+        double lonMargin = (east - west) * VIEWPORT_MARGIN;
+
+        nearbyScratch.clear();
+        nearbyIds.clear();
+        floodZones.query(Math.max(-90, south - latMargin), Math.max(-180, west - lonMargin),
+                Math.min(90, north + latMargin), Math.min(180, east + lonMargin),
+                MIN_VISIBLE_PIXELS * degreesPerPixel, nearbyScratch);
+        for (int i = 0; i < nearbyScratch.size(); i++) {
+            FloodZone zone = nearbyScratch.get(i);
+            nearbyIds.add(zone.getId());
+            ZoneEntry entry = zoneEntries.get(zone.getId());
+            if (entry == null || entry.zone != zone) {
+                Polygon polygon;
+                if (entry != null) {
+                    polygon = entry.polygon;
+                } else {
+                    polygon = newZonePolygon();
+                    zoneLayer.add(polygon);
+                }
+                entry = new ZoneEntry(zone, polygon);
+                zoneEntries.put(zone.getId(), entry);
+                buildLevels(entry);
+                continue;
+            }
+            if (entry.levels == null || !zone.intersectsBox(south, west, north, east)) {
+                continue;
+            }
+            if (entry.appliedZoom != detailZoom) {
+                entry.polygon.setPoints(entry.levels[detailZoom - MIN_DETAIL_ZOOM]);
+                entry.appliedZoom = detailZoom;
+            }
+            entry.polygon.setEnabled(true);
+            enabledZones.add(entry);
+        }
+        nearbyScratch.clear();
+
+        if (zoneEntries.size() > nearbyIds.size()) {
+            for (Iterator<ZoneEntry> it = zoneEntries.values().iterator(); it.hasNext(); ) {
+                ZoneEntry entry = it.next();
+                if (!nearbyIds.contains(entry.zone.getId())) {
+                    it.remove();
+                    zoneLayer.remove(entry.polygon);
+                }
+            }
+            // The index need not keep the zones the map has let go either.
+            keptScratch.clear();
+            for (ZoneEntry entry : zoneEntries.values()) {
+                keptScratch.add(entry.zone);
+            }
+            floodZones.retainDecoded(keptScratch);
+            keptScratch.clear();
+        }
+    }
+
+    /** Simplifies the zone for every detail zoom off the UI thread, then shows it. */
+    private void buildLevels(ZoneEntry entry) {
+        FloodZone zone = entry.zone;
+        geometryExecutor.execute(() -> {
+            List<GeoPoint>[] levels = simplifiedLevels(zone);
+            mainHandler.post(() -> {
+                if (zoneEntries.get(zone.getId()) == entry) {
+                    entry.levels = levels;
+                    cullZones();
+                    map.invalidate();
+                }
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<GeoPoint>[] simplifiedLevels(FloodZone zone) {
+        int count = zone.getVertexCount();
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = zone.getLat(i);
+            lons[i] = zone.getLon(i);
+        }
+        double meanLat = (zone.getMinLat() + zone.getMaxLat()) / 2;
+
+        List<GeoPoint>[] levels = new List[MAX_DETAIL_ZOOM - MIN_DETAIL_ZOOM + 1];
+        List<GeoPoint> finer = toPoints(lats, lons, null);
+        levels[levels.length - 1] = finer;
+        int finerCount = count;
+        for (int zoom = MAX_DETAIL_ZOOM - 1; zoom >= MIN_DETAIL_ZOOM; zoom--) {
+            int[] kept = PolygonSimplifier.simplify(lats, lons,
+                    PolygonSimplifier.toleranceForZoom(zoom, meanLat, SIMPLIFY_PIXELS));
+            if (kept.length != finerCount) {
+                // Share the list between levels where simplification removed nothing more.
+                finer = toPoints(lats, lons, kept);
+                finerCount = kept.length;
+            }
+            levels[zoom - MIN_DETAIL_ZOOM] = finer;
+        }
+        return levels;
+    }
+
+    private Polygon newZonePolygon() {
+        Polygon polygon = new Polygon(map);
+        polygon.getFillPaint().setColor(ZONE_FILL);
+        polygon.getOutlinePaint().setColor(ZONE_OUTLINE);
+        polygon.getOutlinePaint().setStrokeWidth(3);
+        polygon.setTitle("Reported flood zone");
+        polygon.setEnabled(false);
+        return polygon;
+    }
+
+    private static List<GeoPoint> toPoints(double[] lats, double[] lons, @Nullable int[] indices) {
+        int count = indices != null ? indices.length : lats.length;
+        List<GeoPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = indices != null ? indices[i] : i;
+            points.add(new GeoPoint(lats[index], lons[index]));
+        }
+        return points;
+    }
+
+    private static Bitmap clusterIcon() {
+        Bitmap bitmap = Bitmap.createBitmap(CLUSTER_ICON_PX, CLUSTER_ICON_PX, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(CLUSTER_COLOR);
+        float radius = CLUSTER_ICON_PX / 2f;
+        canvas.drawCircle(radius, radius, radius, paint);
+        return bitmap;
+    }
+}
@@ -1,231 +1,390 @@
 package com.example.floodalert;
 
 import android.Manifest;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Color; // CORRECTED: Import for Color
 import android.location.Location;
-import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewStub;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
-
-// --- ADDED: All necessary imports for Google Play Services Location ---
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.google.android.material.button.MaterialButton;
 
-import org.osmdroid.bonuspack.routing.OSRMRoadManager;
 import org.osmdroid.bonuspack.routing.Road;
-import org.osmdroid.bonuspack.routing.RoadManager;
-import org.osmdroid.config.Configuration;
 import org.osmdroid.util.BoundingBox;
 import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
-import org.osmdroid.views.overlay.Marker;
-import org.osmdroid.views.overlay.Polyline;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * The flood map with the user's safety status and, in a flood zone, the route out.
+ *
+ * The status card is what matters first, so it is drawn before osmdroid is touched: the map view
+ * is a stub, inflated once the first frame is up and {@link OsmdroidConfig} has loaded off the main
+ * thread. The safety check does not need the map and starts right away when location permission is
+ * already held; whatever it finds is put on the map when the map arrives.
+ */
 public class MapRoutesActivity extends AppCompatActivity {
 
+    private static final String TAG = "MapRoutesActivity";
+
+    // Straight-line nearest shelters that are re-ranked by actual route duration
+    private static final int ROUTE_CANDIDATES = 3;
+    /** A recreated screen does not sync again if the last sync ended less than this long ago. */
+    private static final long MIN_SYNC_INTERVAL_MS = 5 * 60 * 1000;
+    private static final String KEY_ASKED_BACKGROUND_LOCATION = "asked_background_location";
+
     // --- All features and variables are unchanged ---
+    // Null until the map has been inflated; see inflateMap()
     private MapView map;
-    private FusedLocationProviderClient fusedLocationClient;
+    private MapOverlayManager overlays;
+    private boolean userInDanger;
     private ActivityResultLauncher<String> requestPermissionLauncher;
+    private ActivityResultLauncher<String> backgroundLocationLauncher;
     private GeoPoint currentLocation;
     private TextView statusTitleText, statusDescriptionText;
     private MaterialButton checkSafetyButton;
-    private List<BoundingBox> currentFloodZones;
-    private List<GeoPoint> safeZones;
+    private FloodZoneIndex currentFloodZones;
+    private ShelterIndex shelters;
+    private RouteViewModel routeViewModel;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        Configuration.getInstance().load(this, getPreferences(MODE_PRIVATE));
         setContentView(R.layout.activity_map_routes);
 
-        map = findViewById(R.id.map);
         statusTitleText = findViewById(R.id.status_title_text);
         statusDescriptionText = findViewById(R.id.status_description_text);
         checkSafetyButton = findViewById(R.id.check_safety_button);
-        map.setMultiTouchControls(true);
 
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         setupLocationPermissionLauncher();
-        initializeSimulatedData();
+        loadFloodData(savedInstanceState == null);
+
+        routeViewModel = new ViewModelProvider(this).get(RouteViewModel.class);
+        routeViewModel.getUiState().observe(this, this::renderRoute);
 
         checkSafetyButton.setOnClickListener(v -> promptForLocationAndCheckStatus());
         findViewById(R.id.fab_my_location).setOnClickListener(v -> centerOnMyLocation());
+
+        inflateMapAfterFirstFrame();
+        // With permission already granted, check right away; the map is not needed for the verdict.
+        if (savedInstanceState == null
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+            FloodDataSync.getInstance(this).whenLoaded()
+                    .thenRun(() -> runOnUiThread(() -> getCurrentLocationAndAssessSafety(false)));
+        }
+    }
+
+    /** Inflates the map once the status card has been drawn and osmdroid's configuration is loaded. */
+    private void inflateMapAfterFirstFrame() {
+        CompletableFuture<Void> firstFrame = new CompletableFuture<>();
+        View root = findViewById(android.R.id.content);
+        root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                root.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Posted from pre-draw, this runs after the frame being drawn.
+                root.post(() -> firstFrame.complete(null));
+                return true;
+            }
+        });
+        // A failed load leaves osmdroid's defaults, which still show a map.
+        CompletableFuture<Void> configured = OsmdroidConfig.load(this).handle((ignored, error) -> {
+            if (error != null) {
+                Log.w(TAG, "Could not load the osmdroid configuration; using defaults.", error);
+            }
+            return null;
+        });
+        firstFrame.runAfterBoth(configured, () -> runOnUiThread(this::inflateMap));
+    }
+
+    private void inflateMap() {
+        if (isDestroyed()) {
+            return;
+        }
+        ViewStub stub = findViewById(R.id.map_stub);
+        map = (MapView) stub.inflate();
+        map.setTileSource(RegionPackManager.TILE_SOURCE);
+        map.setMultiTouchControls(true);
+        overlays = new MapOverlayManager(this, map);
+        if (getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED)) {
+            map.onResume();
+        }
+
+        // Catch the map up with whatever arrived while it was being set up.
+        overlays.syncFloodZones(currentFloodZones);
+        overlays.setShelters(shelters);
+        if (currentLocation != null) {
+            showUserOnMap();
+            map.getController().setZoom(16.0);
+            map.getController().setCenter(currentLocation);
+        }
+        renderRoute(routeViewModel.getUiState().getValue());
     }
 
     // --- All feature logic below is exactly the same as before ---
 
-    private void initializeSimulatedData() {
-        currentFloodZones = new ArrayList<>();
-        currentFloodZones.add(new BoundingBox(19.025, 72.85, 19.015, 72.84));
-        currentFloodZones.add(new BoundingBox(19.045, 72.865, 19.035, 72.855));
-        safeZones = new ArrayList<>();
-        safeZones.add(new GeoPoint(19.0176, 72.8562));
-        safeZones.add(new GeoPoint(18.9432, 72.8228));
-        safeZones.add(new GeoPoint(19.1197, 72.8437));
+    /**
+     * Picks up zones and shelters once stored data is loaded and again after a feed sync. A
+     * recreated screen (e.g. after rotation) only syncs if the last sync is stale.
+     */
+    private void loadFloodData(boolean firstCreate) {
+        FloodDataSync data = FloodDataSync.getInstance(this);
+        currentFloodZones = data.getZones();
+        shelters = data.getShelters();
+        data.whenLoaded().thenRun(() -> runOnUiThread(this::onFloodDataChanged));
+        if (!firstCreate && data.millisSinceLastSync() < MIN_SYNC_INTERVAL_MS) {
+            return;
+        }
+        data.sync().whenComplete((changed, error) -> {
+            if (error != null) {
+                Log.w(TAG, "Flood data sync failed; using stored data.", error);
+            } else if (changed) {
+                runOnUiThread(this::onFloodDataChanged);
+            }
+        });
+    }
+
+    private void onFloodDataChanged() {
+        if (isDestroyed()) {
+            return;
+        }
+        shelters = FloodDataSync.getInstance(this).getShelters();
+        if (overlays != null) {
+            overlays.syncFloodZones(currentFloodZones);
+            overlays.setShelters(shelters);
+        }
+        FloodZoneGeofences.refresh(this, LocationProvider.getInstance(this).getLastFix());
     }
 
     private void setupLocationPermissionLauncher() {
         requestPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
             if (isGranted) {
-                getCurrentLocationAndAssessSafety();
+                getCurrentLocationAndAssessSafety(true);
             } else {
                 Toast.makeText(this, "Location permission is required to assess safety.", Toast.LENGTH_LONG).show();
             }
         });
+        backgroundLocationLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
+            if (isGranted) {
+                FloodZoneGeofences.refresh(this, LocationProvider.getInstance(this).getLastFix());
+            }
+        });
+    }
+
+    /**
+     * Flood-zone entry alerts need location access while the app is closed. Asked once, after the
+     * user has chosen to check their location, with the reason given first.
+     */
+    private void offerEntryAlertsOnce() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || FloodZoneGeofences.hasPermission(this)) {
+            return;
+        }
+        SharedPreferences prefs = getPreferences(MODE_PRIVATE);
+        if (prefs.getBoolean(KEY_ASKED_BACKGROUND_LOCATION, false)) {
+            return;
+        }
+        prefs.edit().putBoolean(KEY_ASKED_BACKGROUND_LOCATION, true).apply();
+        new AlertDialog.Builder(this)
+                .setTitle("Flood zone alerts")
+                .setMessage("To warn you when you walk or drive into a flood zone, even with the app closed, allow location access \"All the time\". The app does not keep GPS on to do this.")
+                .setPositiveButton("Allow", (dialog, which) ->
+                        backgroundLocationLauncher.launch(Manifest.permission.ACCESS_BACKGROUND_LOCATION))
+                .setNegativeButton("Not now", null)
+                .show();
     }
 
     private void promptForLocationAndCheckStatus() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            getCurrentLocationAndAssessSafety();
+            getCurrentLocationAndAssessSafety(true);
         } else {
             requestPermissionLauncher.launch(Manifest.permission.ACCESS_FINE_LOCATION);
         }
     }
 
-    private void getCurrentLocationAndAssessSafety() {
-        Toast.makeText(this, "Checking your location...", Toast.LENGTH_SHORT).show();
-        try {
-            fusedLocationClient.getLastLocation().addOnSuccessListener(this, location -> {
-                if (location != null) {
-                    currentLocation = new GeoPoint(location.getLatitude(), location.getLongitude());
-                    boolean isInDanger = isUserInFloodedZone(currentLocation);
-                    if (isInDanger) {
-                        updateUiForDanger(currentLocation);
+    /** @param asked whether the user asked for this check, rather than it running on opening */
+    private void getCurrentLocationAndAssessSafety(boolean asked) {
+        if (asked) {
+            Toast.makeText(this, "Checking your location...", Toast.LENGTH_SHORT).show();
+        } else {
+            statusDescriptionText.setText("Checking your location...");
+        }
+        LocationProvider.getInstance(this)
+                .getLocation(this::onLocationRefined)
+                .whenComplete((location, error) -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (error instanceof SecurityException) {
+                        Toast.makeText(this, "Location permission error.", Toast.LENGTH_SHORT).show();
+                    } else if (error != null) {
+                        Toast.makeText(this, "Could not get your location. Please ensure GPS is enabled.", Toast.LENGTH_LONG).show();
                     } else {
-                        updateUiForSafe(currentLocation);
+                        if (LocationProvider.isApproximate(location)) {
+                            Toast.makeText(this, "No current GPS fix; using your last known location.", Toast.LENGTH_LONG).show();
+                        }
+                        assessSafety(location);
+                        if (asked) {
+                            offerEntryAlertsOnce();
+                        }
                     }
-                } else {
-                    Toast.makeText(this, "Could not get your location. Please ensure GPS is enabled.", Toast.LENGTH_LONG).show();
-                }
-            });
-        } catch (SecurityException e) {
-            Toast.makeText(this, "Location permission error.", Toast.LENGTH_SHORT).show();
+                });
+    }
+
+    /** A better fix can land seconds later, after the screen has gone; it is dropped then. */
+    private void onLocationRefined(Location location) {
+        if (isDestroyed()) {
+            return;
         }
+        assessSafety(location);
     }
 
-    private boolean isUserInFloodedZone(GeoPoint userLocation) {
-        for (BoundingBox zone : currentFloodZones) {
-            if (zone.contains(userLocation)) {
-                return true;
-            }
+    private void assessSafety(Location location) {
+        currentLocation = new GeoPoint(location.getLatitude(), location.getLongitude());
+        boolean isInDanger = isUserInFloodedZone(currentLocation);
+        if (isInDanger) {
+            updateUiForDanger(currentLocation);
+        } else {
+            updateUiForSafe(currentLocation);
         }
-        return false;
+        FloodZoneGeofences.refresh(this, location);
+    }
+
+    private boolean isUserInFloodedZone(GeoPoint userLocation) {
+        return currentFloodZones.isInZone(userLocation.getLatitude(), userLocation.getLongitude());
     }
 
     private void updateUiForSafe(GeoPoint userLocation) {
-        map.getOverlays().clear();
-        map.invalidate();
+        routeViewModel.clearRoute();
         statusTitleText.setText("Location Status: Safe");
         statusDescriptionText.setText("Your current location appears to be safe from reported flooding. Stay aware and check back if conditions change.");
         checkSafetyButton.setText("Re-check My Location");
-        Marker safeMarker = new Marker(map);
-        safeMarker.setPosition(userLocation);
-        safeMarker.setTitle("You are here");
-        safeMarker.setSubDescription("Location appears safe.");
-        // NOTE: Make sure you have 'ic_baseline_check_circle_24.xml' in your res/drawable folder
-        safeMarker.setIcon(ContextCompat.getDrawable(this, R.drawable.ic_baseline_check_circle_24));
-        map.getOverlays().add(safeMarker);
+        userInDanger = false;
+        showUserOnMap();
         centerOnMyLocation();
     }
 
     private void updateUiForDanger(GeoPoint userLocation) {
-        map.getOverlays().clear();
-        map.invalidate();
+        userInDanger = true;
+        showUserOnMap();
         statusTitleText.setText("Warning: Flood Zone Detected");
         statusDescriptionText.setText("Your location is within a reported flood zone. Calculating the nearest evacuation route to a safe area.");
-        checkSafetyButton.setText("Recalculating Route...");
-        checkSafetyButton.setEnabled(false);
-        GeoPoint nearestSafeZone = findNearestPoint(userLocation, safeZones);
-        new UpdateRoadTask().execute(userLocation, nearestSafeZone);
-    }
-
-    private GeoPoint findNearestPoint(GeoPoint current, List<GeoPoint> points) {
-        GeoPoint nearest = null;
-        double minDistance = -1;
-        for (GeoPoint p : points) {
-            double distance = current.distanceToAsDouble(p);
-            if (minDistance == -1 || distance < minDistance) {
-                minDistance = distance;
-                nearest = p;
-            }
+        GeoPoint[] candidates = findCandidateShelters(userLocation);
+        if (candidates.length == 0) {
+            routeViewModel.clearRoute();
+            statusDescriptionText.setText("No known shelter outside the flood zones was found. Move to higher ground and follow official instructions.");
+            return;
         }
-        return nearest;
+        routeViewModel.requestRoute(userLocation, candidates, currentFloodZones);
     }
 
-    private void centerOnMyLocation() {
-        if (currentLocation != null) {
-            map.getController().animateTo(currentLocation, 16.0, 1000L);
+    /** The nearest shelters by straight line, leaving out any that sit inside a flood zone. */
+    private GeoPoint[] findCandidateShelters(GeoPoint current) {
+        int[] nearest = shelters.nearest(current.getLatitude(), current.getLongitude(), ROUTE_CANDIDATES,
+                i -> !currentFloodZones.isInZone(shelters.getLat(i), shelters.getLon(i)));
+        GeoPoint[] candidates = new GeoPoint[nearest.length];
+        for (int i = 0; i < nearest.length; i++) {
+            candidates[i] = new GeoPoint(shelters.getLat(nearest[i]), shelters.getLon(nearest[i]));
+        }
+        return candidates;
+    }
+
+    /** Marks the user on the map as safe or in danger; a no-op until the map exists. */
+    private void showUserOnMap() {
+        if (overlays == null || currentLocation == null) {
+            return;
+        }
+        if (userInDanger) {
+            overlays.showUserInDanger(currentLocation);
         } else {
-            promptForLocationAndCheckStatus();
+            overlays.showUserSafe(currentLocation);
         }
     }
 
-    private class UpdateRoadTask extends AsyncTask<GeoPoint, Void, Road> {
-        @Override
-        protected Road doInBackground(GeoPoint... params) {
-            ArrayList<GeoPoint> waypoints = new ArrayList<>();
-            waypoints.add(params[0]);
-            waypoints.add(params[1]);
-            RoadManager roadManager = new OSRMRoadManager(MapRoutesActivity.this, "FloodAlertApp/1.0");
-            return roadManager.getRoad(waypoints);
+    private void centerOnMyLocation() {
+        if (currentLocation == null) {
+            promptForLocationAndCheckStatus();
+        } else if (map != null) {
+            map.getController().animateTo(currentLocation, 16.0, 1000L);
         }
+        // Without a map yet, inflateMap() centres on the location when it arrives.
+    }
 
-        @Override
-        protected void onPostExecute(Road road) {
-            super.onPostExecute(road);
-            checkSafetyButton.setText("Check My Safety Status");
+    private void renderRoute(UiState state) {
+        if (state instanceof UiState.Loading) {
+            checkSafetyButton.setText("Recalculating Route...");
+            checkSafetyButton.setEnabled(false);
+            return;
+        }
+        if (state == null) {
+            if (overlays != null) {
+                overlays.clearRoute();
+            }
             checkSafetyButton.setEnabled(true);
-            if (road.mStatus == Road.STATUS_OK) {
-                Polyline roadOverlay = RoadManager.buildRoadOverlay(road);
-                // CORRECTED: Using a standard color to avoid resource errors.
-                roadOverlay.getOutlinePaint().setColor(Color.parseColor("#388BFD"));
-                roadOverlay.getOutlinePaint().setStrokeWidth(12);
-                map.getOverlays().add(roadOverlay);
-                Marker startMarker = new Marker(map);
-                startMarker.setPosition(currentLocation);
-                startMarker.setTitle("Your Location (Danger Zone)");
-                // NOTE: Make sure you have 'ic_baseline_warning_24.xml' in your res/drawable folder
-                startMarker.setIcon(ContextCompat.getDrawable(MapRoutesActivity.this, R.drawable.ic_baseline_warning_24));
-                map.getOverlays().add(startMarker);
-                Marker endMarker = new Marker(map);
-                endMarker.setPosition(road.mRouteHigh.get(road.mRouteHigh.size() - 1));
-                endMarker.setTitle("Nearest Safe Zone");
-                // NOTE: Make sure you have 'ic_baseline_check_circle_24.xml' in your res/drawable folder
-                endMarker.setIcon(ContextCompat.getDrawable(MapRoutesActivity.this, R.drawable.ic_baseline_check_circle_24));
-                map.getOverlays().add(endMarker);
-                BoundingBox boundingBox = road.mBoundingBox;
-                map.zoomToBoundingBox(boundingBox, true, 100);
-                map.invalidate();
-                statusDescriptionText.setText("Evacuation route calculated. Please proceed to the safe zone with caution.");
-            } else {
-                Toast.makeText(MapRoutesActivity.this, "Error: Could not calculate evacuation route. Status: " + road.mStatus, Toast.LENGTH_LONG).show();
-                statusDescriptionText.setText("Could not calculate a route. Please check your internet connection and try again.");
+            return;
+        }
+        checkSafetyButton.setText("Check My Safety Status");
+        checkSafetyButton.setEnabled(true);
+        if (state instanceof UiState.Error) {
+            if (overlays != null) {
+                overlays.clearRoute();
             }
+            Toast.makeText(this, "Error: Could not calculate evacuation route.", Toast.LENGTH_LONG).show();
+            statusDescriptionText.setText(((UiState.Error) state).message);
+            return;
         }
+
+        RouteViewModel.Route route = (RouteViewModel.Route) ((UiState.Success<?>) state).data;
+        Road road = route.road;
+        // Also runs after a rotation, when the layout is fresh and only the view model remembers.
+        currentLocation = route.start;
+        userInDanger = true;
+        statusTitleText.setText("Warning: Flood Zone Detected");
+        if (overlays != null) {
+            overlays.showUserInDanger(route.start);
+            overlays.showRoute(road);
+            BoundingBox boundingBox = road.mBoundingBox;
+            // The map may not be laid out yet right after a rotation or inflation.
+            map.post(() -> map.zoomToBoundingBox(boundingBox, true, 100));
+        }
+        statusDescriptionText.setText("Evacuation route calculated. Please proceed to the safe zone with caution.");
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        map.onResume();
+        if (map != null) {
+            map.onResume();
+        }
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        map.onPause();
+        if (map != null) {
+            map.onPause();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (overlays != null) {
+            overlays.release();
+        }
+        super.onDestroy();
     }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.util.BoundingBox;
+import org.osmdroid.util.GeoPoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * {@link RoadManager} that routes on a region graph stored on the device instead of calling OSRM.
+ *
+ * Evacuation routing is needed exactly when the cell network is least reliable, so this manager
+ * works with no connectivity at all. Roads touching a known flood zone are heavily penalized
+ * rather than removed: the user is usually standing inside one when a route is requested and
+ * still has to be led out of it. The returned {@link Road} has the same fields OSRM fills in, so
+ * {@link RoadManager#buildRoadOverlay} draws it unchanged.
+ */
+public class OfflineRoadManager extends RoadManager {
+
+    private static final String TAG = "OfflineRoadManager";
+    private static final String GRAPH_FILE = "routing/region.graph";
+
+    /** Travel time multiplier for roads in a flood zone; high enough to take any dry detour. */
+    static final double FLOOD_PENALTY = 50.0;
+
+    private static RoadGraph cachedGraph;
+    private static File cachedFile;
+    private static long cachedModified;
+
+    private final RoadGraph graph;
+    @Nullable
+    private final FloodZoneIndex floodZones;
+
+    public OfflineRoadManager(@NonNull RoadGraph graph, @Nullable FloodZoneIndex floodZones) {
+        super();
+        this.graph = graph;
+        this.floodZones = floodZones;
+    }
+
+    /** Where the region's routing graph is installed. */
+    @NonNull
+    public static File graphFile(@NonNull Context context) {
+        return new File(context.getFilesDir(), GRAPH_FILE);
+    }
+
+    /**
+     * Returns a manager for the installed region graph, or null when none is installed or it
+     * cannot be read. The graph is loaded once per process and reloaded only if the file changes.
+     * Must be called off the UI thread.
+     */
+    @Nullable
+    public static OfflineRoadManager forInstalledRegion(@NonNull Context context, @Nullable FloodZoneIndex floodZones) {
+        File file = graphFile(context.getApplicationContext());
+        if (!file.isFile()) {
+            return null;
+        }
+        synchronized (OfflineRoadManager.class) {
+            if (cachedGraph == null || !file.equals(cachedFile) || file.lastModified() != cachedModified) {
+                try {
+                    long started = System.currentTimeMillis();
+                    cachedGraph = RoadGraph.load(file);
+                    cachedFile = file;
+                    cachedModified = file.lastModified();
+                    Log.d(TAG, "Loaded " + cachedGraph.nodeCount() + " road nodes in "
+                            + (System.currentTimeMillis() - started) + " ms");
+                } catch (IOException | OutOfMemoryError e) {
+                    Log.w(TAG, "Could not load routing graph", e);
+                    cachedGraph = null;
+                    return null;
+                }
+            }
+            return new OfflineRoadManager(cachedGraph, floodZones);
+        }
+    }
+
+    @Override
+    public Road getRoad(ArrayList<GeoPoint> waypoints) {
+        if (waypoints == null || waypoints.size() < 2) {
+            return new Road(waypoints != null ? waypoints : new ArrayList<>());
+        }
+
+        ArrayList<GeoPoint> shape = new ArrayList<>();
+        double meters = 0;
+        double seconds = 0;
+        int previous = graph.nearestNode(waypoints.get(0).getLatitude(), waypoints.get(0).getLongitude());
+        for (int i = 1; i < waypoints.size() && previous >= 0; i++) {
+            GeoPoint waypoint = waypoints.get(i);
+            int next = graph.nearestNode(waypoint.getLatitude(), waypoint.getLongitude());
+            RoadGraph.Path path = graph.route(previous, next, floodZones != null ? this::isFlooded : null, FLOOD_PENALTY);
+            if (path == null) {
+                Log.w(TAG, "No offline route between waypoints " + (i - 1) + " and " + i);
+                return new Road(waypoints);
+            }
+            for (int p = shape.isEmpty() ? 0 : 1; p < path.nodes.length; p++) {
+                shape.add(new GeoPoint(graph.getLat(path.nodes[p]), graph.getLon(path.nodes[p])));
+            }
+            meters += path.meters;
+            seconds += path.seconds;
+            previous = next;
+        }
+        if (previous < 0 || shape.size() < 2) {
+            return new Road(waypoints);
+        }
+
+        Road road = new Road();
+        road.mStatus = Road.STATUS_OK;
+        road.mRouteHigh = shape;
+        road.mLength = meters / 1000.0;
+        road.mDuration = seconds;
+        road.mBoundingBox = BoundingBox.fromGeoPoints(shape);
+        return road;
+    }
+
+    @Override
+    public Road[] getRoads(ArrayList<GeoPoint> waypoints) {
+        return new Road[]{getRoad(waypoints)};
+    }
+
+    private boolean isFlooded(int node) {
+        return floodZones.isInZone(graph.getLat(node), graph.getLon(node));
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.floodalert;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Streaming parser for Open-Meteo {@code daily} and {@code hourly} payloads.
+ *
+ * Reads straight off the connection's {@link InputStream} with {@link JsonReader}, skipping every
+ * field except {@code time} and the requested series, and collects values into primitive arrays.
+ * No intermediate String body or org.json tree is built. Must be called off the UI thread.
+ */
+final class OpenMeteoParser {
+
+    private static final long[] NO_TIMES = new long[0];
+    private static final double[] NO_VALUES = new double[0];
+    private static final int INITIAL_CAPACITY = 16;
+
+    private OpenMeteoParser() {}
+
+    /**
+     * Parses a single-location response. A payload without the requested field yields an empty
+     * series rather than an error.
+     */
+    @NonNull
+    static ForecastSeries parseSeries(@NonNull InputStream in, @NonNull ForecastSeries.Kind kind, long fetchedAtMillis) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return readLocation(reader, kind, fetchedAtMillis);
+        }
+    }
+
+    /**
+     * Parses a multi-coordinate response. Open-Meteo answers a comma-separated coordinate list
+     * with a top-level array (one object per coordinate, in request order) and a single
+     * coordinate with a plain object; both shapes are accepted.
+     */
+    @NonNull
+    static List<ForecastSeries> parseDailyBatch(@NonNull InputStream in, @NonNull ForecastSeries.Kind kind, long fetchedAtMillis) throws IOException {
+        List<ForecastSeries> results = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    results.add(readLocation(reader, kind, fetchedAtMillis));
+                }
+                reader.endArray();
+            } else {
+                results.add(readLocation(reader, kind, fetchedAtMillis));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads one location object: {@code {"utc_offset_seconds": .., "daily": {"time": [..], "<field>": [..]}}},
+     * or the same under {@code "hourly"} for an hourly kind.
+     */
+    @NonNull
+    static ForecastSeries readLocation(@NonNull JsonReader reader, @NonNull ForecastSeries.Kind kind, long fetchedAtMillis) throws IOException {
+        String field = fieldName(kind);
+        String block = blockName(kind);
+        long[] times = NO_TIMES;
+        double[] values = NO_VALUES;
+        int utcOffsetSeconds = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("utc_offset_seconds".equals(name)) {
+                utcOffsetSeconds = reader.nextInt();
+            } else if (block.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String dailyName = reader.nextName();
+                    if ("time".equals(dailyName)) {
+                        times = readTimes(reader);
+                    } else if (field.equals(dailyName)) {
+                        values = readValues(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (values.length == 0) {
+            return new ForecastSeries(kind, NO_TIMES, NO_VALUES, fetchedAtMillis);
+        }
+        if (times.length != values.length) {
+            // Keep the series usable if the two arrays disagree; missing times become 0.
+            times = Arrays.copyOf(times, values.length);
+        }
+        if (utcOffsetSeconds != 0) {
+            // Times come back in the location's local clock when timezone=auto is used.
+            for (int i = 0; i < times.length; i++) {
+                if (times[i] != 0L) {
+                    times[i] -= utcOffsetSeconds;
+                }
+            }
+        }
+        return new ForecastSeries(kind, times, values, fetchedAtMillis);
+    }
+
+    /**
+     * Hands each value of the requested daily series to {@code sink} as it is read, for histories
+     * too long to be worth collecting. Missing values are passed as {@link Double#NaN}. Returns
+     * the number of values read.
+     */
+    static int streamDailyValues(@NonNull InputStream in, @NonNull ForecastSeries.Kind kind, @NonNull DoubleConsumer sink) throws IOException {
+        String field = fieldName(kind);
+        int count = 0;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"daily".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (!field.equals(reader.nextName())) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                            sink.accept(Double.NaN);
+                        } else {
+                            sink.accept(reader.nextDouble());
+                        }
+                        count++;
+                    }
+                    reader.endArray();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        return count;
+    }
+
+    static String fieldName(ForecastSeries.Kind kind) {
+        switch (kind) {
+            case RIVER_DISCHARGE:
+                return "river_discharge";
+            case HOURLY_PRECIPITATION:
+                return "precipitation";
+            default:
+                return "precipitation_sum";
+        }
+    }
+
+    static String blockName(ForecastSeries.Kind kind) {
+        return kind.isHourly() ? "hourly" : "daily";
+    }
+
+    private static double[] readValues(JsonReader reader) throws IOException {
+        double[] buffer = new double[INITIAL_CAPACITY];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            double value;
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                value = Double.NaN;
+            } else {
+                value = reader.nextDouble();
+            }
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, count * 2);
+            }
+            buffer[count++] = value;
+        }
+        reader.endArray();
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    private static long[] readTimes(JsonReader reader) throws IOException {
+        long[] buffer = new long[INITIAL_CAPACITY];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            long value;
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                value = 0L;
+            } else {
+                value = parseIsoTime(reader.nextString());
+            }
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, count * 2);
+            }
+            buffer[count++] = value;
+        }
+        reader.endArray();
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Converts an Open-Meteo time stamp ({@code yyyy-MM-dd} or {@code yyyy-MM-ddTHH:mm}) to epoch
+     * seconds. java.time is not available on our minSdk, so the civil-date arithmetic is done here.
+     * Returns 0 for anything it does not recognise.
+     */
+    static long parseIsoTime(String value) {
+        if (value == null || value.length() < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return 0L;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        if (year < 0 || month < 1 || day < 1) {
+            return 0L;
+        }
+        long seconds = daysFromCivil(year, month, day) * 86400L;
+        if (value.length() >= 16 && value.charAt(10) == 'T') {
+            int hour = digits(value, 11, 13);
+            int minute = digits(value, 14, 16);
+            if (hour >= 0 && minute >= 0) {
+                seconds += hour * 3600L + minute * 60L;
+            }
+        }
+        return seconds;
+    }
+
+    private static int digits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.config.IConfigurationProvider;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads osmdroid's configuration once per process, off the main thread.
+ *
+ * Loading reads preferences, resolves the storage paths and creates the tile cache directory,
+ * all disk work that used to sit in front of the map screen's first frame. Everything that needs
+ * osmdroid (the map view, region pack downloads) waits on {@link #load} instead.
+ */
+final class OsmdroidConfig {
+
+    private static final String TAG = "OsmdroidConfig";
+    private static final String PREFS = "osmdroid";
+
+    private static CompletableFuture<Void> loaded;
+
+    private OsmdroidConfig() {
+    }
+
+    /** Completes once the configuration is loaded; a failed load is retried on the next call. */
+    @NonNull
+    static synchronized CompletableFuture<Void> load(@NonNull Context context) {
+        if (loaded == null || loaded.isCompletedExceptionally()) {
+            Context appContext = context.getApplicationContext();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            loaded = CompletableFuture.runAsync(() -> {
+                IConfigurationProvider configuration = Configuration.getInstance();
+                configuration.load(appContext, appContext.getSharedPreferences(PREFS, Context.MODE_PRIVATE));
+                File tileCache = configuration.getOsmdroidTileCache();
+                if (!tileCache.isDirectory() && !tileCache.mkdirs()) {
+                    Log.w(TAG, "Could not create the tile cache at " + tileCache);
+                }
+            }, executor);
+            executor.shutdown(); // One task; the thread ends with it.
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.floodalert;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimate of one quantile in constant memory (the P² algorithm of Jain and Chlamtac).
+ *
+ * Five markers track the minimum, the target quantile, the maximum and the two points halfway
+ * to them. Each new value shifts the markers' positions; a marker that drifts a whole position
+ * from where it should be is moved by a piecewise-parabolic fit. Decades of daily discharge can
+ * be reduced to a percentile while the response is still being read, without holding the values.
+ */
+final class P2Quantile {
+
+    private final double p;
+    private final double[] heights = new double[5];
+    private final double[] positions = new double[5];
+    private final double[] desired = new double[5];
+    private final double[] increments = new double[5];
+    private int count;
+
+    /** @param p the quantile to track, strictly between 0 and 1 (0.9 for P90) */
+    P2Quantile(double p) {
+        if (!(p > 0 && p < 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + p);
+        }
+        this.p = p;
+        increments[0] = 0;
+        increments[1] = p / 2;
+        increments[2] = p;
+        increments[3] = (1 + p) / 2;
+        increments[4] = 1;
+    }
+
+    void add(double value) {
+        if (count < 5) {
+            heights[count++] = value;
+            if (count == 5) {
+                Arrays.sort(heights);
+                for (int i = 0; i < 5; i++) {
+                    positions[i] = i;
+                }
+                desired[0] = 0;
+                desired[1] = 2 * p;
+                desired[2] = 4 * p;
+                desired[3] = 2 + 2 * p;
+                desired[4] = 4;
+            }
+            return;
+        }
+
+        int cell;
+        if (value < heights[0]) {
+            heights[0] = value;
+            cell = 0;
+        } else if (value >= heights[4]) {
+            heights[4] = value;
+            cell = 3;
+        } else {
+            cell = 0;
+            while (value >= heights[cell + 1]) {
+                cell++;
+            }
+        }
+        for (int i = cell + 1; i < 5; i++) {
+            positions[i]++;
+        }
+        for (int i = 0; i < 5; i++) {
+            desired[i] += increments[i];
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            double drift = desired[i] - positions[i];
+            if ((drift >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (drift <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int step = drift > 0 ? 1 : -1;
+                double candidate = parabolic(i, step);
+                if (heights[i - 1] < candidate && candidate < heights[i + 1]) {
+                    heights[i] = candidate;
+                } else {
+                    heights[i] = linear(i, step);
+                }
+                positions[i] += step;
+            }
+        }
+        count++;
+    }
+
+    /** The current estimate; exact while fewer than five values have been seen, NaN for none. */
+    double value() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (count < 5) {
+            double[] seen = Arrays.copyOf(heights, count);
+            Arrays.sort(seen);
+            return seen[(int) Math.round(p * (count - 1))];
+        }
+        return heights[2];
+    }
+
+    int count() {
+        return count;
+    }
+
+    private double parabolic(int i, int step) {
+        double below = positions[i] - positions[i - 1];
+        double above = positions[i + 1] - positions[i];
+        return heights[i] + step / (positions[i + 1] - positions[i - 1])
+                * ((below + step) * (heights[i + 1] - heights[i]) / above
+                + (above - step) * (heights[i] - heights[i - 1]) / below);
+    }
+
+    private double linear(int i, int step) {
+        return heights[i] + step * (heights[i + step] - heights[i]) / (positions[i + step] - positions[i]);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of scoring one {@link WatchedPlace} in a batch evaluation.
+ */
+public class PlaceRisk {
+    private final WatchedPlace place;
+    @Nullable
+    private final ForecastSeries discharge;
+    private final boolean highRisk;
+    private final double score;
+    private final double dangerRatio;
+
+    public PlaceRisk(@NonNull WatchedPlace place, @Nullable ForecastSeries discharge, boolean highRisk, double score, double dangerRatio) {
+        this.place = place;
+        this.discharge = discharge;
+        this.highRisk = highRisk;
+        this.score = score;
+        this.dangerRatio = dangerRatio;
+    }
+
+    @NonNull
+    public WatchedPlace getPlace() {
+        return place;
+    }
+
+    /** The series the verdict was based on, or null when no data could be obtained. */
+    @Nullable
+    public ForecastSeries getDischarge() {
+        return discharge;
+    }
+
+    public boolean hasData() {
+        return discharge != null && !discharge.isEmpty();
+    }
+
+    public boolean isHighRisk() {
+        return highRisk;
+    }
+
+    /** Higher is more urgent. Only meaningful for ranking within one batch. */
+    public double getScore() {
+        return score;
+    }
+
+    /** Forecast peak over the danger level of this place's own river; see {@link RiskEngine#dangerRatio}. */
+    public double getDangerRatio() {
+        return dangerRatio;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of flood-zone rings for drawing at a given zoom.
+ *
+ * Works in a local equirectangular projection (longitude scaled by the cosine of the ring's mean
+ * latitude) so the tolerance means the same ground distance north-south and east-west. The
+ * recursion is replaced by an explicit stack, so rings with hundreds of thousands of vertices from
+ * district-scale flood maps cannot overflow the thread stack.
+ */
+final class PolygonSimplifier {
+
+    /** Width of a 256 px tile in degrees of longitude at zoom 0. */
+    private static final double DEGREES_PER_PIXEL_AT_ZOOM_0 = 360.0 / 256.0;
+
+    private PolygonSimplifier() {}
+
+    /**
+     * Tolerance, in the projected units {@link #simplify} uses, under which a vertex is invisible
+     * at {@code zoom}. {@code pixels} is how far a dropped vertex may sit from the drawn outline.
+     */
+    static double toleranceForZoom(int zoom, double meanLat, double pixels) {
+        return DEGREES_PER_PIXEL_AT_ZOOM_0 / (1L << zoom) * Math.cos(Math.toRadians(meanLat)) * pixels;
+    }
+
+    /**
+     * Returns the indices of the vertices to keep, in order. A closed ring is split at its first
+     * vertex and the vertex farthest from it, and both halves are simplified, so the result is
+     * still a ring of at least 3 vertices whenever the input had that many.
+     */
+    @NonNull
+    static int[] simplify(@NonNull double[] lats, @NonNull double[] lons, double tolerance) {
+        int count = lats.length;
+        if (count <= 3) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        double meanLat = 0;
+        for (double lat : lats) {
+            meanLat += lat;
+        }
+        double scale = Math.cos(Math.toRadians(meanLat / count));
+
+        boolean[] keep = new boolean[count];
+        int far = farthestFrom(lats, lons, scale, 0);
+        keep[0] = true;
+        keep[far] = true;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = far;
+        stack[top++] = far;
+        stack[top++] = count; // index count stands for vertex 0 closing the ring
+
+        double toleranceSq = tolerance * tolerance;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            if (end - start < 2) {
+                continue;
+            }
+            int endIndex = end % count;
+            double ax = lons[start] * scale, ay = lats[start];
+            double bx = lons[endIndex] * scale, by = lats[endIndex];
+            double worst = -1;
+            int worstIndex = -1;
+            for (int i = start + 1; i < end; i++) {
+                double d = segmentDistanceSq(lons[i] * scale, lats[i], ax, ay, bx, by);
+                if (d > worst) {
+                    worst = d;
+                    worstIndex = i;
+                }
+            }
+            if (worst > toleranceSq) {
+                keep[worstIndex] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = start;
+                stack[top++] = worstIndex;
+                stack[top++] = worstIndex;
+                stack[top++] = end;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept < 3) {
+            // A sliver thinner than the tolerance; keep its widest point so it still draws.
+            keep[widestVertex(lats, lons, scale, 0, far)] = true;
+            kept++;
+        }
+        int[] result = new int[kept];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (keep[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    private static int farthestFrom(double[] lats, double[] lons, double scale, int origin) {
+        double ox = lons[origin] * scale, oy = lats[origin];
+        double best = -1;
+        int bestIndex = 1;
+        for (int i = 1; i < lats.length; i++) {
+            double dx = lons[i] * scale - ox;
+            double dy = lats[i] - oy;
+            double d = dx * dx + dy * dy;
+            if (d > best) {
+                best = d;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static int widestVertex(double[] lats, double[] lons, double scale, int a, int b) {
+        double ax = lons[a] * scale, ay = lats[a];
+        double bx = lons[b] * scale, by = lats[b];
+        double best = -1;
+        int bestIndex = a == 1 || b == 1 ? 2 : 1;
+        for (int i = 0; i < lats.length; i++) {
+            if (i == a || i == b) {
+                continue;
+            }
+            double d = segmentDistanceSq(lons[i] * scale, lats[i], ax, ay, bx, by);
+            if (d > best) {
+                best = d;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    private static double segmentDistanceSq(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.tileprovider.tilesource.OnlineTileSourceBase;
+import org.osmdroid.tileprovider.tilesource.TileSourceFactory;
+import org.osmdroid.tileprovider.tilesource.TileSourcePolicy;
+import org.osmdroid.tileprovider.tilesource.XYTileSource;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline map tiles for the areas a user cares about, stored as MBTiles region packs.
+ *
+ * Each pack is one SQLite file in osmdroid's base directory. osmdroid's archive provider picks up
+ * every {@code .mbtiles} file there when a map is created and serves tiles from it before trying
+ * the network, so a map opened with no signal still paints. Packs are downloaded by
+ * {@link RegionPackWorker} into a {@code .part} file that records its progress, so an interrupted
+ * download resumes where it stopped, and are renamed into place once complete.
+ *
+ * The tiles come from {@code BuildConfig.REGION_PACK_TILE_URL}. The default OpenStreetMap servers
+ * forbid bulk download, so without that URL the map uses them and no pack is ever scheduled.
+ *
+ * All packs together stay under {@link #MAX_TOTAL_BYTES}; the least recently used ones are evicted
+ * to make room. A pack counts as used whenever it is scheduled again, which happens for every
+ * watched place on each app start, so packs for places the user stopped watching age out first.
+ */
+public final class RegionPackManager {
+
+    private static final String TAG = "RegionPackManager";
+
+    static final String WORK_PREFIX = "region_pack_";
+    static final String FILE_PREFIX = "region_";
+    static final String COMPLETE_SUFFIX = ".mbtiles";
+    static final String PARTIAL_SUFFIX = ".mbtiles.part";
+
+    static final long MAX_TOTAL_BYTES = 150L * 1024 * 1024;
+    static final int MAX_TILES_PER_PACK = 20_000;
+    /** Used to estimate a pack's size before it is downloaded. */
+    static final long ESTIMATED_TILE_BYTES = 20 * 1024;
+
+    static final double PLACE_RADIUS_KM = 3.0;
+    static final int PLACE_MIN_ZOOM = 8;
+    static final int PLACE_MAX_ZOOM = 17;
+    // A precision 5 geohash cell is about 5 km across, so nearby places share one pack.
+    private static final int PACK_GEOHASH_PRECISION = 5;
+
+    static final String KEY_NAME = "name";
+    static final String KEY_NORTH = "north";
+    static final String KEY_EAST = "east";
+    static final String KEY_SOUTH = "south";
+    static final String KEY_WEST = "west";
+    static final String KEY_MIN_ZOOM = "min_zoom";
+    static final String KEY_MAX_ZOOM = "max_zoom";
+    static final String KEY_PROGRESS = "progress";
+    static final String KEY_TOTAL = "total";
+
+    /** Packs and the live map must use the same tiles, so both read this source. */
+    static final OnlineTileSourceBase TILE_SOURCE = tileSource(BuildConfig.REGION_PACK_TILE_URL);
+
+    private RegionPackManager() {}
+
+    /** Schedules a pack around every watched place. Cheap to call on each app start. */
+    public static void scheduleWatchedPlaces(@NonNull Context context) {
+        for (WatchedPlace place : new WatchedPlacesStore(context).getAll()) {
+            scheduleAround(context, place.getLatitude(), place.getLongitude());
+        }
+    }
+
+    /** Schedules a pack covering {@link #PLACE_RADIUS_KM} around a point. */
+    public static void scheduleAround(@NonNull Context context, double lat, double lon) {
+        double latDelta = PLACE_RADIUS_KM / 110.54;
+        double lonDelta = PLACE_RADIUS_KM / (111.32 * Math.cos(Math.toRadians(lat)));
+        String name = GeoHash.encode(lat, lon, PACK_GEOHASH_PRECISION);
+        schedule(context, name, lat + latDelta, lon + lonDelta, lat - latDelta, lon - lonDelta,
+                PLACE_MIN_ZOOM, PLACE_MAX_ZOOM);
+    }
+
+    /**
+     * Downloads (or resumes, or just marks as used) the pack called {@code name}. Only unmetered
+     * networks are used since a pack can run to several megabytes.
+     */
+    public static void schedule(@NonNull Context context, @NonNull String name, double north, double east,
+                                double south, double west, int minZoom, int maxZoom) {
+        if (!TILE_SOURCE.getTileSourcePolicy().acceptsBulkDownload()) {
+            // The worker could only fail, and KEEP does not keep failed work, so it would be
+            // enqueued again on every app start.
+            return;
+        }
+        Data input = new Data.Builder()
+                .putString(KEY_NAME, name)
+                .putDouble(KEY_NORTH, north)
+                .putDouble(KEY_EAST, east)
+                .putDouble(KEY_SOUTH, south)
+                .putDouble(KEY_WEST, west)
+                .putInt(KEY_MIN_ZOOM, minZoom)
+                .putInt(KEY_MAX_ZOOM, maxZoom)
+                .build();
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(RegionPackWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 1, TimeUnit.MINUTES)
+                .addTag(WORK_PREFIX)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_PREFIX + name, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    private static OnlineTileSourceBase tileSource(@NonNull String baseUrl) {
+        if (baseUrl.isEmpty()) {
+            return TileSourceFactory.DEFAULT_TILE_SOURCE;
+        }
+        return new XYTileSource("FloodAlertTiles", 0, 19, 256, ".png",
+                new String[] {baseUrl}, "© OpenStreetMap contributors",
+                new TileSourcePolicy(2, TileSourcePolicy.FLAG_USER_AGENT_MEANINGFUL));
+    }
+
+    /** Directory osmdroid scans for archives. */
+    @NonNull
+    static File packDirectory() {
+        return Configuration.getInstance().getOsmdroidBasePath();
+    }
+
+    @NonNull
+    static File completeFile(@NonNull String name) {
+        return new File(packDirectory(), FILE_PREFIX + name + COMPLETE_SUFFIX);
+    }
+
+    @NonNull
+    static File partialFile(@NonNull String name) {
+        return new File(packDirectory(), FILE_PREFIX + name + PARTIAL_SUFFIX);
+    }
+
+    /** Number of tiles a pack holds, summed over its zoom range. */
+    static long tileCount(double north, double east, double south, double west, int minZoom, int maxZoom) {
+        long count = 0;
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            long columns = lonToTileX(east, zoom) - lonToTileX(west, zoom) + 1L;
+            long rows = latToTileY(south, zoom) - latToTileY(north, zoom) + 1L;
+            count += columns * rows;
+        }
+        return count;
+    }
+
+    static int lonToTileX(double lon, int zoom) {
+        int n = 1 << zoom;
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    static int latToTileY(double lat, int zoom) {
+        int n = 1 << zoom;
+        double clamped = Math.max(-85.05112878, Math.min(85.05112878, lat));
+        double latRad = Math.toRadians(clamped);
+        int y = (int) Math.floor((1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
+
+    /**
+     * Deletes least recently used complete packs until {@code neededBytes} more fit in the budget.
+     * The pack being downloaded ({@code keep}) and other partial downloads are never evicted.
+     *
+     * @return whether the space is now available
+     */
+    static synchronized boolean makeRoom(long neededBytes, @NonNull String keep) {
+        File[] files = packDirectory().listFiles((dir, fileName) -> fileName.startsWith(FILE_PREFIX)
+                && (fileName.endsWith(COMPLETE_SUFFIX) || fileName.endsWith(PARTIAL_SUFFIX)));
+        if (files == null) {
+            return neededBytes <= MAX_TOTAL_BYTES;
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total + neededBytes <= MAX_TOTAL_BYTES) {
+            return true;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        String keepName = FILE_PREFIX + keep + COMPLETE_SUFFIX;
+        for (File file : files) {
+            if (total + neededBytes <= MAX_TOTAL_BYTES) {
+                break;
+            }
+            if (!file.getName().endsWith(COMPLETE_SUFFIX) || file.getName().equals(keepName)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                Log.i(TAG, "Evicted region pack " + file.getName());
+                total -= length;
+            }
+        }
+        return total + neededBytes <= MAX_TOTAL_BYTES;
+    }
+}
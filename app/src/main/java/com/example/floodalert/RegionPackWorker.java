@@ -0,0 +1,242 @@
+package com.example.floodalert;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.osmdroid.config.Configuration;
+import org.osmdroid.util.MapTileIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+
+/**
+ * Downloads one region pack (see {@link RegionPackManager}) into an MBTiles file.
+ *
+ * Tiles are fetched in a fixed order (zoom, then column, then row) and committed in small
+ * transactions together with the position reached, so a run stopped by WorkManager or a lost
+ * connection picks up at the next tile instead of starting over. Rows are stored in the TMS
+ * orientation MBTiles uses, which is what osmdroid's reader expects.
+ */
+public class RegionPackWorker extends Worker {
+
+    private static final String TAG = "RegionPackWorker";
+    private static final int TILES_PER_TRANSACTION = 32;
+    private static final int TIMEOUT_MS = 15000;
+    private static final String META_POSITION = "download_position";
+
+    public RegionPackWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        String name = input.getString(RegionPackManager.KEY_NAME);
+        if (name == null) {
+            return Result.failure();
+        }
+        double north = input.getDouble(RegionPackManager.KEY_NORTH, 0);
+        double east = input.getDouble(RegionPackManager.KEY_EAST, 0);
+        double south = input.getDouble(RegionPackManager.KEY_SOUTH, 0);
+        double west = input.getDouble(RegionPackManager.KEY_WEST, 0);
+        int minZoom = input.getInt(RegionPackManager.KEY_MIN_ZOOM, RegionPackManager.PLACE_MIN_ZOOM);
+        int maxZoom = input.getInt(RegionPackManager.KEY_MAX_ZOOM, RegionPackManager.PLACE_MAX_ZOOM);
+
+        Context context = getApplicationContext();
+        OsmdroidConfig.load(context).join();
+
+        File complete = RegionPackManager.completeFile(name);
+        if (complete.isFile()) {
+            // Already installed; being asked for it again marks it as recently used.
+            //noinspection ResultOfMethodCallIgnored
+            complete.setLastModified(System.currentTimeMillis());
+            return Result.success();
+        }
+
+        if (!RegionPackManager.TILE_SOURCE.getTileSourcePolicy().acceptsBulkDownload()) {
+            Log.w(TAG, "Tile source " + RegionPackManager.TILE_SOURCE.name() + " does not allow bulk download.");
+            return Result.failure();
+        }
+
+        // Drop the most detailed zoom levels until the pack fits the per-pack tile limit.
+        while (maxZoom > minZoom
+                && RegionPackManager.tileCount(north, east, south, west, minZoom, maxZoom) > RegionPackManager.MAX_TILES_PER_PACK) {
+            maxZoom--;
+        }
+        long total = RegionPackManager.tileCount(north, east, south, west, minZoom, maxZoom);
+
+        File partial = RegionPackManager.partialFile(name);
+        File directory = partial.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return Result.failure();
+        }
+
+        SQLiteDatabase db;
+        try {
+            db = SQLiteDatabase.openOrCreateDatabase(partial, null);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Could not open " + partial.getName(), e);
+            return Result.retry();
+        }
+        try {
+            createSchema(db, name, north, east, south, west, minZoom, maxZoom);
+            long position = readPosition(db);
+            if (!RegionPackManager.makeRoom((total - position) * RegionPackManager.ESTIMATED_TILE_BYTES, name)) {
+                if (position == 0) {
+                    Log.w(TAG, "Not enough room for region pack " + name);
+                    return Result.failure();
+                }
+                Log.w(TAG, "Not enough room to finish region pack " + name + "; keeping what was downloaded.");
+                total = position;
+            }
+
+            long index = 0;
+            int pending = 0;
+            db.beginTransaction();
+            try {
+                for (int zoom = minZoom; zoom <= maxZoom && index < total; zoom++) {
+                    int minX = RegionPackManager.lonToTileX(west, zoom);
+                    int maxX = RegionPackManager.lonToTileX(east, zoom);
+                    int minY = RegionPackManager.latToTileY(north, zoom);
+                    int maxY = RegionPackManager.latToTileY(south, zoom);
+                    for (int x = minX; x <= maxX && index < total; x++) {
+                        for (int y = minY; y <= maxY && index < total; y++, index++) {
+                            if (index < position) {
+                                continue;
+                            }
+                            if (isStopped()) {
+                                // The committed position lets the next run resume from here.
+                                return Result.retry();
+                            }
+                            byte[] tile = download(zoom, x, y);
+                            if (tile != null) {
+                                insertTile(db, zoom, x, y, tile);
+                            }
+                            if (++pending == TILES_PER_TRANSACTION) {
+                                writePosition(db, index + 1);
+                                db.setTransactionSuccessful();
+                                db.endTransaction();
+                                setProgressAsync(new Data.Builder()
+                                        .putLong(RegionPackManager.KEY_PROGRESS, index + 1)
+                                        .putLong(RegionPackManager.KEY_TOTAL, total)
+                                        .build());
+                                db.beginTransaction();
+                                pending = 0;
+                            }
+                        }
+                    }
+                }
+                writePosition(db, index);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (IOException | SQLiteException e) {
+            Log.w(TAG, "Region pack " + name + " interrupted; will resume.", e);
+            return Result.retry();
+        } finally {
+            db.close();
+        }
+
+        if (!partial.renameTo(complete)) {
+            Log.w(TAG, "Could not install region pack " + name);
+            return Result.retry();
+        }
+        Log.i(TAG, "Installed region pack " + name + " (" + complete.length() / 1024 + " KB)");
+        return Result.success();
+    }
+
+    private static void createSchema(SQLiteDatabase db, String name, double north, double east, double south,
+                                     double west, int minZoom, int maxZoom) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS metadata (name TEXT PRIMARY KEY, value TEXT)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS tiles (zoom_level INTEGER, tile_column INTEGER, tile_row INTEGER, tile_data BLOB, "
+                + "PRIMARY KEY (zoom_level, tile_column, tile_row))");
+        putMetadata(db, "name", name);
+        putMetadata(db, "type", "baselayer");
+        putMetadata(db, "version", "1");
+        putMetadata(db, "format", "png");
+        putMetadata(db, "minzoom", String.valueOf(minZoom));
+        putMetadata(db, "maxzoom", String.valueOf(maxZoom));
+        putMetadata(db, "bounds", String.format(Locale.US, "%.6f,%.6f,%.6f,%.6f", west, south, east, north));
+    }
+
+    private static void putMetadata(SQLiteDatabase db, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put("name", key);
+        values.put("value", value);
+        db.insertWithOnConflict("metadata", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static long readPosition(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT value FROM metadata WHERE name = ?", new String[]{META_POSITION})) {
+            if (cursor.moveToFirst()) {
+                try {
+                    return Long.parseLong(cursor.getString(0));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void writePosition(SQLiteDatabase db, long position) {
+        putMetadata(db, META_POSITION, String.valueOf(position));
+    }
+
+    private static void insertTile(SQLiteDatabase db, int zoom, int x, int y, byte[] data) {
+        ContentValues values = new ContentValues();
+        values.put("zoom_level", zoom);
+        values.put("tile_column", x);
+        values.put("tile_row", (1 << zoom) - 1 - y);
+        values.put("tile_data", data);
+        db.insertWithOnConflict("tiles", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /** Fetches one tile, or returns null if the server has no tile there. */
+    @Nullable
+    private static byte[] download(int zoom, int x, int y) throws IOException {
+        String url = RegionPackManager.TILE_SOURCE.getTileURLString(MapTileIndex.getTileIndex(zoom, x, y));
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setRequestProperty("User-Agent", Configuration.getInstance().getUserAgentValue());
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Tile server returned HTTP " + code + " for " + zoom + "/" + x + "/" + y);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
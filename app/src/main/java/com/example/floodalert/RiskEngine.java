@@ -0,0 +1,417 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Scores flood risk from a river discharge series and a precipitation series, daily or hourly.
+ *
+ * Each series is read once, front to back, straight from its primitive arrays: the discharge pass
+ * finds the current level, the peak and when it comes, the fastest rise and whether the level
+ * jumps within {@link Thresholds#riseHorizonSeconds}; the rain pass keeps 24 h and 72 h rolling
+ * sums. Results go into a caller-owned {@link Assessment}, so scoring a batch allocates nothing.
+ *
+ * The verdict is a severity from 0 (nothing to see) to 1 (critical), the larger of the river and
+ * rain severities. Each is a linear ramp between a "normal" and a "critical" threshold; a rapid
+ * rise above the danger floor counts as at least {@link #HIGH_RISK_SEVERITY}. Every screen that
+ * says "safe" or "danger" goes through {@link Assessment#isHighRisk()}, so they agree.
+ *
+ * Thresholds are pluggable; {@link #DEFAULT} uses the values the app has always used.
+ * Instances are immutable and thread-safe.
+ */
+public final class RiskEngine {
+
+    /** Severity at and above which a place is reported as high risk. */
+    public static final double HIGH_RISK_SEVERITY = 0.5;
+
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = 24 * SECONDS_PER_HOUR;
+
+    public static final RiskEngine DEFAULT = new RiskEngine(new Thresholds());
+
+    /** Tunable limits. Discharge in m³/s, rain in mm. An engine keeps its own copy. */
+    public static final class Thresholds {
+        /** At or below this the river contributes no risk. */
+        public double normalDischarge = 5.0;
+        /** A rise only counts as rapid when the river ends up above this. */
+        public double minimumDangerDischarge = 10.0;
+        /** At or above this the river alone is critical. */
+        public double criticalDischarge = 30.0;
+        /** How much the level must multiply within the horizon to count as a rapid rise. */
+        public double rapidRiseRatio = 1.5;
+        public long riseHorizonSeconds = 2 * SECONDS_PER_DAY;
+
+        public double rain24hLow = 50.0;
+        public double rain24hCritical = 150.0;
+        public double rain72hLow = 100.0;
+        public double rain72hCritical = 250.0;
+
+        Thresholds copy() {
+            Thresholds copy = new Thresholds();
+            copy.normalDischarge = normalDischarge;
+            copy.minimumDangerDischarge = minimumDangerDischarge;
+            copy.criticalDischarge = criticalDischarge;
+            copy.rapidRiseRatio = rapidRiseRatio;
+            copy.riseHorizonSeconds = riseHorizonSeconds;
+            copy.rain24hLow = rain24hLow;
+            copy.rain24hCritical = rain24hCritical;
+            copy.rain72hLow = rain72hLow;
+            copy.rain72hCritical = rain72hCritical;
+            return copy;
+        }
+    }
+
+    /**
+     * The outcome of one {@link #assess} call. Reused across calls; every field is overwritten.
+     * Times are epoch seconds, like {@link ForecastSeries#timeAt}.
+     */
+    public static final class Assessment {
+        boolean hasRiverData;
+        boolean hasRainData;
+        double currentDischarge;
+        double peakDischarge;
+        long peakTime;
+        double hoursToPeak;
+        double maxRisePerDay;
+        boolean rapidRise;
+        double rain24hMax;
+        double rain72hMax;
+        double riverSeverity;
+        double rainSeverity;
+
+        public boolean hasData() {
+            return hasRiverData || hasRainData;
+        }
+
+        public boolean hasRiverData() {
+            return hasRiverData;
+        }
+
+        public boolean hasRainData() {
+            return hasRainData;
+        }
+
+        /** 0 to 1; the larger of the river and rain severities. */
+        public double getSeverity() {
+            return Math.max(riverSeverity, rainSeverity);
+        }
+
+        public boolean isHighRisk() {
+            return getSeverity() >= HIGH_RISK_SEVERITY;
+        }
+
+        public double getRiverSeverity() {
+            return riverSeverity;
+        }
+
+        public double getRainSeverity() {
+            return rainSeverity;
+        }
+
+        /** The first non-missing discharge, taken as "now". */
+        public double getCurrentDischarge() {
+            return currentDischarge;
+        }
+
+        public double getPeakDischarge() {
+            return peakDischarge;
+        }
+
+        public long getPeakTime() {
+            return peakTime;
+        }
+
+        /** Hours from the current value to the peak; 0 when the river is already at its peak. */
+        public double getHoursToPeak() {
+            return hoursToPeak;
+        }
+
+        /** Steepest rise between consecutive values, in m³/s per day; 0 if it only falls. */
+        public double getMaxRisePerDay() {
+            return maxRisePerDay;
+        }
+
+        public boolean isRapidRise() {
+            return rapidRise;
+        }
+
+        /** Wettest 24 hours in the series, in mm. */
+        public double getRain24hMax() {
+            return rain24hMax;
+        }
+
+        /** Wettest 72 hours in the series, in mm. */
+        public double getRain72hMax() {
+            return rain72hMax;
+        }
+
+        /**
+         * Ranking score for batch evaluation: how far the peak rises over now, damped for rivers
+         * that stay under the danger floor, plus the rain severity. Only meaningful within a batch.
+         */
+        double score(@NonNull Thresholds thresholds) {
+            double riverScore = 0.0;
+            if (hasRiverData) {
+                double ratio = peakDischarge / Math.max(currentDischarge, 0.1);
+                riverScore = ratio * Math.min(1.0, peakDischarge / thresholds.minimumDangerDischarge);
+            }
+            return riverScore + rainSeverity;
+        }
+    }
+
+    private final Thresholds thresholds;
+
+    public RiskEngine(@NonNull Thresholds thresholds) {
+        this.thresholds = thresholds.copy();
+    }
+
+    /** Discharge (m³/s) a river must exceed before a rise counts as dangerous. */
+    public double getMinimumDangerDischarge() {
+        return thresholds.minimumDangerDischarge;
+    }
+
+    /**
+     * The forecast's peak discharge as a fraction of {@link #getMinimumDangerDischarge()}: how
+     * close this river is to danger by its own thresholds. 0 without data.
+     */
+    public double dangerRatio(@Nullable ForecastSeries discharge) {
+        if (discharge == null || discharge.isEmpty()) {
+            return 0.0;
+        }
+        return discharge.max() / thresholds.minimumDangerDischarge;
+    }
+
+    /** Convenience for one-off callers; batch callers should reuse an {@link Assessment}. */
+    @NonNull
+    public Assessment assess(@Nullable ForecastSeries discharge, @Nullable ForecastSeries precipitation) {
+        Assessment out = new Assessment();
+        assess(discharge, precipitation, out);
+        return out;
+    }
+
+    /** Scores whichever series are present. Either may be null or empty. */
+    public void assess(@Nullable ForecastSeries discharge, @Nullable ForecastSeries precipitation, @NonNull Assessment out) {
+        if (discharge != null) {
+            assessRiver(discharge.times(), discharge.values(), discharge.size(), out);
+        } else {
+            clearRiver(out);
+        }
+        if (precipitation != null) {
+            assessRain(precipitation.times(), precipitation.values(), precipitation.size(), out);
+        } else {
+            clearRain(out);
+        }
+    }
+
+    /** Score for ranking one place in a batch, reusing {@code scratch}. */
+    public double score(@Nullable ForecastSeries discharge, @Nullable ForecastSeries precipitation, @NonNull Assessment scratch) {
+        assess(discharge, precipitation, scratch);
+        return scratch.score(thresholds);
+    }
+
+    /**
+     * River pass over the first {@code count} entries. Missing values are {@link Double#NaN} and
+     * skipped; times must be ascending.
+     */
+    public void assessRiver(@NonNull long[] times, @NonNull double[] values, int count, @NonNull Assessment out) {
+        Thresholds t = thresholds;
+        boolean seen = false;
+        double current = 0.0;
+        long currentTime = 0;
+        double peak = 0.0;
+        long peakTime = 0;
+        double previous = 0.0;
+        long previousTime = 0;
+        double maxRise = 0.0;
+        boolean rapid = false;
+
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            long time = times[i];
+            if (!seen) {
+                seen = true;
+                current = value;
+                currentTime = time;
+                peak = value;
+                peakTime = time;
+            } else {
+                if (value > peak) {
+                    peak = value;
+                    peakTime = time;
+                }
+                long elapsed = time - previousTime;
+                if (elapsed > 0) {
+                    double risePerDay = (value - previous) * SECONDS_PER_DAY / elapsed;
+                    if (risePerDay > maxRise) {
+                        maxRise = risePerDay;
+                    }
+                }
+                if (!rapid && time - currentTime <= t.riseHorizonSeconds
+                        && value > current * t.rapidRiseRatio && value > t.minimumDangerDischarge) {
+                    rapid = true;
+                }
+            }
+            previous = value;
+            previousTime = time;
+        }
+
+        if (!seen) {
+            clearRiver(out);
+            return;
+        }
+        out.hasRiverData = true;
+        out.currentDischarge = current;
+        out.peakDischarge = peak;
+        out.peakTime = peakTime;
+        out.hoursToPeak = (double) (peakTime - currentTime) / SECONDS_PER_HOUR;
+        out.maxRisePerDay = maxRise;
+        out.rapidRise = rapid;
+        double severity = ramp(peak, t.normalDischarge, t.criticalDischarge);
+        out.riverSeverity = rapid ? Math.max(severity, HIGH_RISK_SEVERITY) : severity;
+    }
+
+    /**
+     * Rain pass over the first {@code count} entries. Each value is the total for the step that
+     * starts at its time, so a daily series yields its wettest day as the 24 h maximum and an
+     * hourly one its wettest 24 consecutive hours. Missing values count as dry.
+     */
+    public void assessRain(@NonNull long[] times, @NonNull double[] values, int count, @NonNull Assessment out) {
+        long window24 = SECONDS_PER_DAY;
+        long window72 = 3 * SECONDS_PER_DAY;
+        boolean seen = false;
+        int start24 = 0;
+        int start72 = 0;
+        double sum24 = 0.0;
+        double sum72 = 0.0;
+        double max24 = 0.0;
+        double max72 = 0.0;
+
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            if (Double.isNaN(value)) {
+                value = 0.0;
+            } else {
+                seen = true;
+            }
+            long time = times[i];
+            sum24 += value;
+            sum72 += value;
+            while (times[start24] <= time - window24) {
+                sum24 -= rainAt(values, start24++);
+            }
+            while (times[start72] <= time - window72) {
+                sum72 -= rainAt(values, start72++);
+            }
+            if (sum24 > max24) {
+                max24 = sum24;
+            }
+            if (sum72 > max72) {
+                max72 = sum72;
+            }
+        }
+
+        if (!seen) {
+            clearRain(out);
+            return;
+        }
+        Thresholds t = thresholds;
+        out.hasRainData = true;
+        out.rain24hMax = max24;
+        out.rain72hMax = max72;
+        out.rainSeverity = Math.max(ramp(max24, t.rain24hLow, t.rain24hCritical),
+                ramp(max72, t.rain72hLow, t.rain72hCritical));
+    }
+
+    /**
+     * Severity at {@code steps} moments, {@code stepSeconds} apart from {@code startTime}, for a
+     * water-level timeline. At each moment the river is at its latest value so far (its first
+     * value before the series starts) and rain is the trailing 24 h and 72 h totals. Rapid rises
+     * are a property of the whole forecast and only count in {@link #assess}. Writes
+     * {@code out[0..steps)}; both series are walked once with forward-only cursors, allocating
+     * nothing.
+     */
+    public void timeline(@Nullable ForecastSeries discharge, @Nullable ForecastSeries precipitation,
+                         long startTime, long stepSeconds, int steps, @NonNull float[] out) {
+        Thresholds t = thresholds;
+        long[] riverTimes = discharge != null ? discharge.times() : null;
+        double[] riverValues = discharge != null ? discharge.values() : null;
+        int riverCount = discharge != null ? discharge.size() : 0;
+        long[] rainTimes = precipitation != null ? precipitation.times() : null;
+        double[] rainValues = precipitation != null ? precipitation.values() : null;
+        int rainCount = precipitation != null ? precipitation.size() : 0;
+
+        int river = 0;
+        double level = Double.NaN;
+        for (int i = 0; i < riverCount && Double.isNaN(level); i++) {
+            level = riverValues[i];
+        }
+        int rainNext = 0;
+        int start24 = 0;
+        int start72 = 0;
+        double sum24 = 0.0;
+        double sum72 = 0.0;
+
+        for (int step = 0; step < steps; step++) {
+            long time = startTime + step * stepSeconds;
+            while (river < riverCount && riverTimes[river] <= time) {
+                if (!Double.isNaN(riverValues[river])) {
+                    level = riverValues[river];
+                }
+                river++;
+            }
+            while (rainNext < rainCount && rainTimes[rainNext] < time) {
+                double value = rainAt(rainValues, rainNext++);
+                sum24 += value;
+                sum72 += value;
+            }
+            while (start24 < rainNext && rainTimes[start24] < time - SECONDS_PER_DAY) {
+                sum24 -= rainAt(rainValues, start24++);
+            }
+            while (start72 < rainNext && rainTimes[start72] < time - 3 * SECONDS_PER_DAY) {
+                sum72 -= rainAt(rainValues, start72++);
+            }
+
+            double severity = Double.isNaN(level) ? 0.0 : ramp(level, t.normalDischarge, t.criticalDischarge);
+            severity = Math.max(severity, ramp(sum24, t.rain24hLow, t.rain24hCritical));
+            severity = Math.max(severity, ramp(sum72, t.rain72hLow, t.rain72hCritical));
+            out[step] = (float) severity;
+        }
+    }
+
+    private static double rainAt(double[] values, int index) {
+        double value = values[index];
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    /** 0 at or below {@code low}, 1 at or above {@code high}, linear in between. */
+    private static double ramp(double value, double low, double high) {
+        if (value <= low) {
+            return 0.0;
+        }
+        if (value >= high) {
+            return 1.0;
+        }
+        return (value - low) / (high - low);
+    }
+
+    private static void clearRiver(Assessment out) {
+        out.hasRiverData = false;
+        out.currentDischarge = 0.0;
+        out.peakDischarge = 0.0;
+        out.peakTime = 0;
+        out.hoursToPeak = 0.0;
+        out.maxRisePerDay = 0.0;
+        out.rapidRise = false;
+        out.riverSeverity = 0.0;
+    }
+
+    private static void clearRain(Assessment out) {
+        out.hasRainData = false;
+        out.rain24hMax = 0.0;
+        out.rain72hMax = 0.0;
+        out.rainSeverity = 0.0;
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Pre-processed road network for one region, queried with A* entirely on the device.
+ *
+ * The graph is stored in compressed sparse row form: the outgoing edges of node {@code n} are
+ * {@code edgeTarget[edgeStart[n] .. edgeStart[n + 1])}. Region files are produced off-device from
+ * OpenStreetMap and have this layout (big-endian):
+ *
+ * <pre>
+ * int magic "FLRG", int version, int nodeCount, int edgeCount
+ * int[nodeCount]     node latitude  (degrees * 1e6)
+ * int[nodeCount]     node longitude (degrees * 1e6)
+ * int[nodeCount + 1] edge start offsets
+ * int[edgeCount]     edge target node
+ * int[edgeCount]     edge length (decimetres)
+ * byte[edgeCount]    edge speed (km/h, unsigned)
+ * </pre>
+ *
+ * Search state is kept in arrays sized to the graph and reset with a generation stamp, so a query
+ * allocates nothing but its result. Queries are synchronized because they share that state.
+ */
+final class RoadGraph {
+
+    static final int MAGIC = 0x464C5247; // "FLRG"
+    static final int FORMAT_VERSION = 1;
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON_AT_EQUATOR = 111_320.0;
+    private static final int MIN_SPEED_KMH = 5;
+
+    /** A found route: node indices from start to goal plus its real (unpenalized) totals. */
+    static final class Path {
+        final int[] nodes;
+        final double meters;
+        final double seconds;
+
+        Path(int[] nodes, double meters, double seconds) {
+            this.nodes = nodes;
+            this.meters = meters;
+            this.seconds = seconds;
+        }
+    }
+
+    private final int[] latE6;
+    private final int[] lonE6;
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final float[] edgeMeters;
+    private final float[] edgeSeconds;
+    private final double maxMetersPerSecond;
+    private final double lonScale;
+
+    // Per-query search state, valid only where stamp[n] (or floodStamp[n]) == generation.
+    private final int[] stamp;
+    private final double[] costSoFar;
+    private final int[] cameFrom;
+    private final boolean[] closed;
+    private final int[] floodStamp;
+    private final boolean[] floodedNode;
+    private int generation;
+    private final int[] heapNodes;
+    private final double[] heapKeys;
+    private final int[] heapPosition;
+    private int heapSize;
+
+    private ShelterIndex nodeIndex;
+
+    RoadGraph(@NonNull int[] latE6, @NonNull int[] lonE6, @NonNull int[] edgeStart, @NonNull int[] edgeTarget,
+              @NonNull int[] edgeLengthDm, @NonNull byte[] edgeSpeedKmh) {
+        int nodeCount = latE6.length;
+        int edgeCount = edgeTarget.length;
+        if (lonE6.length != nodeCount || edgeStart.length != nodeCount + 1
+                || edgeLengthDm.length != edgeCount || edgeSpeedKmh.length != edgeCount
+                || (nodeCount > 0 && edgeStart[nodeCount] != edgeCount)) {
+            throw new IllegalArgumentException("Inconsistent road graph arrays");
+        }
+        this.latE6 = latE6;
+        this.lonE6 = lonE6;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+
+        edgeMeters = new float[edgeCount];
+        edgeSeconds = new float[edgeCount];
+        double fastest = MIN_SPEED_KMH / 3.6;
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeTarget[e] < 0 || edgeTarget[e] >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + e + " points outside the graph");
+            }
+            double metersPerSecond = Math.max(MIN_SPEED_KMH, edgeSpeedKmh[e] & 0xFF) / 3.6;
+            edgeMeters[e] = edgeLengthDm[e] / 10f;
+            edgeSeconds[e] = (float) (edgeMeters[e] / metersPerSecond);
+            fastest = Math.max(fastest, metersPerSecond);
+        }
+        maxMetersPerSecond = fastest;
+
+        double meanLat = 0;
+        for (int lat : latE6) {
+            meanLat += lat / 1e6;
+        }
+        meanLat = nodeCount > 0 ? meanLat / nodeCount : 0;
+        // Take the cosine one degree further from the equator than the mean so projected distances
+        // never exceed real ones across a regional graph; the A* heuristic must stay a lower bound.
+        lonScale = METERS_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(Math.min(89.0, Math.abs(meanLat) + 1.0)));
+
+        stamp = new int[nodeCount];
+        costSoFar = new double[nodeCount];
+        cameFrom = new int[nodeCount];
+        closed = new boolean[nodeCount];
+        floodStamp = new int[nodeCount];
+        floodedNode = new boolean[nodeCount];
+        heapNodes = new int[nodeCount];
+        heapKeys = new double[nodeCount];
+        heapPosition = new int[nodeCount];
+    }
+
+    /** Loads a region file by memory-mapping it and bulk-copying each section into arrays. */
+    @NonNull
+    static RoadGraph load(@NonNull File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not a road graph file: " + file.getName());
+            }
+            int nodeCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            long expected = 16L + 4L * (3L * nodeCount + 1) + 8L * edgeCount + edgeCount;
+            if (nodeCount < 0 || edgeCount < 0 || expected != channel.size()) {
+                throw new IOException("Truncated road graph file: " + file.getName());
+            }
+            int[] lat = readInts(buffer, nodeCount);
+            int[] lon = readInts(buffer, nodeCount);
+            int[] start = readInts(buffer, nodeCount + 1);
+            int[] target = readInts(buffer, edgeCount);
+            int[] length = readInts(buffer, edgeCount);
+            byte[] speed = new byte[edgeCount];
+            buffer.get(speed);
+            try {
+                return new RoadGraph(lat, lon, start, target, length, speed);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt road graph file: " + file.getName(), e);
+            }
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * count);
+        return values;
+    }
+
+    int nodeCount() {
+        return latE6.length;
+    }
+
+    double getLat(int node) {
+        return latE6[node] / 1e6;
+    }
+
+    double getLon(int node) {
+        return lonE6[node] / 1e6;
+    }
+
+    /** Nearest node that has at least one outgoing edge, or -1 for an empty graph. */
+    synchronized int nearestNode(double lat, double lon) {
+        if (nodeIndex == null) {
+            // The shelter k-d tree works for any point set; build it over nodes on first use.
+            int count = latE6.length;
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            for (int i = 0; i < count; i++) {
+                lats[i] = getLat(i);
+                lons[i] = getLon(i);
+            }
+            nodeIndex = new ShelterIndex(lats, lons);
+        }
+        int[] nearest = nodeIndex.nearest(lat, lon, 1, node -> edgeStart[node + 1] > edgeStart[node]);
+        return nearest.length > 0 ? nearest[0] : -1;
+    }
+
+    /**
+     * A* search by travel time from {@code from} to {@code to}.
+     *
+     * Edges touching a node for which {@code flooded} is true cost {@code floodPenalty} times their
+     * travel time; pass {@link Double#POSITIVE_INFINITY} to make them impassable. A finite penalty
+     * lets someone already standing in water be routed out along the shortest wet stretch. The
+     * straight-line heuristic stays admissible because the penalty only ever increases cost.
+     *
+     * @return the route, or null when the goal cannot be reached
+     */
+    @Nullable
+    synchronized Path route(int from, int to, @Nullable IntPredicate flooded, double floodPenalty) {
+        if (floodPenalty < 1.0) {
+            throw new IllegalArgumentException("floodPenalty must be at least 1");
+        }
+        nextGeneration();
+        double goalY = latE6[to] / 1e6 * METERS_PER_DEGREE_LAT;
+        double goalX = lonE6[to] / 1e6 * lonScale;
+
+        visit(from, 0.0, -1);
+        heapPush(from, heuristic(from, goalX, goalY));
+        while (heapSize > 0) {
+            int node = heapPop();
+            if (node == to) {
+                return buildPath(from, to);
+            }
+            closed[node] = true;
+            boolean nodeFlooded = flooded != null && isFlooded(node, flooded);
+            for (int e = edgeStart[node], end = edgeStart[node + 1]; e < end; e++) {
+                int next = edgeTarget[e];
+                boolean seen = stamp[next] == generation;
+                if (seen && closed[next]) {
+                    continue;
+                }
+                double cost = edgeSeconds[e];
+                if (nodeFlooded || (flooded != null && isFlooded(next, flooded))) {
+                    if (Double.isInfinite(floodPenalty)) {
+                        continue;
+                    }
+                    cost *= floodPenalty;
+                }
+                double candidate = costSoFar[node] + cost;
+                if (!seen) {
+                    visit(next, candidate, node);
+                    heapPush(next, candidate + heuristic(next, goalX, goalY));
+                } else if (candidate < costSoFar[next]) {
+                    costSoFar[next] = candidate;
+                    cameFrom[next] = node;
+                    heapDecrease(next, candidate + heuristic(next, goalX, goalY));
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isFlooded(int node, IntPredicate flooded) {
+        // Polygon tests are the expensive part of a query, so each node is tested at most once.
+        if (floodStamp[node] != generation) {
+            floodStamp[node] = generation;
+            floodedNode[node] = flooded.test(node);
+        }
+        return floodedNode[node];
+    }
+
+    private double heuristic(int node, double goalX, double goalY) {
+        double dx = lonE6[node] / 1e6 * lonScale - goalX;
+        double dy = latE6[node] / 1e6 * METERS_PER_DEGREE_LAT - goalY;
+        return Math.sqrt(dx * dx + dy * dy) / maxMetersPerSecond;
+    }
+
+    private Path buildPath(int from, int to) {
+        int length = 1;
+        for (int n = to; n != from; n = cameFrom[n]) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        double meters = 0;
+        double seconds = 0;
+        for (int n = to, i = length - 1; i >= 0; n = cameFrom[n], i--) {
+            nodes[i] = n;
+        }
+        for (int i = 1; i < length; i++) {
+            int e = edgeBetween(nodes[i - 1], nodes[i]);
+            meters += edgeMeters[e];
+            seconds += edgeSeconds[e];
+        }
+        return new Path(nodes, meters, seconds);
+    }
+
+    /** Cheapest edge between two adjacent nodes (parallel edges are possible in OSM data). */
+    private int edgeBetween(int from, int to) {
+        int best = -1;
+        for (int e = edgeStart[from], end = edgeStart[from + 1]; e < end; e++) {
+            if (edgeTarget[e] == to && (best < 0 || edgeSeconds[e] < edgeSeconds[best])) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private void nextGeneration() {
+        heapSize = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            generation = 1;
+            Arrays.fill(stamp, 0);
+            Arrays.fill(floodStamp, 0);
+        }
+    }
+
+    private void visit(int node, double cost, int parent) {
+        stamp[node] = generation;
+        costSoFar[node] = cost;
+        cameFrom[node] = parent;
+        closed[node] = false;
+    }
+
+    // --- Indexed binary min-heap keyed by estimated total cost ---
+
+    private void heapPush(int node, double key) {
+        int i = heapSize++;
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+        heapPosition[node] = i;
+        siftUp(i);
+    }
+
+    private void heapDecrease(int node, double key) {
+        int i = heapPosition[node];
+        heapKeys[i] = key;
+        siftUp(i);
+    }
+
+    private int heapPop() {
+        int top = heapNodes[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heapNodes[0] = heapNodes[heapSize];
+            heapKeys[0] = heapKeys[heapSize];
+            heapPosition[heapNodes[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int i) {
+        int node = heapNodes[i];
+        double key = heapKeys[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) {
+                break;
+            }
+            heapNodes[i] = heapNodes[parent];
+            heapKeys[i] = heapKeys[parent];
+            heapPosition[heapNodes[i]] = i;
+            i = parent;
+        }
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+        heapPosition[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = heapNodes[i];
+        double key = heapKeys[i];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (key <= heapKeys[child]) {
+                break;
+            }
+            heapNodes[i] = heapNodes[child];
+            heapKeys[i] = heapKeys[child];
+            heapPosition[heapNodes[i]] = i;
+            i = child;
+        }
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+        heapPosition[node] = i;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.floodalert;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import org.osmdroid.bonuspack.routing.OSRMRoadManager;
+import org.osmdroid.bonuspack.routing.Road;
+import org.osmdroid.bonuspack.routing.RoadManager;
+import org.osmdroid.util.GeoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Computes evacuation routes for {@link MapRoutesActivity} and keeps the result across rotation.
+ *
+ * Only the latest request counts: a new one cancels the one in flight and results carrying an old
+ * generation are dropped. Re-checks from within a few metres of the last start point, to the same
+ * shelters, reuse the route already computed (or in progress) instead of asking OSRM again.
+ */
+public class RouteViewModel extends AndroidViewModel {
+
+    private static final String TAG = "RouteViewModel";
+
+    /** GPS jitter below this distance does not warrant a new route. */
+    static final double REUSE_DISTANCE_METERS = 25.0;
+
+    /** A computed route and the location it starts from. */
+    public static final class Route {
+        public final GeoPoint start;
+        public final Road road;
+
+        Route(GeoPoint start, Road road) {
+            this.start = start;
+            this.road = road;
+        }
+    }
+
+    private final MutableLiveData<UiState> _uiState = new MutableLiveData<>();
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread only.
+    private int generation;
+    @Nullable
+    private Future<?> inFlight;
+    @Nullable
+    private GeoPoint lastStart;
+    @Nullable
+    private GeoPoint[] lastShelters;
+
+    public RouteViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    public LiveData<UiState> getUiState() {
+        return _uiState;
+    }
+
+    /**
+     * Routes from {@code start} to whichever of {@code shelters} is fastest to reach. Must be
+     * called on the main thread.
+     */
+    public void requestRoute(@NonNull GeoPoint start, @NonNull GeoPoint[] shelters, @Nullable FloodZoneIndex floodZones) {
+        UiState current = _uiState.getValue();
+        boolean hasResult = current instanceof UiState.Success || current instanceof UiState.Loading;
+        if (hasResult && lastStart != null && Arrays.equals(lastShelters, shelters)
+                && lastStart.distanceToAsDouble(start) < REUSE_DISTANCE_METERS) {
+            // Re-deliver so the caller redraws the route it may have just cleared from the map.
+            _uiState.setValue(current);
+            return;
+        }
+
+        cancelInFlight();
+        final int requestGeneration = ++generation;
+        lastStart = start;
+        lastShelters = shelters.clone();
+        _uiState.setValue(new UiState.Loading("Calculating evacuation route..."));
+
+        final GeoPoint[] targets = lastShelters;
+        inFlight = executorService.submit(() -> {
+            Road road = computeRoute(start, targets, floodZones);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            UiState result = isUsable(road)
+                    ? new UiState.Success<>(new Route(start, road))
+                    : new UiState.Error("Could not calculate a route. Please check your internet connection and try again.");
+            postIfCurrent(requestGeneration, result);
+        });
+    }
+
+    /** Forgets the current route, e.g. once the user is out of the flood zone. */
+    public void clearRoute() {
+        cancelInFlight();
+        generation++;
+        lastStart = null;
+        lastShelters = null;
+        _uiState.setValue(null);
+    }
+
+    private void cancelInFlight() {
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+
+    private void postIfCurrent(int requestGeneration, UiState state) {
+        // Checked again on the main thread so a result can never overwrite a newer request's state.
+        mainHandler.post(() -> {
+            if (requestGeneration == generation) {
+                inFlight = null;
+                if (state instanceof UiState.Error) {
+                    // Let the next tap retry instead of reusing a failure.
+                    lastStart = null;
+                }
+                _uiState.setValue(state);
+            }
+        });
+    }
+
+    @Nullable
+    private Road computeRoute(GeoPoint start, GeoPoint[] shelters, @Nullable FloodZoneIndex floodZones) {
+        // Route on the installed region graph first so evacuation works with no signal, and
+        // only fall back to OSRM when there is no graph or it finds no way through.
+        RoadManager offline = OfflineRoadManager.forInstalledRegion(getApplication(), floodZones);
+        if (offline != null) {
+            Road road = fastestRoad(offline, start, shelters);
+            if (isUsable(road)) {
+                return road;
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        return fastestRoad(new OSRMRoadManager(getApplication(), "FloodAlertApp/1.0"), start, shelters);
+    }
+
+    @Nullable
+    private static Road fastestRoad(RoadManager roadManager, GeoPoint start, GeoPoint[] shelters) {
+        // The straight-line winner can sit across a river, so keep the shelter with the shortest
+        // actual route.
+        Road best = null;
+        for (GeoPoint shelter : shelters) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            ArrayList<GeoPoint> waypoints = new ArrayList<>();
+            waypoints.add(start);
+            waypoints.add(shelter);
+            Road road;
+            try {
+                road = roadManager.getRoad(waypoints);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Routing to shelter failed", e);
+                continue;
+            }
+            if (isUsable(road) && (best == null || road.mDuration < best.mDuration)) {
+                best = road;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isUsable(@Nullable Road road) {
+        return road != null && road.mStatus == Road.STATUS_OK
+                && road.mRouteHigh != null && road.mRouteHigh.size() >= 2
+                && road.mBoundingBox != null;
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mainHandler.removeCallbacksAndMessages(null);
+        executorService.shutdownNow();
+    }
+}
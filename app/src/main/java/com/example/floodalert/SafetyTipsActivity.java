@@ -6,10 +6,12 @@ import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -18,57 +20,37 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.Priority;
 import com.google.android.material.card.MaterialCardView;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-import javax.net.ssl.HttpsURLConnection;
-
 public class SafetyTipsActivity extends AppCompatActivity {
 
     private static final String TAG = "SafetyTipsActivity";
 
-    // API 1: River Flood Risk (GloFAS)
-    private static final String OPEN_METEO_FLOOD_API_URL = "https://api.open-meteo.com/v1/flood?latitude=%f&longitude=%f&daily=river_discharge&forecast_days=3";
-    // API 2: Pluvial Flood Risk (Heavy Rain) - FIX: Added &timezone=auto parameter for reliability
-    private static final String OPEN_METEO_WEATHER_API_URL = "https://api.open-meteo.com/v1/forecast?latitude=%f&longitude=%f&daily=precipitation_sum&forecast_days=3&timezone=auto";
-
-    // --- River Flood Thresholds (m³/s) ---
-    private static final double NORMAL_DISCHARGE = 5.0;
-    private static final double CRITICAL_DISCHARGE = 30.0;
-
-    // --- Pluvial Flood Thresholds (mm of daily rain) ---
-    private static final double RAIN_RISK_LOW = 50.0;
-    private static final double RAIN_RISK_CRITICAL = 150.0;
-
+    // Full severity from the risk engine maps to the top of the gauge
     private static final float MAX_FEET_IN_VIEW = 5.0f;
 
-    private FusedLocationProviderClient fusedLocationProviderClient;
+    // Upper bound on the whole river + rain analysis, whichever sources have arrived by then are used
+    private static final long ANALYSIS_DEADLINE_MS = 12000;
+
     private ActivityResultLauncher<String> requestPermissionLauncher;
     private FloodLevelView floodLevelView;
-    private LocationCallback locationCallback;
     private ProgressBar progressBar;
     private Button checkLocationButton;
+    private TextView dataSourceText;
 
     private boolean isFetchingLocation = false;
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // --- Parallel analysis state (UI thread only) ---
+    private ForecastSeries riverResult;
+    private ForecastSeries rainResult;
+    private RiskEngine riskEngine = RiskEngine.DEFAULT;
+    private int pendingSources;
+    private int analysisGeneration;
+    private boolean analysisFinished;
+    /** The pending deadline of the current generation; each re-run gets its own. */
+    private Runnable analysisDeadline;
+    private final RiskEngine.Assessment assessment = new RiskEngine.Assessment();
+
     private final Handler handler = new Handler(Looper.getMainLooper());
 
     @Override
@@ -77,18 +59,39 @@ public class SafetyTipsActivity extends AppCompatActivity {
         setContentView(R.layout.activity_safety_tips);
 
         initViews();
-        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(this);
+        showWarmedVerdict();
 
         setupCardExpandListeners();
         setupLocationPermissionLauncher();
         checkLocationButton.setOnClickListener(v -> checkRiskAtCurrentLocation());
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Drops pending source results and the analysis deadline along with the screen.
+        handler.removeCallbacksAndMessages(null);
+    }
+
     private void initViews() {
         // These IDs must exist in activity_safety_tips.xml to prevent crashes
         floodLevelView = findViewById(R.id.flood_level_view);
         progressBar = findViewById(R.id.progressBar);
         checkLocationButton = findViewById(R.id.check_location_button);
+        dataSourceText = findViewById(R.id.text_data_source);
+    }
+
+    /** Opens on the dashboard's warmed verdict when it has one; the button still re-checks. */
+    private void showWarmedVerdict() {
+        FloodPrewarmer.Snapshot warmed = FloodPrewarmer.getInstance(this).getSnapshot();
+        if (warmed == null || !warmed.hasForecast()) {
+            return;
+        }
+        riverResult = warmed.river;
+        rainResult = warmed.rain;
+        riskEngine = warmed.engine;
+        showPartialVerdict();
+        updateDataSourceText(riverResult, rainResult);
     }
 
     private void setupLocationPermissionLauncher() {
@@ -137,34 +140,40 @@ public class SafetyTipsActivity extends AppCompatActivity {
         checkLocationButton.setEnabled(false);
         Toast.makeText(this, "Fetching your location...", Toast.LENGTH_SHORT).show();
 
-        LocationRequest locationRequest = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, 10000)
-                .setWaitForAccurateLocation(true)
-                .build();
-
-        locationCallback = new LocationCallback() {
-            @Override
-            public void onLocationResult(@NonNull LocationResult locationResult) {
-                fusedLocationProviderClient.removeLocationUpdates(this);
-                Location lastLocation = locationResult.getLastLocation();
-                if (lastLocation != null) {
-                    // Start the chained fetching process for both river and rain data
-                    fetchFloodData(lastLocation);
-                } else {
-                    Toast.makeText(SafetyTipsActivity.this, "Failed to get location. Defaulting to low risk.", Toast.LENGTH_LONG).show();
-                    floodLevelView.setFloodLevel(0.0f);
-                    resetState();
-                }
-            }
-        };
-
-        try {
-            fusedLocationProviderClient.requestLocationUpdates(locationRequest, locationCallback, Looper.getMainLooper());
-        } catch (SecurityException e) {
-            Log.e(TAG, "Location permission failed.", e);
-            Toast.makeText(this, "Location permission error. Defaulting to low risk.", Toast.LENGTH_LONG).show();
-            floodLevelView.setFloodLevel(0.0f);
-            resetState();
+        // A recent fix starts the analysis right away; a fix that lands somewhere else re-runs it.
+        LocationProvider.getInstance(this)
+                .getLocation(this::onLocationRefined)
+                .whenComplete((location, error) -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    if (error != null) {
+                        Log.e(TAG, "Could not get a location fix.", error);
+                        Toast.makeText(this, "Failed to get location. Defaulting to low risk.", Toast.LENGTH_LONG).show();
+                        floodLevelView.setFloodLevel(0.0f);
+                        resetState();
+                        return;
+                    }
+                    if (LocationProvider.isApproximate(location)) {
+                        Toast.makeText(this, "No current GPS fix; using your last known location.", Toast.LENGTH_LONG).show();
+                    }
+                    // Start the parallel fetching process for both river and rain data
+                    fetchFloodData(location);
+                });
+    }
+
+    /**
+     * A better fix landed somewhere else after the analysis started, possibly after it finished,
+     * so the check is shown as running again until the re-run settles.
+     */
+    private void onLocationRefined(Location location) {
+        if (isDestroyed()) {
+            return;
         }
+        isFetchingLocation = true;
+        progressBar.setVisibility(View.VISIBLE);
+        checkLocationButton.setEnabled(false);
+        fetchFloodData(location);
     }
 
     private void resetState() {
@@ -173,205 +182,183 @@ public class SafetyTipsActivity extends AppCompatActivity {
         checkLocationButton.setEnabled(true);
     }
 
-    // New Chained Fetching Method to get both River and Rain data
+    // Fetches River and Rain data in parallel and joins them under one deadline
     private void fetchFloodData(Location location) {
         Toast.makeText(this, "Analyzing combined flood risk...", Toast.LENGTH_SHORT).show();
 
-        String riverUrl = String.format(java.util.Locale.US, OPEN_METEO_FLOOD_API_URL, location.getLatitude(), location.getLongitude());
-        String weatherUrl = String.format(java.util.Locale.US, OPEN_METEO_WEATHER_API_URL, location.getLatitude(), location.getLongitude());
-
-        executor.execute(() -> {
-            // Step 1: Get River Discharge Data
-            String riverJson = fetchUrlData(riverUrl);
-            // Step 2: Get Precipitation Data
-            String weatherJson = fetchUrlData(weatherUrl);
-
-            // Post to UI thread to process the results
-            handler.post(() -> combineAndAnimateFloodData(riverJson, weatherJson));
-        });
+        FloodForecastRepository repository = FloodForecastRepository.getInstance(this);
+        double lat = location.getLatitude();
+        double lon = location.getLongitude();
+
+        final int generation = ++analysisGeneration;
+        riverResult = null;
+        rainResult = null;
+        riskEngine = RiskEngine.DEFAULT;
+        pendingSources = 2;
+        analysisFinished = false;
+
+        repository.getRiverDischarge(lat, lon, refreshed -> handler.post(() -> onSourceRevalidated(generation, true, refreshed)))
+                .whenComplete((river, error) -> handler.post(() -> onSourceLoaded(generation, true, river, error)));
+        repository.getHourlyPrecipitation(lat, lon, refreshed -> handler.post(() -> onSourceRevalidated(generation, false, refreshed)))
+                .whenComplete((rain, error) -> handler.post(() -> onSourceLoaded(generation, false, rain, error)));
+        // The river's own thresholds; not a source, so it never holds up the verdict.
+        repository.getRiskEngine(lat, lon).thenAccept(engine -> handler.post(() -> onRiskEngineLoaded(generation, engine)));
+
+        if (analysisDeadline != null) {
+            handler.removeCallbacks(analysisDeadline);
+        }
+        analysisDeadline = () -> onAnalysisDeadline(generation);
+        handler.postDelayed(analysisDeadline, ANALYSIS_DEADLINE_MS);
     }
 
     /**
-     * Helper method to perform the network request and handle basic IO exceptions.
-     * Returns null on any failure, posting a network toast to the UI thread.
+     * Called on the UI thread as each source lands. The first arrival shows a partial verdict,
+     * the last one (or the deadline) produces the combined verdict. A source that arrives after
+     * the deadline still refreshes the verdict, quietly: the verdict was already announced.
      */
-    private String fetchUrlData(String urlString) {
-        String jsonResponse = null;
-        try {
-            URL url = new URL(urlString);
-            HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setConnectTimeout(15000);
-            conn.setReadTimeout(15000);
-
-            int responseCode = conn.getResponseCode();
-
-            if (responseCode != HttpsURLConnection.HTTP_OK) {
-                Log.w(TAG, "HTTP error code: " + responseCode + " for URL: " + urlString);
-                return null;
+    private void onSourceLoaded(int generation, boolean isRiver, ForecastSeries series, Throwable error) {
+        if (generation != analysisGeneration || isDestroyed()) {
+            return; // A newer check has started, or the screen is gone; this result is stale.
+        }
+
+        if (error != null) {
+            if (!analysisFinished) {
+                showNetworkError();
             }
+        } else if (isRiver) {
+            riverResult = series;
+        } else {
+            rainResult = series;
+        }
 
-            try (InputStream in = conn.getInputStream(); BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                jsonResponse = response.toString();
-            } finally {
-                conn.disconnect();
+        pendingSources--;
+        if (analysisFinished) {
+            if (error == null) {
+                combineAndAnimateFloodData(riverResult, rainResult, false);
             }
-        } catch (IOException e) {
-            // Log the failure and show an error toast on the UI thread
-            Log.e(TAG, "Network Error or IO failure for URL: " + urlString, e);
-            handler.post(() -> Toast.makeText(SafetyTipsActivity.this, "Network error during analysis. Check connection.", Toast.LENGTH_LONG).show());
-            return null;
+        } else if (pendingSources == 0) {
+            handler.removeCallbacks(analysisDeadline);
+            analysisFinished = true;
+            combineAndAnimateFloodData(riverResult, rainResult, true);
+        } else if (error == null) {
+            showPartialVerdict();
         }
-        return jsonResponse;
     }
 
+    /** A source first served from the offline cache has been refreshed from the network. */
+    private void onSourceRevalidated(int generation, boolean isRiver, ForecastSeries series) {
+        if (generation != analysisGeneration || isDestroyed()) {
+            return;
+        }
+        if (isRiver) {
+            riverResult = series;
+        } else {
+            rainResult = series;
+        }
+        if (analysisFinished) {
+            combineAndAnimateFloodData(riverResult, rainResult, false);
+        } else {
+            showPartialVerdict();
+        }
+    }
 
-    private void combineAndAnimateFloodData(String riverJson, String weatherJson) {
-        float riverRiskLevel = 0.0f;
-        float rainRiskLevel = 0.0f;
-        String riskSource = "None";
-        boolean dataAvailable = false;
-
-        // 1. Parse River Risk
-        if (riverJson != null) {
-            riverRiskLevel = parseRiverData(riverJson);
-            // Check if river data was retrieved successfully, even if risk is zero
-            if (riverRiskLevel >= 0.0f) {
-                dataAvailable = true;
-            }
+    private void onRiskEngineLoaded(int generation, RiskEngine engine) {
+        if (generation != analysisGeneration || isDestroyed()) {
+            return;
         }
+        riskEngine = engine;
+        if (analysisFinished) {
+            combineAndAnimateFloodData(riverResult, rainResult, false);
+        } else if (riverResult != null || rainResult != null) {
+            showPartialVerdict();
+        }
+    }
 
-        // 2. Parse Rain Risk
-        if (weatherJson != null) {
-            float newRainRisk = parsePluvialData(weatherJson);
-            // Check if rain data was retrieved successfully
-            if (newRainRisk >= 0.0f) {
-                dataAvailable = true;
-                rainRiskLevel = newRainRisk;
-            }
+    private void showPartialVerdict() {
+        riskEngine.assess(riverResult, rainResult, assessment);
+        floodLevelView.setFloodLevel(toFeet(assessment.getSeverity()));
+        floodLevelView.setForecast(riverResult, rainResult, riskEngine);
+    }
+
+    private void onAnalysisDeadline(int generation) {
+        if (generation != analysisGeneration || analysisFinished || isDestroyed()) {
+            return;
         }
+        Log.w(TAG, "Flood data deadline reached with " + pendingSources + " source(s) outstanding.");
+        analysisFinished = true;
+        combineAndAnimateFloodData(riverResult, rainResult, true);
+    }
+
+    private void showNetworkError() {
+        Toast.makeText(this, "Network error during analysis. Check connection.", Toast.LENGTH_LONG).show();
+    }
+
 
-        // 3. Determine the highest risk and source
+    /** @param announce whether to toast the verdict; false when refreshing one already announced */
+    private void combineAndAnimateFloodData(ForecastSeries riverSeries, ForecastSeries rainSeries, boolean announce) {
+        // Same engine and thresholds as the evacuation screen, so the two always agree.
+        riskEngine.assess(riverSeries, rainSeries, assessment);
+        float riverRiskLevel = toFeet(assessment.getRiverSeverity());
+        float rainRiskLevel = toFeet(assessment.getRainSeverity());
         float finalWaterLevel = Math.max(riverRiskLevel, rainRiskLevel);
 
+        if (announce) {
+            // A late source or refresh only updates the view and notice; the verdict was toasted.
+            announceVerdict(riverRiskLevel, rainRiskLevel, finalWaterLevel);
+        }
+
+        floodLevelView.setFloodLevel(finalWaterLevel);
+        floodLevelView.setForecast(riverSeries, rainSeries, riskEngine);
+        updateDataSourceText(riverSeries, rainSeries);
+        resetState();
+    }
+
+    private void announceVerdict(float riverRiskLevel, float rainRiskLevel, float finalWaterLevel) {
         if (finalWaterLevel > 0.0f) {
+            String riskSource;
             if (riverRiskLevel > rainRiskLevel) {
-                riskSource = "River Discharge";
+                riskSource = assessment.isRapidRise() ? "Rapidly Rising River" : "River Discharge";
             } else if (rainRiskLevel > riverRiskLevel) {
                 riskSource = "Extreme Rainfall";
             } else {
                 riskSource = "Combined Risk"; // If they are equal and > 0
             }
+            String verdict = assessment.isHighRisk() ? "High Flood Risk" : "Flood Risk Detected";
 
-            Toast.makeText(this, String.format("Flood Risk Detected: %.1f ft (Source: %s)",
-                    finalWaterLevel, riskSource), Toast.LENGTH_LONG).show();
-        } else if (dataAvailable) {
+            Toast.makeText(this, String.format("%s: %.1f ft (Source: %s)",
+                    verdict, finalWaterLevel, riskSource), Toast.LENGTH_LONG).show();
+        } else if (assessment.hasData()) {
             Toast.makeText(this, "Low immediate flood risk detected (0.0 ft).", Toast.LENGTH_SHORT).show();
         } else {
-            // If both APIs failed to return parseable data (and dataAvailable is false)
+            // If both APIs failed to return usable data
             Toast.makeText(this, "Could not retrieve comprehensive risk data. Assuming low risk.", Toast.LENGTH_LONG).show();
         }
-
-        floodLevelView.setFloodLevel(finalWaterLevel);
-        resetState();
     }
 
-    // --- PARSING METHODS ---
-
-    /** Parses the River Discharge (GloFAS) data and calculates the risk level. */
-    private float parseRiverData(String jsonResponse) {
-        try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-
-            if (jsonObject.has("daily")) {
-                JSONObject dailyData = jsonObject.getJSONObject("daily");
-                if (dailyData.has("river_discharge")) {
-                    JSONArray dischargeArray = dailyData.getJSONArray("river_discharge");
-                    double maxDischarge = 0.0;
-
-                    for (int i = 0; i < dischargeArray.length(); i++) {
-                        if (!dischargeArray.isNull(i)) {
-                            double discharge = dischargeArray.getDouble(i);
-                            if (discharge > maxDischarge) {
-                                maxDischarge = discharge;
-                            }
-                        }
-                    }
-                    return calculateRiverWaterLevel(maxDischarge);
-                }
-            }
-        } catch (JSONException e) {
-            // Log the error but return 0.0f to be handled by the calling method
-            Log.e(TAG, "River JSON Parsing Error: ", e);
+    /** Makes it visible when the verdict is based on saved rather than live data. */
+    private void updateDataSourceText(ForecastSeries riverSeries, ForecastSeries rainSeries) {
+        if (riverSeries == null && rainSeries == null) {
+            dataSourceText.setText("Could not reach the forecast service and no saved forecast is available. This is not a live result.");
+            dataSourceText.setVisibility(View.VISIBLE);
+            return;
         }
-        return -1.0f; // Return a negative value to signal parsing failure
-    }
 
-    /** Parses the Precipitation Sum (Pluvial) data and calculates the risk level. */
-    private float parsePluvialData(String jsonResponse) {
-        try {
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-
-            if (jsonObject.has("daily")) {
-                JSONObject dailyData = jsonObject.getJSONObject("daily");
-                if (dailyData.has("precipitation_sum")) {
-                    JSONArray precipitationArray = dailyData.getJSONArray("precipitation_sum");
-                    double maxRainfall = 0.0;
-
-                    for (int i = 0; i < precipitationArray.length(); i++) {
-                        if (!precipitationArray.isNull(i)) {
-                            double rainfall = precipitationArray.getDouble(i);
-                            if (rainfall > maxRainfall) {
-                                maxRainfall = rainfall;
-                            }
-                        }
-                    }
-                    return calculateRainWaterLevel(maxRainfall);
-                }
+        long oldestCachedAt = Long.MAX_VALUE;
+        for (ForecastSeries series : new ForecastSeries[]{riverSeries, rainSeries}) {
+            if (series != null && series.isFromCache()) {
+                oldestCachedAt = Math.min(oldestCachedAt, series.getFetchedAtMillis());
             }
-        } catch (JSONException e) {
-            // Log the error but return 0.0f to be handled by the calling method
-            Log.e(TAG, "Rain JSON Parsing Error: ", e);
-        }
-        return -1.0f; // Return a negative value to signal parsing failure
-    }
-
-    // --- CALCULATION METHODS ---
-
-    private float calculateRiverWaterLevel(double dischargeValue) {
-        if (dischargeValue <= NORMAL_DISCHARGE) {
-            return 0.0f;
         }
-        if (dischargeValue >= CRITICAL_DISCHARGE) {
-            return MAX_FEET_IN_VIEW;
-        }
-        double percentage = (dischargeValue - NORMAL_DISCHARGE) / (CRITICAL_DISCHARGE - NORMAL_DISCHARGE);
-        return (float) (percentage * MAX_FEET_IN_VIEW);
-    }
 
-    private float calculateRainWaterLevel(double rainfallMM) {
-        if (rainfallMM <= RAIN_RISK_LOW) {
-            return 0.0f;
-        }
-        if (rainfallMM >= RAIN_RISK_CRITICAL) {
-            return MAX_FEET_IN_VIEW;
+        if (oldestCachedAt == Long.MAX_VALUE) {
+            dataSourceText.setVisibility(View.GONE);
+        } else {
+            dataSourceText.setText("Showing saved forecast from " + DateUtils.getRelativeTimeSpanString(oldestCachedAt) + ". Updating when online.");
+            dataSourceText.setVisibility(View.VISIBLE);
         }
-
-        // Scale the rain risk between 0.0f and MAX_FEET_IN_VIEW
-        double percentage = (rainfallMM - RAIN_RISK_LOW) / (RAIN_RISK_CRITICAL - RAIN_RISK_LOW);
-        return (float) (percentage * MAX_FEET_IN_VIEW);
     }
 
-    @Override
-    protected void onStop() {
-        super.onStop();
-        if (fusedLocationProviderClient != null && locationCallback != null) {
-            fusedLocationProviderClient.removeLocationUpdates(locationCallback);
-        }
+    private static float toFeet(double severity) {
+        return (float) (severity * MAX_FEET_IN_VIEW);
     }
-}
\ No newline at end of file
+}
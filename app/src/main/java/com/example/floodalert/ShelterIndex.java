@@ -0,0 +1,280 @@
+package com.example.floodalert;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Static 2-d tree over shelter locations (schools, hospitals, relief camps) for k-nearest queries.
+ *
+ * Points are projected once to local metres (equirectangular around the dataset's mean latitude,
+ * accurate enough for ranking within a region) and stored in an implicit tree: the median of each
+ * range is its root, so there are no node objects and a 10k shelter tree is a few hundred KB of
+ * primitive arrays. Query results are indices into the arrays passed to the constructor.
+ *
+ * A tree can also run directly over coordinates that are already in tree order, such as the
+ * memory-mapped shelter section of a {@link FloodDataFile}; then nothing is copied onto the heap.
+ */
+public final class ShelterIndex {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON_AT_EQUATOR = 111_320.0;
+
+    private final int count;
+    private final double lonScale;
+    // Heap form. Tree order: treeX/treeY/treeIndex[k] describe the k-th point in implicit tree layout.
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] treeX;
+    private final double[] treeY;
+    private final int[] treeIndex;
+    // Mapped form: degrees * 1e6, already in tree order, so index k is tree position k.
+    private final IntBuffer mappedLatE6;
+    private final IntBuffer mappedLonE6;
+
+    public ShelterIndex(@NonNull double[] lats, @NonNull double[] lons) {
+        if (lats.length != lons.length) {
+            throw new IllegalArgumentException("lats and lons must have the same length");
+        }
+        this.lats = lats;
+        this.lons = lons;
+        mappedLatE6 = null;
+        mappedLonE6 = null;
+
+        double meanLat = 0;
+        for (double lat : lats) {
+            meanLat += lat;
+        }
+        meanLat = lats.length > 0 ? meanLat / lats.length : 0;
+        lonScale = METERS_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(meanLat));
+
+        count = lats.length;
+        treeX = new double[count];
+        treeY = new double[count];
+        treeIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            treeX[i] = lons[i] * lonScale;
+            treeY[i] = lats[i] * METERS_PER_DEGREE_LAT;
+            treeIndex[i] = i;
+        }
+        build(0, count, 0);
+    }
+
+    /**
+     * Wraps coordinates that were written in the order {@link #treeOrder} reports for a tree built
+     * with the same {@code lonScale}.
+     */
+    ShelterIndex(@NonNull IntBuffer latE6, @NonNull IntBuffer lonE6, double lonScale) {
+        if (latE6.remaining() != lonE6.remaining()) {
+            throw new IllegalArgumentException("lats and lons must have the same length");
+        }
+        count = latE6.remaining();
+        this.lonScale = lonScale;
+        mappedLatE6 = latE6;
+        mappedLonE6 = lonE6;
+        lats = null;
+        lons = null;
+        treeX = null;
+        treeY = null;
+        treeIndex = null;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public double getLat(int index) {
+        return lats != null ? lats[index] : mappedLatE6.get(index) / 1e6;
+    }
+
+    public double getLon(int index) {
+        return lons != null ? lons[index] : mappedLonE6.get(index) / 1e6;
+    }
+
+    /** Index of the point at position {@code k} of the implicit tree. */
+    int treeOrder(int k) {
+        return treeIndex != null ? treeIndex[k] : k;
+    }
+
+    double getLonScale() {
+        return lonScale;
+    }
+
+    /**
+     * Returns up to {@code k} shelter indices nearest to the point, closest first, skipping any
+     * shelter for which {@code accept} returns false (for example shelters inside a flood zone).
+     */
+    @NonNull
+    public int[] nearest(double lat, double lon, int k, @Nullable IntPredicate accept) {
+        if (k <= 0 || count == 0) {
+            return new int[0];
+        }
+        Search search = new Search(lon * lonScale, lat * METERS_PER_DEGREE_LAT, k, accept);
+        search(search, 0, count, 0);
+        return search.sortedResult();
+    }
+
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, (depth & 1) == 0);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /** Quickselect so position {@code k} holds the median along the axis, smaller values before it. */
+    private void select(int left, int right, int k, boolean byX) {
+        while (right > left) {
+            int pivotIndex = (left + right) >>> 1;
+            double pivot = coordinate(pivotIndex, byX);
+            swap(pivotIndex, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (coordinate(i, byX) < pivot) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, right);
+            if (store == k) {
+                return;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+    }
+
+    private double coordinate(int i, boolean byX) {
+        return byX ? treeX[i] : treeY[i];
+    }
+
+    private void swap(int a, int b) {
+        double x = treeX[a];
+        treeX[a] = treeX[b];
+        treeX[b] = x;
+        double y = treeY[a];
+        treeY[a] = treeY[b];
+        treeY[b] = y;
+        int index = treeIndex[a];
+        treeIndex[a] = treeIndex[b];
+        treeIndex[b] = index;
+    }
+
+    private void search(Search search, int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double x = treeX != null ? treeX[mid] : getLon(mid) * lonScale;
+        double y = treeY != null ? treeY[mid] : getLat(mid) * METERS_PER_DEGREE_LAT;
+        double dx = x - search.x;
+        double dy = y - search.y;
+        search.offer(treeOrder(mid), dx * dx + dy * dy);
+
+        double delta = (depth & 1) == 0 ? search.x - x : search.y - y;
+        boolean goLeft = delta < 0;
+        if (goLeft) {
+            search(search, lo, mid, depth + 1);
+        } else {
+            search(search, mid + 1, hi, depth + 1);
+        }
+        if (delta * delta < search.worstDistance()) {
+            if (goLeft) {
+                search(search, mid + 1, hi, depth + 1);
+            } else {
+                search(search, lo, mid, depth + 1);
+            }
+        }
+    }
+
+    /** Bounded max-heap of the best candidates seen so far. */
+    private static final class Search {
+        final double x, y;
+        final IntPredicate accept;
+        final int[] heapIndex;
+        final double[] heapDistance;
+        int size;
+
+        Search(double x, double y, int k, IntPredicate accept) {
+            this.x = x;
+            this.y = y;
+            this.accept = accept;
+            heapIndex = new int[k];
+            heapDistance = new double[k];
+        }
+
+        double worstDistance() {
+            return size < heapIndex.length ? Double.POSITIVE_INFINITY : heapDistance[0];
+        }
+
+        void offer(int index, double distance) {
+            if (distance >= worstDistance() || (accept != null && !accept.test(index))) {
+                return;
+            }
+            if (size < heapIndex.length) {
+                int i = size++;
+                heapIndex[i] = index;
+                heapDistance[i] = distance;
+                siftUp(i);
+            } else {
+                heapIndex[0] = index;
+                heapDistance[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapDistance[parent] >= heapDistance[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heapDistance[left] > heapDistance[largest]) largest = left;
+                if (right < size && heapDistance[right] > heapDistance[largest]) largest = right;
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int index = heapIndex[a];
+            heapIndex[a] = heapIndex[b];
+            heapIndex[b] = index;
+            double distance = heapDistance[a];
+            heapDistance[a] = heapDistance[b];
+            heapDistance[b] = distance;
+        }
+
+        int[] sortedResult() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(heapDistance[a], heapDistance[b]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = heapIndex[order[i]];
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.floodalert;
+
+/**
+ * A named location a coordinator wants to keep an eye on (a village, a school, a relief camp).
+ */
+public class WatchedPlace {
+    private final String name;
+    private final double latitude;
+    private final double longitude;
+
+    public WatchedPlace(String name, double latitude, double longitude) {
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.floodalert;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the list of {@link WatchedPlace}s in SharedPreferences as a small JSON array.
+ */
+public class WatchedPlacesStore {
+
+    private static final String TAG = "WatchedPlacesStore";
+    private static final String PREFS_NAME = "watched_places";
+    private static final String KEY_PLACES = "places";
+
+    private final SharedPreferences prefs;
+
+    public WatchedPlacesStore(@NonNull Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    public List<WatchedPlace> getAll() {
+        List<WatchedPlace> places = new ArrayList<>();
+        String stored = prefs.getString(KEY_PLACES, null);
+        if (stored == null) {
+            return places;
+        }
+        try {
+            JSONArray array = new JSONArray(stored);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                places.add(new WatchedPlace(item.getString("name"), item.getDouble("lat"), item.getDouble("lon")));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Stored watched places are corrupt; ignoring them.", e);
+        }
+        return places;
+    }
+
+    public void add(@NonNull WatchedPlace place) {
+        List<WatchedPlace> places = getAll();
+        places.add(place);
+        save(places);
+    }
+
+    public void remove(@NonNull String name) {
+        List<WatchedPlace> places = getAll();
+        for (int i = places.size() - 1; i >= 0; i--) {
+            if (places.get(i).getName().equals(name)) {
+                places.remove(i);
+            }
+        }
+        save(places);
+    }
+
+    private void save(List<WatchedPlace> places) {
+        JSONArray array = new JSONArray();
+        try {
+            for (WatchedPlace place : places) {
+                JSONObject item = new JSONObject();
+                item.put("name", place.getName());
+                item.put("lat", place.getLatitude());
+                item.put("lon", place.getLongitude());
+                array.put(item);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode watched places.", e);
+            return;
+        }
+        prefs.edit().putString(KEY_PLACES, array.toString()).apply();
+    }
+}
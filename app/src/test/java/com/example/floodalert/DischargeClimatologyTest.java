@@ -0,0 +1,73 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DischargeClimatologyTest {
+
+    private static final long DAY = 86_400;
+
+    private static ForecastSeries daily(double... values) {
+        long[] times = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            times[i] = 1_700_000_000L + i * DAY;
+        }
+        return new ForecastSeries(ForecastSeries.Kind.RIVER_DISCHARGE, times, values, 0L);
+    }
+
+    /** A record that spends 90% of days at or under base, 9% under flood, 1% at flood. */
+    private static DischargeClimatology record(double base, double flood) {
+        DischargeClimatology.Accumulator accumulator = new DischargeClimatology.Accumulator();
+        for (int day = 0; day < 3_650; day++) {
+            int slot = day % 100;
+            accumulator.add(slot < 90 ? base * slot / 90.0 : slot < 99 ? base + (flood - base) * (slot - 90) / 9.0 : flood);
+            accumulator.add(Double.NaN); // Missing days are skipped.
+        }
+        return accumulator.build(42L);
+    }
+
+    @Test
+    public void thresholds_scaleWithTheRiver() {
+        DischargeClimatology stream = record(2, 8);
+        DischargeClimatology river = record(400, 2_000);
+        assertTrue(stream.hasThresholds());
+        assertEquals(3_650, stream.sampleCount);
+
+        ForecastSeries thirty = daily(30, 30, 30);
+        // 30 m³/s: a disaster on the stream, a trickle on the big river.
+        assertTrue(stream.toRiskEngine().assess(thirty, null).isHighRisk());
+        assertFalse(river.toRiskEngine().assess(thirty, null).isHighRisk());
+        assertTrue(river.toRiskEngine().assess(daily(2_500, 2_500), null).isHighRisk());
+    }
+
+    @Test
+    public void shortOrDryRecords_fallBackToDefaults() {
+        DischargeClimatology.Accumulator shortRecord = new DischargeClimatology.Accumulator();
+        for (int day = 0; day < 100; day++) {
+            shortRecord.add(50);
+        }
+        assertFalse(shortRecord.build(0L).hasThresholds());
+        assertSame(RiskEngine.DEFAULT, shortRecord.build(0L).toRiskEngine());
+
+        assertFalse(record(0.1, 0.5).hasThresholds());
+    }
+
+    @Test
+    public void encode_roundTrips() {
+        DischargeClimatology original = record(400, 2_000);
+        DischargeClimatology decoded = DischargeClimatology.decode(original.encode());
+        assertNotNull(decoded);
+        assertEquals(original.p90, decoded.p90, 0.0);
+        assertEquals(original.p99, decoded.p99, 0.0);
+        assertEquals(original.sampleCount, decoded.sampleCount);
+        assertEquals(42L, decoded.computedAtMillis);
+
+        DischargeClimatology dry = DischargeClimatology.decode(record(0.1, 0.5).encode());
+        assertNotNull(dry);
+        assertFalse(dry.hasThresholds());
+
+        assertNull(DischargeClimatology.decode(null));
+        assertNull(DischargeClimatology.decode("1,2,x,4"));
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.floodalert;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks queries against a written {@link FloodDataFile} give the same answers as the in-memory
+ * {@link FloodZoneIndex} and {@link ShelterIndex} over the same data.
+ */
+public class FloodDataFileTest {
+
+    private static final int ZONE_COUNT = 20_000;
+    private static final int SHELTER_COUNT = 2_000;
+    private static final double SOUTH = 18.9, WEST = 72.7, SPAN = 0.5;
+
+    private static File file;
+    private static FloodDataFile data;
+    private static FloodZoneIndex expectedZones;
+    private static ShelterIndex expectedShelters;
+
+    @BeforeClass
+    public static void writeDataset() throws IOException {
+        Random random = new Random(42);
+        FloodDataFile.Builder builder = new FloodDataFile.Builder(7);
+        expectedZones = new FloodZoneIndex();
+        for (int i = 0; i < ZONE_COUNT; i++) {
+            FloodZone zone = randomPolygon("zone-" + i, random);
+            builder.addZone(zone);
+            expectedZones.put(zone);
+        }
+        // A district-wide extent that lands in the oversized list.
+        FloodZone district = FloodZone.fromBounds("district", 19.3, 73.1, 19.25, 72.75);
+        builder.addZone(district);
+        expectedZones.put(district);
+
+        double[] lats = new double[SHELTER_COUNT];
+        double[] lons = new double[SHELTER_COUNT];
+        for (int i = 0; i < SHELTER_COUNT; i++) {
+            lats[i] = e6(SOUTH + random.nextDouble() * SPAN);
+            lons[i] = e6(WEST + random.nextDouble() * SPAN);
+            builder.addShelter("shelter-" + i, lats[i], lons[i]);
+        }
+        expectedShelters = new ShelterIndex(lats, lons);
+
+        file = File.createTempFile("zones", ".flzd");
+        builder.writeTo(file);
+        data = FloodDataFile.open(file);
+    }
+
+    @AfterClass
+    public static void deleteFile() {
+        file.delete();
+    }
+
+    /** Vertices already on the 1e-6 degree grid, so the stored polygons are exactly the originals. */
+    private static FloodZone randomPolygon(String id, Random random) {
+        double centerLat = SOUTH + random.nextDouble() * SPAN;
+        double centerLon = WEST + random.nextDouble() * SPAN;
+        int vertices = 8 + random.nextInt(5);
+        double[] lats = new double[vertices];
+        double[] lons = new double[vertices];
+        for (int v = 0; v < vertices; v++) {
+            double angle = 2 * Math.PI * v / vertices;
+            double radius = 0.0005 + random.nextDouble() * 0.0025;
+            lats[v] = e6(centerLat + radius * Math.sin(angle));
+            lons[v] = e6(centerLon + radius * Math.cos(angle));
+        }
+        return new FloodZone(id, lats, lons);
+    }
+
+    private static double e6(double degrees) {
+        return Math.round(degrees * 1e6) / 1e6;
+    }
+
+    @Test
+    public void header_roundTrips() {
+        assertEquals(7, data.getFeedVersion());
+        assertEquals(ZONE_COUNT + 1, data.getZoneCount());
+        assertEquals(SHELTER_COUNT, data.getShelterCount());
+    }
+
+    @Test
+    public void pointQueries_matchInMemoryIndex() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            double lat = SOUTH + random.nextDouble() * SPAN;
+            double lon = WEST + random.nextDouble() * SPAN;
+            FloodZone expected = expectedZones.zoneAt(lat, lon);
+            int zone = data.zoneAt(lat, lon, null);
+            assertEquals("at " + lat + "," + lon, expected != null, zone >= 0);
+            if (zone >= 0) {
+                assertTrue(expectedZones.get(data.getZoneId(zone)).contains(lat, lon));
+            }
+        }
+    }
+
+    @Test
+    public void viewportQueries_reportEachIntersectingZoneOnce() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100; i++) {
+            double south = SOUTH + random.nextDouble() * SPAN;
+            double west = WEST + random.nextDouble() * SPAN;
+            double size = random.nextDouble() * 0.05;
+
+            List<FloodZone> expected = new ArrayList<>();
+            expectedZones.query(south, west, south + size, west + size, expected);
+            Set<String> expectedIds = new HashSet<>();
+            for (FloodZone zone : expected) {
+                expectedIds.add(zone.getId());
+            }
+
+            List<String> actual = new ArrayList<>();
+            data.query(south, west, south + size, west + size, null, zone -> actual.add(data.getZoneId(zone)));
+            assertEquals(expectedIds.size(), actual.size());
+            assertEquals(expectedIds, new HashSet<>(actual));
+        }
+    }
+
+    @Test
+    public void decodeAndFind_returnOriginalZone() {
+        int zone = data.findZone("zone-1234");
+        assertTrue(zone >= 0);
+        FloodZone decoded = data.decodeZone(zone);
+        FloodZone original = expectedZones.get("zone-1234");
+        assertEquals(original.getVertexCount(), decoded.getVertexCount());
+        for (int v = 0; v < decoded.getVertexCount(); v++) {
+            assertEquals(original.getLat(v), decoded.getLat(v), 0.0);
+            assertEquals(original.getLon(v), decoded.getLon(v), 0.0);
+        }
+        assertEquals(-1, data.findZone("no-such-zone"));
+    }
+
+    @Test
+    public void mappedShelters_matchHeapTree() {
+        ShelterIndex mapped = data.shelterIndex();
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            double lat = SOUTH + random.nextDouble() * SPAN;
+            double lon = WEST + random.nextDouble() * SPAN;
+            int[] expected = expectedShelters.nearest(lat, lon, 3, null);
+            int[] actual = mapped.nearest(lat, lon, 3, null);
+            assertEquals(expected.length, actual.length);
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals("shelter-" + expected[k], data.getShelterId(actual[k]));
+                assertEquals(expectedShelters.getLat(expected[k]), mapped.getLat(actual[k]), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void zoneIndex_overBaseFile_shadowsAndKeepsIdentity() throws IOException {
+        FloodZoneIndex index = new FloodZoneIndex();
+        index.setBase(data);
+        assertEquals(ZONE_COUNT + 1, index.size());
+
+        FloodZone kept = index.get("zone-1");
+        FloodZone changed = index.get("zone-2");
+        assertTrue(index.remove("zone-3"));
+        assertNull(index.get("zone-3"));
+        assertEquals(ZONE_COUNT, index.size());
+
+        // A delta: zone-2 moves, zone-3 is deleted, everything else is copied as-is.
+        FloodDataFile.Builder builder = new FloodDataFile.Builder(8);
+        for (int zone = 0; zone < data.getZoneCount(); zone++) {
+            String id = data.getZoneId(zone);
+            if (!id.equals("zone-2") && !id.equals("zone-3")) {
+                builder.copyZone(data, zone);
+            }
+        }
+        builder.addZone(FloodZone.fromBounds("zone-2", 19.001, 72.801, 19.0, 72.8));
+        File next = File.createTempFile("zones", ".flzd");
+        try {
+            builder.writeTo(next);
+            index.setBase(FloodDataFile.open(next));
+        } finally {
+            next.delete();
+        }
+
+        assertEquals(ZONE_COUNT, index.size());
+        assertSame(kept, index.get("zone-1"));
+        assertNotSame(changed, index.get("zone-2"));
+        assertTrue(index.isInZone(19.0005, 72.8005));
+        assertNull(index.get("zone-3"));
+    }
+
+    @Test
+    public void zoneIndex_viewportQuery_decodesOnlyWhatIsKept() {
+        FloodZoneIndex index = new FloodZoneIndex();
+        index.setBase(data);
+
+        List<FloodZone> small = new ArrayList<>();
+        index.query(SOUTH, WEST, SOUTH + SPAN, WEST + SPAN, 0.1, small);
+        assertEquals(1, small.size());
+        assertEquals("district", small.get(0).getId());
+
+        List<FloodZone> viewport = new ArrayList<>();
+        index.query(19.0, 72.8, 19.02, 72.82, viewport);
+        assertFalse(viewport.isEmpty());
+        FloodZone held = viewport.get(0);
+        FloodZone dropped = index.get("zone-1");
+        if (dropped == held) {
+            dropped = index.get("zone-2");
+        }
+        index.retainDecoded(Collections.singletonList(held));
+
+        assertSame(held, index.get(held.getId()));
+        FloodZone again = index.get(dropped.getId());
+        assertNotSame(dropped, again);
+        assertEquals(dropped.getVertexCount(), again.getVertexCount());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class FloodMonitorTest {
+
+    private static final long DAY = 86_400;
+
+    private static ForecastSeries daily(double... values) {
+        long[] times = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            times[i] = 1_700_000_000L + i * DAY;
+        }
+        return new ForecastSeries(ForecastSeries.Kind.RIVER_DISCHARGE, times, values, 0L);
+    }
+
+    private static RiskEngine engineWithDangerAt(double discharge) {
+        RiskEngine.Thresholds thresholds = new RiskEngine.Thresholds();
+        thresholds.normalDischarge = discharge;
+        thresholds.minimumDangerDischarge = discharge;
+        thresholds.criticalDischarge = discharge * 3;
+        return new RiskEngine(thresholds);
+    }
+
+    private static PlaceRisk risk(RiskEngine engine, ForecastSeries discharge) {
+        RiskEngine.Assessment assessment = new RiskEngine.Assessment();
+        double score = engine.score(discharge, null, assessment);
+        return new PlaceRisk(new WatchedPlace("Place", 19.1, 72.9), discharge,
+                assessment.isHighRisk(), score, engine.dangerRatio(discharge));
+    }
+
+    @Test
+    public void bigRiverAtItsUsualFlow_isCheckedRarely() {
+        // 120 m³/s is twelve times the default danger level, but a third of this river's.
+        ForecastSeries discharge = daily(118, 120, 119);
+        PlaceRisk bigRiver = risk(engineWithDangerAt(400), discharge);
+
+        assertEquals(0.3, bigRiver.getDangerRatio(), 1e-9);
+        assertEquals(FloodMonitor.DELAY_QUIET_MINUTES, FloodMonitor.nextDelayMinutes(Collections.singletonList(bigRiver)));
+    }
+
+    @Test
+    public void riverNearItsOwnDangerLevel_isCheckedOften() {
+        PlaceRisk quiet = risk(engineWithDangerAt(400), daily(100, 100, 100));
+        PlaceRisk nearDanger = risk(engineWithDangerAt(50), daily(40, 42, 44));
+
+        assertEquals(FloodMonitor.DELAY_RISING_MINUTES, FloodMonitor.nextDelayMinutes(Arrays.asList(quiet, nearDanger)));
+    }
+
+    @Test
+    public void placesWithoutData_doNotShortenTheDelay() {
+        PlaceRisk missing = new PlaceRisk(new WatchedPlace("Place", 19.1, 72.9), null, false, -1.0, 0.0);
+
+        assertEquals(FloodMonitor.DELAY_QUIET_MINUTES, FloodMonitor.nextDelayMinutes(Collections.singletonList(missing)));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FloodZoneGeofencesTest {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+
+    /** A row of small zones running north from the user, one every ~110 m. */
+    private static FloodZoneIndex rowOfZones(int count) {
+        FloodZoneIndex index = new FloodZoneIndex();
+        for (int i = 0; i < count; i++) {
+            double south = 19.0 + 0.001 * (i + 1);
+            index.put(FloodZone.fromBounds("zone-" + i, south + 0.0002, 72.8002, south, 72.8));
+        }
+        return index;
+    }
+
+    @Test
+    public void plan_keepsNearestZonesAndRotatesBeforeTheRest() {
+        FloodZoneIndex index = rowOfZones(150);
+        FloodZoneGeofences.Plan plan = FloodZoneGeofences.plan(index, 19.0, 72.8001, FloodZoneGeofences.MAX_ZONE_FENCES);
+
+        assertEquals(FloodZoneGeofences.MAX_ZONE_FENCES, plan.zones.size());
+        Set<String> ids = new HashSet<>();
+        for (FloodZone zone : plan.zones) {
+            ids.add(zone.getId());
+        }
+        for (int i = 0; i < FloodZoneGeofences.MAX_ZONE_FENCES; i++) {
+            assertTrue("zone-" + i, ids.contains("zone-" + i));
+        }
+
+        // Walking the rotation radius north must not reach the first zone left out.
+        double firstMissingSouth = 19.0 + 0.001 * (FloodZoneGeofences.MAX_ZONE_FENCES + 1);
+        double metersToFirstMissing = (firstMissingSouth - 19.0) * METERS_PER_DEGREE_LAT;
+        assertTrue(plan.rotationRadius < metersToFirstMissing);
+        assertTrue(plan.rotationRadius >= FloodZoneGeofences.MIN_ROTATION_RADIUS_METERS);
+    }
+
+    @Test
+    public void plan_fenceCirclesCoverTheirZones() {
+        FloodZoneIndex index = new FloodZoneIndex();
+        index.put(FloodZone.fromBounds("wide", 19.02, 72.85, 19.0, 72.8));
+        FloodZoneGeofences.Plan plan = FloodZoneGeofences.plan(index, 19.01, 72.9, 10);
+
+        assertEquals(1, plan.zones.size());
+        double lonScale = 111_320.0 * Math.cos(Math.toRadians(19.01));
+        double cornerDistance = Math.hypot((19.02 - plan.centerLat[0]) * METERS_PER_DEGREE_LAT,
+                (72.85 - plan.centerLon[0]) * lonScale);
+        assertTrue(plan.radius[0] >= cornerDistance * 0.999);
+        // Nothing was left out, so the fence rotates only near the edge of the search area.
+        assertEquals(FloodZoneGeofences.SEARCH_RADIUS_METERS / 2, plan.rotationRadius, 1e-6);
+    }
+
+    @Test
+    public void plan_withNoZonesStillRotates() {
+        FloodZoneGeofences.Plan plan = FloodZoneGeofences.plan(new FloodZoneIndex(), 19.0, 72.8, 10);
+        assertTrue(plan.zones.isEmpty());
+        assertTrue(plan.rotationRadius > 0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.floodalert;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link FloodZoneIndex} against a brute-force scan on a district-sized, 50k polygon dataset.
+ */
+public class FloodZoneIndexTest {
+
+    private static final int ZONE_COUNT = 50_000;
+    private static final double SOUTH = 18.9, WEST = 72.7, SPAN = 0.5;
+
+    private static List<FloodZone> zones;
+    private static FloodZoneIndex index;
+
+    @BeforeClass
+    public static void buildDataset() {
+        Random random = new Random(42);
+        zones = new ArrayList<>(ZONE_COUNT);
+        index = new FloodZoneIndex();
+        for (int i = 0; i < ZONE_COUNT; i++) {
+            FloodZone zone = randomPolygon("zone-" + i, random);
+            zones.add(zone);
+            index.put(zone);
+        }
+    }
+
+    /** An irregular 8-12 sided polygon, up to ~300 m across. */
+    private static FloodZone randomPolygon(String id, Random random) {
+        double centerLat = SOUTH + random.nextDouble() * SPAN;
+        double centerLon = WEST + random.nextDouble() * SPAN;
+        int vertices = 8 + random.nextInt(5);
+        double[] lats = new double[vertices];
+        double[] lons = new double[vertices];
+        for (int v = 0; v < vertices; v++) {
+            double angle = 2 * Math.PI * v / vertices;
+            double radius = 0.0005 + random.nextDouble() * 0.0025;
+            lats[v] = centerLat + radius * Math.sin(angle);
+            lons[v] = centerLon + radius * Math.cos(angle);
+        }
+        return new FloodZone(id, lats, lons);
+    }
+
+    @Test
+    public void pointQueries_matchBruteForce() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            double lat = SOUTH + random.nextDouble() * SPAN;
+            double lon = WEST + random.nextDouble() * SPAN;
+
+            boolean expected = false;
+            for (FloodZone zone : zones) {
+                if (zone.contains(lat, lon)) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals("point " + lat + "," + lon, expected, index.isInZone(lat, lon));
+        }
+    }
+
+    @Test
+    public void pointQueries_areSubMillisecond() {
+        Random random = new Random(11);
+        int queries = 100_000;
+        // Warm up the JIT before timing.
+        for (int i = 0; i < queries; i++) {
+            index.isInZone(SOUTH + random.nextDouble() * SPAN, WEST + random.nextDouble() * SPAN);
+        }
+
+        long start = System.nanoTime();
+        int hits = 0;
+        for (int i = 0; i < queries; i++) {
+            if (index.isInZone(SOUTH + random.nextDouble() * SPAN, WEST + random.nextDouble() * SPAN)) {
+                hits++;
+            }
+        }
+        double averageMicros = (System.nanoTime() - start) / 1000.0 / queries;
+        assertTrue("some random points should land in a zone", hits > 0);
+        assertTrue("average point query took " + averageMicros + " us", averageMicros < 1000.0);
+    }
+
+    @Test
+    public void viewportQuery_matchesBruteForce() {
+        double south = 19.0, west = 72.8, north = 19.03, east = 72.84;
+        List<FloodZone> found = new ArrayList<>();
+        index.query(south, west, north, east, found);
+
+        Set<String> expected = new HashSet<>();
+        for (FloodZone zone : zones) {
+            if (zone.intersectsBox(south, west, north, east)) {
+                expected.add(zone.getId());
+            }
+        }
+        Set<String> actual = new HashSet<>();
+        for (FloodZone zone : found) {
+            assertTrue("duplicate " + zone.getId(), actual.add(zone.getId()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void removeAndReplace_updateQueries() {
+        FloodZoneIndex small = new FloodZoneIndex();
+        small.put(FloodZone.fromBounds("a", 19.025, 72.85, 19.015, 72.84));
+        assertTrue(small.isInZone(19.02, 72.845));
+
+        small.put(FloodZone.fromBounds("a", 19.045, 72.865, 19.035, 72.855));
+        assertFalse(small.isInZone(19.02, 72.845));
+        assertTrue(small.isInZone(19.04, 72.86));
+
+        assertTrue(small.remove("a"));
+        assertFalse(small.isInZone(19.04, 72.86));
+        assertEquals(0, small.size());
+    }
+
+    @Test
+    public void oversizedZone_isStillFound() {
+        FloodZoneIndex small = new FloodZoneIndex();
+        small.put(FloodZone.fromBounds("district", 20.0, 74.0, 18.0, 72.0));
+        assertTrue(small.isInZone(19.0, 73.0));
+
+        List<FloodZone> found = new ArrayList<>();
+        small.query(18.9, 72.9, 19.1, 73.1, found);
+        assertEquals(1, found.size());
+    }
+}
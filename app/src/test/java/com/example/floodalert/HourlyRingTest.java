@@ -0,0 +1,84 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HourlyRingTest {
+
+    private static final long HOUR = HourlyRing.HOUR_SECONDS;
+    private static final long START = 1_700_006_400L; // On the hour.
+
+    private static ForecastSeries hours(long from, double... values) {
+        long[] times = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            times[i] = from + i * HOUR;
+        }
+        return new ForecastSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, times, values, 0L);
+    }
+
+    @Test
+    public void newerHours_overwriteAndExtend() {
+        HourlyRing ring = new HourlyRing(6);
+        ring.putAll(hours(START, 1, 2, 3, 4));
+        // A revision of the last two hours plus two new ones.
+        ring.putAll(hours(START + 2 * HOUR, 30, 40, 5, 6));
+
+        ForecastSeries series = ring.toSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, 0L);
+        assertEquals(6, series.size());
+        assertArrayEquals(new double[]{1, 2, 30, 40, 5, 6}, series.values(), 0.0);
+        assertEquals(START, series.timeAt(0));
+        assertEquals(START + 5 * HOUR, ring.lastHour());
+    }
+
+    @Test
+    public void fullRing_dropsOldestHours() {
+        HourlyRing ring = new HourlyRing(4);
+        ring.putAll(hours(START, 1, 2, 3, 4, 5, 6));
+        ForecastSeries series = ring.toSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, 0L);
+        assertArrayEquals(new double[]{3, 4, 5, 6}, series.values(), 0.0);
+        assertEquals(START + 2 * HOUR, series.timeAt(0));
+
+        // Hours that have already left the window are ignored.
+        ring.put(START, 99);
+        assertEquals(START + 2 * HOUR, ring.toSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, 0L).timeAt(0));
+    }
+
+    @Test
+    public void gaps_areMissingValues() {
+        HourlyRing ring = new HourlyRing(8);
+        ring.put(START, 1);
+        ring.put(START + 3 * HOUR + 59, 4); // Any time within the hour lands on it.
+        ForecastSeries series = ring.toSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, 0L);
+        assertEquals(4, series.size());
+        assertFalse(series.hasValueAt(1));
+        assertFalse(series.hasValueAt(2));
+        assertEquals(4, series.valueAt(3), 0.0);
+    }
+
+    @Test
+    public void dropBefore_andFarJump() {
+        HourlyRing ring = new HourlyRing(10);
+        ring.putAll(hours(START, 1, 2, 3, 4, 5));
+        ring.dropBefore(START + 2 * HOUR + 30);
+        assertEquals(3, ring.size());
+        assertEquals(START + 4 * HOUR, ring.lastHour());
+
+        ring.put(START + 1000 * HOUR, 7);
+        assertEquals(1, ring.size());
+        assertEquals(START + 1000 * HOUR, ring.lastHour());
+    }
+
+    @Test
+    public void hourlySeries_feedsTheRiskEngineRollingSum() {
+        HourlyRing ring = new HourlyRing(96);
+        double[] storm = new double[30];
+        for (int h = 0; h < 30; h++) {
+            storm[h] = h >= 10 && h < 22 ? 9 : 0;
+        }
+        ring.putAll(hours(START, storm));
+        RiskEngine.Assessment result = RiskEngine.DEFAULT.assess(null,
+                ring.toSeries(ForecastSeries.Kind.HOURLY_PRECIPITATION, 0L));
+        assertEquals(108, result.getRain24hMax(), 1e-9);
+    }
+}
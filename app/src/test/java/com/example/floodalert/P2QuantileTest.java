@@ -0,0 +1,68 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class P2QuantileTest {
+
+    private static double exact(double[] values, double p) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.round(p * (sorted.length - 1))];
+    }
+
+    /** Twenty years of a skewed, seasonal "discharge": mostly low flow with rare floods. */
+    private static double[] dischargeLike(long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[20 * 365];
+        for (int day = 0; day < values.length; day++) {
+            double season = 1 + Math.sin(2 * Math.PI * day / 365.0);
+            values[day] = 20 * season * Math.exp(random.nextGaussian() * 0.8);
+        }
+        return values;
+    }
+
+    @Test
+    public void estimates_matchExactPercentilesOnSkewedData() {
+        for (long seed = 1; seed <= 5; seed++) {
+            double[] values = dischargeLike(seed);
+            P2Quantile p90 = new P2Quantile(0.90);
+            P2Quantile p99 = new P2Quantile(0.99);
+            for (double value : values) {
+                p90.add(value);
+                p99.add(value);
+            }
+            assertEquals(values.length, p90.count());
+            assertEquals(exact(values, 0.90), p90.value(), exact(values, 0.90) * 0.05);
+            assertEquals(exact(values, 0.99), p99.value(), exact(values, 0.99) * 0.10);
+        }
+    }
+
+    @Test
+    public void estimates_holdForSortedInput() {
+        P2Quantile median = new P2Quantile(0.5);
+        for (int i = 1; i <= 10_001; i++) {
+            median.add(i);
+        }
+        assertEquals(5_001, median.value(), 50);
+    }
+
+    @Test
+    public void fewValues_areExact() {
+        P2Quantile p90 = new P2Quantile(0.9);
+        assertTrue(Double.isNaN(p90.value()));
+        p90.add(3);
+        p90.add(1);
+        p90.add(2);
+        assertEquals(3, p90.value(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantileOutsideOpenInterval_isRejected() {
+        new P2Quantile(1.0);
+    }
+}
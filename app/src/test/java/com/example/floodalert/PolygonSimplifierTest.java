@@ -0,0 +1,62 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PolygonSimplifierTest {
+
+    @Test
+    public void simplify_dropsCollinearVertices() {
+        // A square with a midpoint on every side.
+        double[] lats = {19.0, 19.0, 19.0, 19.05, 19.1, 19.1, 19.1, 19.05};
+        double[] lons = {72.8, 72.85, 72.9, 72.9, 72.9, 72.85, 72.8, 72.8};
+        int[] kept = PolygonSimplifier.simplify(lats, lons, 1e-6);
+        assertArrayEquals(new int[]{0, 2, 4, 6}, kept);
+    }
+
+    @Test
+    public void simplify_staysWithinToleranceOnDenseRing() {
+        int count = 20_000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            // A wobbly circle, like a traced river flood extent.
+            double radius = 0.05 + 0.002 * Math.sin(angle * 40);
+            lats[i] = 19.0 + radius * Math.sin(angle);
+            lons[i] = 72.8 + radius * Math.cos(angle) / Math.cos(Math.toRadians(19.0));
+        }
+        double tolerance = PolygonSimplifier.toleranceForZoom(13, 19.0, 1.0);
+        int[] kept = PolygonSimplifier.simplify(lats, lons, tolerance);
+
+        assertTrue("kept " + kept.length, kept.length < count / 10);
+        assertTrue(kept.length >= 3);
+        double scale = Math.cos(Math.toRadians(19.0));
+        for (int k = 0; k < kept.length; k++) {
+            int from = kept[k];
+            int to = k + 1 < kept.length ? kept[k + 1] : kept[0] + count;
+            for (int i = from + 1; i < to; i++) {
+                int end = to % count;
+                double distance = distance(lons[i % count] * scale, lats[i % count],
+                        lons[from] * scale, lats[from], lons[end] * scale, lats[end]);
+                assertTrue("vertex " + i + " is " + distance + " off", distance <= tolerance * 1.000001);
+            }
+        }
+    }
+
+    @Test
+    public void simplify_keepsAtLeastATriangle() {
+        double[] lats = {19.0, 19.0000001, 19.0, 19.0000001, 19.0};
+        double[] lons = {72.8, 72.81, 72.82, 72.83, 72.84};
+        assertEquals(3, PolygonSimplifier.simplify(lats, lons, 0.01).length);
+    }
+
+    private static double distance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t = ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy);
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+    }
+}
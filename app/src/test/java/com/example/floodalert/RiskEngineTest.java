@@ -0,0 +1,146 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RiskEngineTest {
+
+    private static final long DAY = 86_400;
+    private static final long HOUR = 3_600;
+    private static final long START = 1_700_000_000L;
+    private static final double NaN = Double.NaN;
+
+    private static ForecastSeries daily(ForecastSeries.Kind kind, double... values) {
+        return series(kind, DAY, values);
+    }
+
+    private static ForecastSeries series(ForecastSeries.Kind kind, long step, double... values) {
+        long[] times = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            times[i] = START + i * step;
+        }
+        return new ForecastSeries(kind, times, values, 0L);
+    }
+
+    private static RiskEngine.Assessment assess(ForecastSeries river, ForecastSeries rain) {
+        return RiskEngine.DEFAULT.assess(river, rain);
+    }
+
+    @Test
+    public void rapidRiseAboveDangerFloor_isHighRisk() {
+        // The old three-point rule: day two 50% above today and above 10 m³/s.
+        RiskEngine.Assessment result = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, 7, 9, 12), null);
+        assertTrue(result.isRapidRise());
+        assertTrue(result.isHighRisk());
+        assertEquals(12, result.getPeakDischarge(), 0.0);
+        assertEquals(48, result.getHoursToPeak(), 0.0);
+        assertEquals(3, result.getMaxRisePerDay(), 1e-9);
+    }
+
+    @Test
+    public void riseBelowDangerFloor_isNotHighRisk() {
+        RiskEngine.Assessment result = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, 2, 4, 8), null);
+        assertFalse(result.isRapidRise());
+        assertFalse(result.isHighRisk());
+        assertTrue(result.getRiverSeverity() > 0);
+    }
+
+    @Test
+    public void riseAfterHorizon_countsOnlyThroughPeakSeverity() {
+        RiskEngine.Assessment result = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, 8, 8, 8, 13), null);
+        assertFalse(result.isRapidRise());
+        assertEquals((13 - 5) / 25.0, result.getRiverSeverity(), 1e-9);
+    }
+
+    @Test
+    public void criticalDischarge_isFullSeverityEvenWhenFlat() {
+        RiskEngine.Assessment result = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, 40, 40, 40), null);
+        assertEquals(1.0, result.getSeverity(), 0.0);
+        assertTrue(result.isHighRisk());
+    }
+
+    @Test
+    public void missingValues_areSkipped() {
+        RiskEngine.Assessment result = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, NaN, 7, NaN, 12), null);
+        assertEquals(7, result.getCurrentDischarge(), 0.0);
+        // 12 lands two days after the first usable value.
+        assertTrue(result.isRapidRise());
+        assertEquals(2.5, result.getMaxRisePerDay(), 1e-9);
+
+        RiskEngine.Assessment empty = assess(daily(ForecastSeries.Kind.RIVER_DISCHARGE, NaN, NaN), null);
+        assertFalse(empty.hasData());
+        assertFalse(empty.isHighRisk());
+    }
+
+    @Test
+    public void dailyRain_usesWettestDayAndThreeDayTotal() {
+        RiskEngine.Assessment result = assess(null, daily(ForecastSeries.Kind.PRECIPITATION, 40, 45, 30));
+        assertEquals(45, result.getRain24hMax(), 1e-9);
+        assertEquals(115, result.getRain72hMax(), 1e-9);
+        assertEquals((115 - 100) / 150.0, result.getRainSeverity(), 1e-9);
+        assertFalse(result.isHighRisk());
+    }
+
+    @Test
+    public void hourlyRain_findsWettestRollingDayAcrossCalendarDays() {
+        double[] hours = new double[72];
+        // 120 mm falling from 18:00 to 06:00 splits into two calendar days but is one wet night.
+        for (int h = 18; h < 30; h++) {
+            hours[h] = 10;
+        }
+        RiskEngine.Assessment result = assess(null, series(ForecastSeries.Kind.PRECIPITATION, HOUR, hours));
+        assertEquals(120, result.getRain24hMax(), 1e-9);
+        assertEquals((120 - 50) / 100.0, result.getRainSeverity(), 1e-9);
+        assertTrue(result.isHighRisk());
+    }
+
+    @Test
+    public void bothScreens_getTheSameVerdictFromTheSameData() {
+        ForecastSeries river = daily(ForecastSeries.Kind.RIVER_DISCHARGE, 4, 6, 9);
+        ForecastSeries rain = daily(ForecastSeries.Kind.PRECIPITATION, 10, 160, 0);
+        RiskEngine.Assessment reused = new RiskEngine.Assessment();
+        RiskEngine.DEFAULT.assess(null, null, reused);
+        RiskEngine.DEFAULT.assess(river, rain, reused);
+        RiskEngine.Assessment fresh = assess(river, rain);
+        assertEquals(fresh.getSeverity(), reused.getSeverity(), 0.0);
+        assertTrue(reused.isHighRisk());
+        assertEquals(1.0, reused.getRainSeverity(), 0.0);
+    }
+
+    @Test
+    public void customThresholds_arePluggable() {
+        RiskEngine.Thresholds strict = new RiskEngine.Thresholds();
+        strict.criticalDischarge = 10.0;
+        RiskEngine engine = new RiskEngine(strict);
+        strict.criticalDischarge = 1000.0; // The engine keeps its own copy.
+
+        ForecastSeries river = daily(ForecastSeries.Kind.RIVER_DISCHARGE, 10, 10, 10);
+        assertTrue(engine.assess(river, null).isHighRisk());
+        assertFalse(RiskEngine.DEFAULT.assess(river, null).isHighRisk());
+    }
+
+    @Test
+    public void timeline_followsRiverAndTrailingRain() {
+        ForecastSeries river = daily(ForecastSeries.Kind.RIVER_DISCHARGE, 5, 17.5, 30);
+        double[] rainHours = new double[72];
+        for (int h = 30; h < 36; h++) {
+            rainHours[h] = 25; // 150 mm in six hours on day two.
+        }
+        ForecastSeries rain = series(ForecastSeries.Kind.HOURLY_PRECIPITATION, HOUR, rainHours);
+
+        float[] out = new float[72];
+        RiskEngine.DEFAULT.timeline(river, rain, START, HOUR, 72, out);
+        assertEquals(0.0f, out[0], 0.0f);
+        assertEquals(0.5f, out[24], 1e-6f);   // River at 17.5 on day two.
+        assertEquals(1.0f, out[36], 0.0f);    // The full downpour is in the trailing 24 h.
+        assertEquals(1.0f, out[48], 0.0f);    // River critical on day three.
+
+        float[] riverOnly = new float[72];
+        RiskEngine.DEFAULT.timeline(river, null, START, HOUR, 72, riverOnly);
+        assertEquals(0.5f, riverOnly[36], 1e-6f);
+
+        RiskEngine.DEFAULT.timeline(null, null, START, HOUR, 72, out);
+        assertEquals(0.0f, out[40], 0.0f);
+    }
+}
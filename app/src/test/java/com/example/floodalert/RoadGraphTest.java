@@ -0,0 +1,179 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RoadGraphTest {
+
+    private static final int GRID = 300; // 90k nodes, about the size of a city's drivable network
+    private static final double SPACING = 0.001;
+    private static final double BASE_LAT = 19.0;
+    private static final double BASE_LON = 72.8;
+
+    private int[] latE6;
+    private int[] lonE6;
+    private int[] edgeStart;
+    private int[] edgeTarget;
+    private int[] edgeLengthDm;
+    private byte[] edgeSpeed;
+
+    @Test
+    public void route_matchesDijkstra() {
+        RoadGraph graph = buildGrid(GRID, new Random(9));
+        Random random = new Random(10);
+        for (int q = 0; q < 50; q++) {
+            int from = random.nextInt(GRID * GRID);
+            int to = random.nextInt(GRID * GRID);
+            RoadGraph.Path path = graph.route(from, to, null, 1.0);
+            assertNotNull(path);
+            assertEquals(from, path.nodes[0]);
+            assertEquals(to, path.nodes[path.nodes.length - 1]);
+            assertEquals(dijkstra(from, to), path.seconds, 1e-6 * path.seconds + 1e-6);
+        }
+    }
+
+    @Test
+    public void route_isFastOnCitySizedGraph() {
+        RoadGraph graph = buildGrid(GRID, new Random(9));
+        Random random = new Random(11);
+        graph.route(0, GRID * GRID - 1, null, 1.0); // warm up
+        long started = System.nanoTime();
+        int queries = 20;
+        for (int q = 0; q < queries; q++) {
+            assertNotNull(graph.route(random.nextInt(GRID * GRID), random.nextInt(GRID * GRID), null, 1.0));
+        }
+        double averageMs = (System.nanoTime() - started) / 1e6 / queries;
+        assertTrue("Average route took " + averageMs + " ms", averageMs < 250);
+    }
+
+    @Test
+    public void route_detoursAroundFloodedNodes() {
+        RoadGraph graph = buildGrid(20, null);
+        // Flood column 10 except its top row, so the only dry crossing is along row 19.
+        int from = node(20, 0, 8);
+        int to = node(20, 0, 12);
+        RoadGraph.Path dry = graph.route(from, to, n -> n % 20 == 10 && n / 20 != 19, 50.0);
+        assertNotNull(dry);
+        for (int n : dry.nodes) {
+            assertFalse(n % 20 == 10 && n / 20 != 19);
+        }
+
+        // With the whole column impassable there is no way across.
+        assertNull(graph.route(from, to, n -> n % 20 == 10, Double.POSITIVE_INFINITY));
+        // A finite penalty still leads out through the water when nothing else is possible.
+        assertNotNull(graph.route(from, to, n -> n % 20 == 10, 50.0));
+    }
+
+    @Test
+    public void nearestNode_snapsToGrid() {
+        RoadGraph graph = buildGrid(10, null);
+        int node = graph.nearestNode(BASE_LAT + 3 * SPACING + 0.0001, BASE_LON + 7 * SPACING - 0.0001);
+        assertEquals(node(10, 3, 7), node);
+    }
+
+    @Test
+    public void load_readsWrittenFile() throws IOException {
+        RoadGraph expected = buildGrid(30, new Random(4));
+        File file = File.createTempFile("region", ".graph");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(RoadGraph.MAGIC);
+            out.writeInt(RoadGraph.FORMAT_VERSION);
+            out.writeInt(latE6.length);
+            out.writeInt(edgeTarget.length);
+            for (int v : latE6) out.writeInt(v);
+            for (int v : lonE6) out.writeInt(v);
+            for (int v : edgeStart) out.writeInt(v);
+            for (int v : edgeTarget) out.writeInt(v);
+            for (int v : edgeLengthDm) out.writeInt(v);
+            out.write(edgeSpeed);
+        }
+        try {
+            RoadGraph loaded = RoadGraph.load(file);
+            assertEquals(expected.nodeCount(), loaded.nodeCount());
+            assertEquals(expected.route(0, 899, null, 1.0).seconds, loaded.route(0, 899, null, 1.0).seconds, 1e-9);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static int node(int size, int row, int col) {
+        return row * size + col;
+    }
+
+    /** Square grid with two-way streets to the 4 neighbours; random speeds when a Random is given. */
+    private RoadGraph buildGrid(int size, Random random) {
+        int nodes = size * size;
+        latE6 = new int[nodes];
+        lonE6 = new int[nodes];
+        edgeStart = new int[nodes + 1];
+        int[] targets = new int[nodes * 4];
+        int[] lengths = new int[nodes * 4];
+        byte[] speeds = new byte[nodes * 4];
+        double metersLat = SPACING * 111_000.0;
+        double metersLon = SPACING * 111_320.0 * Math.cos(Math.toRadians(BASE_LAT + size * SPACING));
+        int edges = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int n = node(size, row, col);
+                latE6[n] = (int) Math.round((BASE_LAT + row * SPACING) * 1e6);
+                lonE6[n] = (int) Math.round((BASE_LON + col * SPACING) * 1e6);
+                edgeStart[n] = edges;
+                int[][] neighbours = {{row - 1, col}, {row + 1, col}, {row, col - 1}, {row, col + 1}};
+                for (int[] next : neighbours) {
+                    if (next[0] < 0 || next[0] >= size || next[1] < 0 || next[1] >= size) {
+                        continue;
+                    }
+                    targets[edges] = node(size, next[0], next[1]);
+                    double meters = next[0] != row ? metersLat : metersLon;
+                    lengths[edges] = (int) Math.ceil(meters * 10);
+                    speeds[edges] = (byte) (random != null ? 20 + random.nextInt(70) : 40);
+                    edges++;
+                }
+            }
+        }
+        edgeStart[nodes] = edges;
+        edgeTarget = Arrays.copyOf(targets, edges);
+        edgeLengthDm = Arrays.copyOf(lengths, edges);
+        edgeSpeed = Arrays.copyOf(speeds, edges);
+        return new RoadGraph(latE6, lonE6, edgeStart, edgeTarget, edgeLengthDm, edgeSpeed);
+    }
+
+    /** Reference Dijkstra using the same float edge costs as the graph. */
+    private double dijkstra(int from, int to) {
+        double[] cost = new double[latE6.length];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[from] = 0;
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        queue.add(new double[]{0, from});
+        while (!queue.isEmpty()) {
+            double[] top = queue.poll();
+            int n = (int) top[1];
+            if (top[0] > cost[n]) {
+                continue;
+            }
+            if (n == to) {
+                return cost[n];
+            }
+            for (int e = edgeStart[n]; e < edgeStart[n + 1]; e++) {
+                float meters = edgeLengthDm[e] / 10f;
+                float seconds = (float) (meters / (Math.max(5, edgeSpeed[e] & 0xFF) / 3.6));
+                double candidate = cost[n] + seconds;
+                if (candidate < cost[edgeTarget[e]]) {
+                    cost[edgeTarget[e]] = candidate;
+                    queue.add(new double[]{candidate, edgeTarget[e]});
+                }
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
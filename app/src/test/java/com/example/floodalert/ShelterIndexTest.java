@@ -0,0 +1,77 @@
+package com.example.floodalert;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ShelterIndexTest {
+
+    private static final int SHELTER_COUNT = 20_000;
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        Random random = new Random(3);
+        double[] lats = new double[SHELTER_COUNT];
+        double[] lons = new double[SHELTER_COUNT];
+        for (int i = 0; i < SHELTER_COUNT; i++) {
+            lats[i] = 18.9 + random.nextDouble() * 0.4;
+            lons[i] = 72.7 + random.nextDouble() * 0.4;
+        }
+        ShelterIndex index = new ShelterIndex(lats, lons);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = 18.9 + random.nextDouble() * 0.4;
+            double lon = 72.7 + random.nextDouble() * 0.4;
+            int[] actual = index.nearest(lat, lon, 5, null);
+            int[] expected = bruteForce(lats, lons, lat, lon, 5);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void nearest_skipsRejectedShelters() {
+        double[] lats = {19.00, 19.01, 19.02, 19.03};
+        double[] lons = {72.80, 72.80, 72.80, 72.80};
+        ShelterIndex index = new ShelterIndex(lats, lons);
+
+        int[] result = index.nearest(19.0, 72.8, 2, i -> i != 0);
+        assertArrayEquals(new int[]{1, 2}, result);
+    }
+
+    @Test
+    public void nearest_handlesEmptyAndSmallInputs() {
+        assertEquals(0, new ShelterIndex(new double[0], new double[0]).nearest(19, 72, 3, null).length);
+        int[] result = new ShelterIndex(new double[]{19.1}, new double[]{72.9}).nearest(19, 72, 3, null);
+        assertArrayEquals(new int[]{0}, result);
+    }
+
+    private static int[] bruteForce(double[] lats, double[] lons, double lat, double lon, int k) {
+        double lonScale = Math.cos(Math.toRadians(mean(lats))) * 111_320.0;
+        Integer[] order = new Integer[lats.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> {
+            double dx = (lons[i] - lon) * lonScale;
+            double dy = (lats[i] - lat) * 110_540.0;
+            return dx * dx + dy * dy;
+        }));
+        int[] result = new int[k];
+        for (int i = 0; i < k; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) {
+            sum += v;
+        }
+        return sum / values.length;
+    }
+}
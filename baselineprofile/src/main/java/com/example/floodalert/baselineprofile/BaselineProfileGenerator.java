@@ -0,0 +1,34 @@
+package com.example.floodalert.baselineprofile;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Records which classes and methods the launch → dashboard → evacuation path runs, so the app can
+ * be compiled ahead of time for it. Run with {@code ./gradlew :app:generateBaselineProfile}; the
+ * plugin copies the result into the app's sources, where it is committed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public final BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void launchToEvacuationRoutes() {
+        FloodJourney.grantPermissions();
+        rule.collect(FloodJourney.PACKAGE_NAME, scope -> {
+            scope.pressHome();
+            scope.startActivityAndWait();
+            FloodJourney.openDashboard(scope);
+            FloodJourney.openEvacuationRoutes(scope);
+            return Unit.INSTANCE;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.floodalert.baselineprofile;
+
+import android.app.UiAutomation;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * The path someone takes in an emergency: launch, through to the dashboard, on to Evacuation
+ * Routes. Shared by the profile generator and the benchmarks so both exercise the same code.
+ */
+final class FloodJourney {
+
+    static final String PACKAGE_NAME = "com.example.floodalert";
+    private static final long WAIT_MS = 10_000;
+
+    private FloodJourney() {
+    }
+
+    /** Grants what the permissions screen asks for, so a launch goes straight through it. */
+    static void grantPermissions() {
+        grant("android.permission.ACCESS_FINE_LOCATION");
+        grant("android.permission.ACCESS_COARSE_LOCATION");
+        if (Build.VERSION.SDK_INT >= 33) {
+            grant("android.permission.POST_NOTIFICATIONS");
+        }
+    }
+
+    /** From the launch screen to a dashboard whose tiles can be tapped. */
+    static void openDashboard(@NonNull MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        find(device, By.res(PACKAGE_NAME, "get_started_button")).click();
+        find(device, By.res(PACKAGE_NAME, "item_evacuation_routes"));
+    }
+
+    /** From the dashboard to Evacuation Routes showing a verdict, safe or not. */
+    static void openEvacuationRoutes(@NonNull MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        find(device, By.res(PACKAGE_NAME, "item_evacuation_routes")).click();
+        find(device, By.res(Pattern.compile(Pattern.quote(PACKAGE_NAME) + ":id/layout(Safe|Danger)")));
+    }
+
+    private static UiObject2 find(UiDevice device, BySelector selector) {
+        UiObject2 found = device.wait(Until.findObject(selector), WAIT_MS);
+        if (found == null) {
+            throw new AssertionError("Nothing matching " + selector + " within " + WAIT_MS + " ms");
+        }
+        return found;
+    }
+
+    private static void grant(String permission) {
+        UiAutomation automation = InstrumentationRegistry.getInstrumentation().getUiAutomation();
+        // The command runs asynchronously; closing the output waits for it to finish.
+        try (ParcelFileDescriptor output = automation.executeShellCommand("pm grant " + PACKAGE_NAME + " " + permission);
+             ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(output)) {
+            while (in.read() != -1) {
+                // Drain until the command exits.
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grant " + permission, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.floodalert.baselineprofile;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Cold-start time of the release build, before and after the Baseline Profile.
+ *
+ * "noProfile" installs the app without any ahead-of-time compilation, as a fresh install runs
+ * before the profile existed; "baselineProfile" installs it compiled with the profile, and fails
+ * if there is none. Compare {@code timeToInitialDisplayMs} between the two. Run with
+ * {@code ./gradlew :baselineprofile:connectedBenchmarkReleaseAndroidTest} on a physical device.
+ */
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    private final CompilationMode compilationMode;
+
+    public StartupBenchmark(String name, CompilationMode compilationMode) {
+        this.compilationMode = compilationMode;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> compilationModes() {
+        return Arrays.asList(
+                new Object[]{"noProfile", new CompilationMode.None()},
+                new Object[]{"baselineProfile", new CompilationMode.Partial(BaselineProfileMode.Require)});
+    }
+
+    @Before
+    public void setUp() {
+        FloodJourney.grantPermissions();
+    }
+
+    /** Launcher tap to the first frame of the launch screen. */
+    @Test
+    public void coldStart() {
+        rule.measureRepeated(FloodJourney.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode, StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+
+    /** Launcher tap to a dashboard that can be used, including the dashboard's own setup. */
+    @Test
+    public void coldStartToDashboard() {
+        List<Metric> metrics = Arrays.asList(
+                new StartupTimingMetric(),
+                new TraceSectionMetric("FloodDashboard.onCreate"),
+                new FrameTimingMetric());
+        rule.measureRepeated(FloodJourney.PACKAGE_NAME, metrics,
+                compilationMode, StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    FloodJourney.openDashboard(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}